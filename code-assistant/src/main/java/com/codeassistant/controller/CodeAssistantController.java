@@ -2,19 +2,29 @@ package com.codeassistant.controller;
 
 import com.codeassistant.model.AnalysisRequest;
 import com.codeassistant.model.AnalysisResponse;
+import com.codeassistant.model.BatchAnalysisRequest;
 import com.codeassistant.model.StreamingAnalysisResponse;
+import com.codeassistant.service.BatchAnalysisService;
 import com.codeassistant.service.CodeAnalysisService;
+import com.codeassistant.service.streaming.SseEventStream;
 import com.common.service.SessionManager;
 import com.codeassistant.service.ai.AIServiceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import jakarta.validation.Valid;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import java.time.Duration;
 import java.util.Map;
 import com.codeassistant.model.AnalysisType;
 
@@ -24,7 +34,8 @@ import com.codeassistant.model.AnalysisType;
  * using different AI services (OpenAI, Groq/Llama) with session management.
  * 
  * All endpoints require a specific service to be specified in the URL path.
- * Supported services: OpenAIChatService, GroqAIChatService
+ * Supported services: OpenAIChatService, GroqAIChatService, or "auto" to route to the
+ * healthiest, fastest one
  * 
  * The AnalysisType in the request determines the operation:
  * - WRITE_CODE, REFACTOR, DEBUG, ANALYZE: Regular code analysis operations
@@ -39,11 +50,23 @@ public class CodeAssistantController {
     
     private final CodeAnalysisService codeAnalysisService;
     private final SessionManager sessionManager;
+    private final SseEventStream sseEventStream;
+    private final BatchAnalysisService batchAnalysisService;
+    private final ObjectMapper objectMapper;
+    
+    // A batch outlives the default async request timeout, so its emitter has its own
+    @Value("${code-assistant.batch.timeout:PT2H}")
+    private Duration batchTimeout;
     
     @Autowired
-    public CodeAssistantController(CodeAnalysisService codeAnalysisService, SessionManager sessionManager) {
+    public CodeAssistantController(CodeAnalysisService codeAnalysisService, SessionManager sessionManager,
+                                   SseEventStream sseEventStream, BatchAnalysisService batchAnalysisService,
+                                   ObjectMapper objectMapper) {
         this.codeAnalysisService = codeAnalysisService;
         this.sessionManager = sessionManager;
+        this.sseEventStream = sseEventStream;
+        this.batchAnalysisService = batchAnalysisService;
+        this.objectMapper = objectMapper;
     }
     
     /**
@@ -127,7 +150,7 @@ public class CodeAssistantController {
                 return ResponseEntity.ok(emitter);
             }
             
-            codeAnalysisService.streamAnalysis(request, service)
+            Disposable subscription = codeAnalysisService.streamAnalysis(request, service)
                 .subscribe(
                     response -> {
                         try {
@@ -135,7 +158,8 @@ public class CodeAssistantController {
                             response.setSessionId(request.getSessionId());
                             emitter.send(response);
                         } catch (Exception e) {
-                            logger.error("Error sending SSE event for session: {}", request.getSessionId(), e);
+                            // Usually the client went away
+                            logger.warn("Error sending SSE event for session: {}: {}", request.getSessionId(), e.getMessage());
                             emitter.completeWithError(e);
                         }
                     },
@@ -156,6 +180,11 @@ public class CodeAssistantController {
                         emitter.complete();
                     }
                 );
+            
+            // Client disconnects and emitter timeouts cancel the stream, which aborts the provider call
+            emitter.onTimeout(subscription::dispose);
+            emitter.onError(error -> subscription.dispose());
+            emitter.onCompletion(subscription::dispose);
                 
         } catch (Exception e) {
             logger.error("Error setting up streaming assist for session: {}", request.getSessionId(), e);
@@ -172,4 +201,93 @@ public class CodeAssistantController {
         
         return ResponseEntity.ok(emitter);
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Reactive streaming assist: returns the event stream itself, so an open stream holds no
+     * thread while waiting for tokens. Events are written as the client consumes them, with
+     * heartbeats while idle and configurable idle and total timeouts.
+     */
+    @PostMapping(value = "/assist/{service}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<StreamingAnalysisResponse>> streamAssistEvents(
+            @PathVariable("service") String service,
+            @Valid @RequestBody AnalysisRequest request) {
+        logger.info("Received reactive streaming {} request using service: {} for session: {}",
+            request.getAnalysisType(), service, request.getSessionId());
+        
+        Flux<StreamingAnalysisResponse> analysis;
+        if (!sessionManager.sessionExists(request.getSessionId())) {
+            analysis = Flux.just(StreamingAnalysisResponse.error(
+                "Session not found - " + request.getSessionId(), request.getAnalysisType(), request.getLanguage()));
+        } else {
+            try {
+                analysis = codeAnalysisService.streamAnalysis(request, service);
+            } catch (AIServiceException e) {
+                logger.error("AI service error setting up reactive stream for session: {}", request.getSessionId(), e);
+                analysis = Flux.just(StreamingAnalysisResponse.error(
+                    e.getMessage(), request.getAnalysisType(), request.getLanguage()));
+            }
+        }
+        return sseEventStream.toEvents(analysis, request);
+    }
+    
+    /**
+     * Batch assist: analyzes many items independently of the session's conversation and streams
+     * one JSON line (NDJSON) per item as soon as it completes, then a summary line with throughput
+     * and failures. Items fail individually; the batch is rejected only if the session is unknown
+     * or it has too many items.
+     */
+    @PostMapping(value = "/assist/{service}/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> batchAssistWithService(
+            @PathVariable("service") String service,
+            @Valid @RequestBody BatchAnalysisRequest request) {
+        logger.info("Received batch assist request with {} items using service: {} for session: {}",
+            request.getItems().size(), service, request.getSessionId());
+        
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchTimeout.toMillis());
+        if (!sessionManager.sessionExists(request.getSessionId())) {
+            return rejectBatch(emitter, "Session not found - " + request.getSessionId());
+        }
+        if (request.getItems().size() > batchAnalysisService.getMaxItems()) {
+            return rejectBatch(emitter, "Batch has " + request.getItems().size() + " items, the maximum is "
+                + batchAnalysisService.getMaxItems());
+        }
+        
+        Disposable subscription = batchAnalysisService.analyzeBatch(request, service)
+            .subscribe(
+                event -> {
+                    try {
+                        emitter.send(objectMapper.writeValueAsString(event) + "\n", MediaType.APPLICATION_NDJSON);
+                    } catch (Exception e) {
+                        // Usually the client went away
+                        logger.warn("Error sending batch result for session: {}: {}", request.getSessionId(), e.getMessage());
+                        emitter.completeWithError(e);
+                    }
+                },
+                error -> {
+                    logger.error("Error in batch assist for session: {}", request.getSessionId(), error);
+                    emitter.completeWithError(error);
+                },
+                () -> {
+                    logger.debug("Batch assist completed for session: {}", request.getSessionId());
+                    emitter.complete();
+                }
+            );
+        
+        // Client disconnects and emitter timeouts cancel the items still running
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(error -> subscription.dispose());
+        emitter.onCompletion(subscription::dispose);
+        
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+    
+    private ResponseEntity<ResponseBodyEmitter> rejectBatch(ResponseBodyEmitter emitter, String error) {
+        try {
+            emitter.send(objectMapper.writeValueAsString(Map.of("error", error)) + "\n", MediaType.APPLICATION_NDJSON);
+            emitter.complete();
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+}
@@ -64,7 +64,7 @@ public class HealthController {
     }
     
     /**
-     * Get service statistics
+     * Get service statistics, including the live routing table used by the "auto" service
      */
     @GetMapping("/services/stats")
     public ResponseEntity<Map<String, Object>> getServiceStats() {
@@ -72,7 +72,8 @@ public class HealthController {
             "availableServices", codeAnalysisService.getAvailableServiceCount(),
             "hasServices", codeAnalysisService.hasAvailableService(),
             "services", codeAnalysisService.getAvailableServices().keySet(),
-            "activeSessionCount", sessionManager.getActiveSessionCount()
+            "activeSessionCount", sessionManager.getActiveSessionCount(),
+            "routing", codeAnalysisService.getRoutingTable()
         );
         return ResponseEntity.ok(stats);
     }
@@ -1,12 +1,16 @@
 package com.codeassistant.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import dev.langchain4j.data.message.ChatMessage;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * Request model for code analysis.
  */
@@ -30,4 +34,25 @@ public class AnalysisRequest {
     @NotBlank(message = "Session ID cannot be blank")
     @JsonProperty("sessionId")
     private String sessionId;
+    
+    // Streaming only: emit a chunk once it reaches this many characters (null uses the default)
+    @JsonProperty("coalesceChars")
+    private Integer coalesceChars;
+    
+    // Streaming only: emit a chunk once its first token waited this long (null uses the default)
+    @JsonProperty("coalesceMillis")
+    private Integer coalesceMillis;
+    
+    // Also send the request to a second provider if the first is slow (null uses the default)
+    @JsonProperty("hedge")
+    private Boolean hedge;
+    
+    // Earlier turns of the session sent between the system prompt and this request; set by the
+    // service from session memory, never by clients
+    @JsonIgnore
+    private List<ChatMessage> history;
+    
+    public AnalysisRequest(String code, AnalysisType analysisType, String language, String sessionId) {
+        this(code, analysisType, language, sessionId, null, null, null, null);
+    }
 } 
\ No newline at end of file
@@ -35,6 +35,14 @@ public class AnalysisResponse {
     @JsonProperty("conversationContext")
     private String conversationContext;
     
+    // Prompt tokens as reported by the provider; null if it reported none
+    @JsonProperty("promptTokens")
+    private Integer promptTokens;
+    
+    // Analysis reused from an identical earlier request
+    @JsonProperty("cacheHit")
+    private boolean cacheHit;
+    
     @JsonProperty("timestamp")
     @Builder.Default
     private long timestamp = Instant.now().toEpochMilli();
@@ -0,0 +1,112 @@
+package com.codeassistant.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One line of a batch analysis response: the result of one item as soon as it completes, or the
+ * summary of the whole batch as the last line.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchAnalysisEvent {
+
+    public static final String RESULT = "result";
+    public static final String SUMMARY = "summary";
+
+    @JsonProperty("type")
+    private String type;
+
+    // Position of the item in the request
+    @JsonProperty("index")
+    private Integer index;
+
+    @JsonProperty("success")
+    private Boolean success;
+
+    @JsonProperty("response")
+    private AnalysisResponse response;
+
+    @JsonProperty("error")
+    private String error;
+
+    @JsonProperty("durationMillis")
+    private Long durationMillis;
+
+    @JsonProperty("summary")
+    private Summary summary;
+
+    /**
+     * Throughput and failures of a batch
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Summary {
+
+        @JsonProperty("total")
+        private int total;
+
+        @JsonProperty("succeeded")
+        private int succeeded;
+
+        @JsonProperty("failed")
+        private int failed;
+
+        @JsonProperty("cacheHits")
+        private int cacheHits;
+
+        @JsonProperty("concurrency")
+        private int concurrency;
+
+        @JsonProperty("durationMillis")
+        private long durationMillis;
+
+        @JsonProperty("itemsPerMinute")
+        private double itemsPerMinute;
+
+        // Mean time of the items themselves, including waits for provider rate limits
+        @JsonProperty("averageItemMillis")
+        private long averageItemMillis;
+
+        @JsonProperty("failedIndexes")
+        private List<Integer> failedIndexes;
+    }
+
+    public static BatchAnalysisEvent success(int index, AnalysisResponse response, long durationMillis) {
+        return BatchAnalysisEvent.builder()
+            .type(RESULT)
+            .index(index)
+            .success(true)
+            .response(response)
+            .durationMillis(durationMillis)
+            .build();
+    }
+
+    public static BatchAnalysisEvent failure(int index, String error, long durationMillis) {
+        return BatchAnalysisEvent.builder()
+            .type(RESULT)
+            .index(index)
+            .success(false)
+            .error(error)
+            .durationMillis(durationMillis)
+            .build();
+    }
+
+    public static BatchAnalysisEvent summary(Summary summary) {
+        return BatchAnalysisEvent.builder()
+            .type(SUMMARY)
+            .summary(summary)
+            .build();
+    }
+}
@@ -0,0 +1,33 @@
+package com.codeassistant.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Request model for analyzing many pieces of code in one call.
+ * Items are analyzed independently: they neither see nor extend the session's conversation.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchAnalysisRequest {
+
+    @NotBlank(message = "Session ID cannot be blank")
+    @JsonProperty("sessionId")
+    private String sessionId;
+
+    // Validated per item, so one bad item fails alone instead of rejecting the batch
+    @NotEmpty(message = "Items cannot be empty")
+    @JsonProperty("items")
+    private List<AnalysisRequest> items;
+
+    // Items analyzed at once; capped by the configured maximum (null uses the maximum)
+    @JsonProperty("concurrency")
+    private Integer concurrency;
+}
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import dev.langchain4j.data.message.ChatMessage;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -25,4 +26,19 @@ public class MessagePair {
             new dev.langchain4j.data.message.UserMessage(userMessage.getContent())
         );
     }
+    
+    /**
+     * Convert to LangChain4j ChatMessage list with earlier conversation turns between the system
+     * and user messages
+     */
+    public List<ChatMessage> toLangChain4jMessages(List<ChatMessage> history) {
+        if (history == null || history.isEmpty()) {
+            return toLangChain4jMessages();
+        }
+        List<ChatMessage> messages = new ArrayList<>(history.size() + 2);
+        messages.add(new dev.langchain4j.data.message.SystemMessage(systemMessage.getContent()));
+        messages.addAll(history);
+        messages.add(new dev.langchain4j.data.message.UserMessage(userMessage.getContent()));
+        return messages;
+    }
 } 
\ No newline at end of file
@@ -6,6 +6,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * System Message model for defining AI behavior and instructions.
  * This class represents the system-level instructions that define how the AI should behave
@@ -33,34 +36,46 @@ public class SystemMessage {
     @JsonProperty("context")
     private String context;
     
+    // System prompt per analysis type and language, built once; see createAnalysisMessage
+    private static final Map<String, String> PROMPT_TEMPLATES = new ConcurrentHashMap<>();
+    
     /**
-     * Create a system message for specific analysis type
+     * Create a system message for specific analysis type.
+     * 
+     * The content is ordered from most static to most dynamic (shared preamble, then the analysis
+     * type's role and response structure, then the language) so that prompts share the longest
+     * possible prefix for provider-side prompt caching. It is built once per analysis type and
+     * language, and every message with the same pair carries the identical string.
      */
     public static SystemMessage createAnalysisMessage(AnalysisType analysisType, String language) {
-        String roleSpecificContent = getRoleSpecificContent(analysisType);
         String languageContext = getLanguageContext(language);
-        String responseStructure = getResponseStructure(analysisType);
+        // Languages without specific guidance share one prompt, which also bounds the cache
+        String key = analysisType + ":" + (languageContext == null ? "" : language.toLowerCase());
+        String content = PROMPT_TEMPLATES.computeIfAbsent(key,
+            k -> buildAnalysisPrompt(analysisType, languageContext));
         
+        return SystemMessage.builder()
+            .content(content)
+            .analysisType(analysisType)
+            .language(language)
+            .context(languageContext)
+            .build();
+    }
+    
+    private static String buildAnalysisPrompt(AnalysisType analysisType, String languageContext) {
         StringBuilder content = new StringBuilder();
         content.append("You are an expert software developer and code analyst with deep knowledge of multiple programming languages. ");
         content.append("Your role is to provide professional, accurate, and educational code analysis. ");
         content.append("Always be helpful, clear, and thorough in your explanations. ");
         content.append("Use proper technical terminology while remaining accessible to developers of all levels.\n\n");
         
-        content.append(roleSpecificContent).append("\n\n");
+        content.append(getRoleSpecificContent(analysisType)).append("\n\n");
+        content.append(getResponseStructure(analysisType));
         
         if (languageContext != null) {
-            content.append(languageContext).append("\n\n");
+            content.append("\n\n").append(languageContext);
         }
-        
-        content.append(responseStructure);
-        
-        return SystemMessage.builder()
-            .content(content.toString())
-            .analysisType(analysisType)
-            .language(language)
-            .context(languageContext)
-            .build();
+        return content.toString();
     }
     
     private static String getRoleSpecificContent(AnalysisType analysisType) {
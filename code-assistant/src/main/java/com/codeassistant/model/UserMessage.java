@@ -58,10 +58,15 @@ public class UserMessage {
         
         content.append(":\n\n");
         
-        // Consistent code formatting for all types
-        content.append("```").append(language).append("\n");
-        content.append(code);
-        content.append("\n```");
+        if (analysisType == AnalysisType.FOLLOWUP) {
+            // A follow-up is a question in prose; earlier code arrives with the conversation history
+            content.append(code);
+        } else {
+            // Consistent code formatting for all types
+            content.append("```").append(language).append("\n");
+            content.append(code);
+            content.append("\n```");
+        }
         
         return UserMessage.builder()
             .content(content.toString())
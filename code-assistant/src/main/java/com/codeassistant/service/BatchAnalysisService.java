@@ -0,0 +1,200 @@
+package com.codeassistant.service;
+
+import com.codeassistant.model.AnalysisRequest;
+import com.codeassistant.model.AnalysisResponse;
+import com.codeassistant.model.AnalysisType;
+import com.codeassistant.model.BatchAnalysisEvent;
+import com.codeassistant.model.BatchAnalysisRequest;
+import com.codeassistant.service.ai.AIServiceException;
+import com.codeassistant.service.factory.AIServiceFactory;
+import com.codeassistant.service.routing.LatencyTracker;
+import com.codeassistant.service.routing.ProviderRateLimiter;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Analyzes many pieces of code in one request.
+ *
+ * Items run through the same provider pipeline as single analyses (routing, caching, the
+ * per-provider rate limit shared with interactive requests), at most the configured number at a
+ * time. Items are never hedged, so a batch sends one request per item. Each item is analyzed
+ * independently of the session's conversation, and its result is emitted as soon as it completes,
+ * so results arrive out of order and carry their index. An item that fails, is invalid or is a
+ * follow-up fails alone; one rejected for a provider rate limit is retried after the provider's
+ * backoff. A summary of throughput and failures is emitted last.
+ */
+@Service
+public class BatchAnalysisService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchAnalysisService.class);
+
+    private final CodeAnalysisService codeAnalysisService;
+    private final AIServiceFactory aiServiceFactory;
+    private final Validator validator;
+
+    @Value("${code-assistant.batch.max-concurrency:4}")
+    private int maxConcurrency;
+
+    @Value("${code-assistant.batch.max-items:500}")
+    private int maxItems;
+
+    @Value("${code-assistant.batch.rate-limit-retries:2}")
+    private int rateLimitRetries;
+
+    @Autowired
+    public BatchAnalysisService(CodeAnalysisService codeAnalysisService, AIServiceFactory aiServiceFactory,
+                                Validator validator) {
+        this.codeAnalysisService = codeAnalysisService;
+        this.aiServiceFactory = aiServiceFactory;
+        this.validator = validator;
+    }
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    /**
+     * Result events as items complete, followed by the summary
+     *
+     * @param request The batch; its session ID is used for every item
+     * @param serviceName A service name, or "auto" to route each item separately
+     */
+    public Flux<BatchAnalysisEvent> analyzeBatch(BatchAnalysisRequest request, String serviceName) {
+        List<AnalysisRequest> items = request.getItems();
+        int concurrency = request.getConcurrency() == null
+            ? maxConcurrency : Math.max(1, Math.min(request.getConcurrency(), maxConcurrency));
+        logger.info("Starting batch analysis - Session: {}, Service: {}, Items: {}, Concurrency: {}",
+            request.getSessionId(), serviceName, items.size(), concurrency);
+
+        Stats stats = new Stats();
+        return Flux.defer(() -> {
+                stats.start = System.nanoTime();
+                return Flux.range(0, items.size())
+                    .flatMap(index -> analyzeItem(index, items.get(index), request.getSessionId(), serviceName),
+                        concurrency);
+            })
+            .doOnNext(stats::add)
+            .concatWith(Mono.fromSupplier(() -> BatchAnalysisEvent.summary(stats.summary(items.size(), concurrency))))
+            .doOnComplete(() -> logger.info("Batch analysis completed - Session: {}, Items: {}, Failed: {}",
+                request.getSessionId(), items.size(), stats.failed.get()))
+            .doOnCancel(() -> logger.info("Batch analysis cancelled - Session: {}, Completed: {} of {}",
+                request.getSessionId(), stats.completed.get(), items.size()));
+    }
+
+    private Mono<BatchAnalysisEvent> analyzeItem(int index, AnalysisRequest item, String sessionId, String serviceName) {
+        long start = System.nanoTime();
+        if (item == null) {
+            return Mono.just(BatchAnalysisEvent.failure(index, "Item is empty", 0));
+        }
+        item.setSessionId(sessionId);
+        // A hedge would double the batch's requests against the providers' rate limits
+        item.setHedge(false);
+        String invalid = validate(item);
+        if (invalid != null) {
+            return Mono.just(BatchAnalysisEvent.failure(index, invalid, 0));
+        }
+
+        return Mono.defer(() -> analyzeOnce(item, serviceName))
+            .retryWhen(Retry.max(rateLimitRetries).filter(ProviderRateLimiter::isRateLimited))
+            .map(response -> BatchAnalysisEvent.success(index, response, elapsedMillis(start)))
+            .onErrorResume(error -> {
+                logger.warn("Batch item {} failed for session: {}: {}", index, sessionId, error.getMessage());
+                return Mono.just(BatchAnalysisEvent.failure(index, error.getMessage(), elapsedMillis(start)));
+            });
+    }
+
+    /**
+     * One attempt: picks the service and analyzes on a worker thread, where the provider call
+     * waits for its rate limit slot; cached answers take no slot
+     */
+    private Mono<AnalysisResponse> analyzeOnce(AnalysisRequest item, String serviceName) {
+        return Mono.fromCallable(() -> codeAnalysisService.analyzeIndependently(item,
+                aiServiceFactory.resolveServiceName(serviceName, LatencyTracker.Kind.RESPONSE)))
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMap(response -> response.isSuccess()
+                ? Mono.just(response)
+                : Mono.error(new AIServiceException(response.getAnalysis())));
+    }
+
+    private String validate(AnalysisRequest item) {
+        if (AnalysisType.FOLLOWUP.equals(item.getAnalysisType())) {
+            return "Follow-up questions are not supported in a batch";
+        }
+        Set<ConstraintViolation<AnalysisRequest>> violations = validator.validate(item);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+            .map(ConstraintViolation::getMessage)
+            .sorted()
+            .collect(Collectors.joining("; "));
+    }
+
+    private static long elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * Running totals of a batch
+     */
+    private static final class Stats {
+
+        private volatile long start;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger cacheHits = new AtomicInteger();
+        private final AtomicLong itemMillis = new AtomicLong();
+        private final List<Integer> failedIndexes = Collections.synchronizedList(new ArrayList<>());
+
+        void add(BatchAnalysisEvent event) {
+            completed.incrementAndGet();
+            itemMillis.addAndGet(event.getDurationMillis());
+            if (Boolean.TRUE.equals(event.getSuccess())) {
+                if (event.getResponse().isCacheHit()) {
+                    cacheHits.incrementAndGet();
+                }
+            } else {
+                failed.incrementAndGet();
+                failedIndexes.add(event.getIndex());
+            }
+        }
+
+        BatchAnalysisEvent.Summary summary(int total, int concurrency) {
+            long durationMillis = elapsedMillis(start);
+            int done = completed.get();
+            List<Integer> failures;
+            synchronized (failedIndexes) {
+                failures = new ArrayList<>(failedIndexes);
+            }
+            Collections.sort(failures);
+            return BatchAnalysisEvent.Summary.builder()
+                .total(total)
+                .succeeded(done - failed.get())
+                .failed(failed.get())
+                .cacheHits(cacheHits.get())
+                .concurrency(concurrency)
+                .durationMillis(durationMillis)
+                .itemsPerMinute(durationMillis == 0 ? 0 : done * 60_000.0 / durationMillis)
+                .averageItemMillis(done == 0 ? 0 : itemMillis.get() / done)
+                .failedIndexes(failures)
+                .build();
+        }
+    }
+}
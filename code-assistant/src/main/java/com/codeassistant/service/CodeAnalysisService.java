@@ -3,9 +3,17 @@ package com.codeassistant.service;
 import com.codeassistant.model.AnalysisRequest;
 import com.codeassistant.model.AnalysisResponse;
 import com.codeassistant.model.StreamingAnalysisResponse;
+import com.codeassistant.model.UserMessage;
 import com.codeassistant.service.ai.AIChatService;
 import com.codeassistant.service.ai.AIServiceException;
+import com.codeassistant.service.ai.PromptMetrics;
+import com.codeassistant.service.cache.AnalysisCache;
 import com.codeassistant.service.factory.AIServiceFactory;
+import com.codeassistant.service.memory.ConversationWindow;
+import com.codeassistant.service.routing.HedgedRequestExecutor;
+import com.codeassistant.service.routing.LatencyTracker;
+import com.codeassistant.service.routing.ProviderRouter;
+import com.codeassistant.service.streaming.TokenCoalescer;
 import com.common.service.SessionManager;
 import dev.langchain4j.memory.ChatMemory;
 import org.slf4j.Logger;
@@ -15,6 +23,10 @@ import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import com.codeassistant.model.AnalysisType;
 
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Main service for code analysis that uses the Strategy pattern with Factory pattern.
  * This service acts as a facade and can work with different AI providers dynamically.
@@ -27,11 +39,24 @@ public class CodeAnalysisService {
     
     private final AIServiceFactory aiServiceFactory;
     private final SessionManager sessionManager;
+    private final TokenCoalescer tokenCoalescer;
+    private final ConversationWindow conversationWindow;
+    private final PromptMetrics promptMetrics;
+    private final HedgedRequestExecutor hedgedRequestExecutor;
+    private final AnalysisCache analysisCache;
     
     @Autowired
-    public CodeAnalysisService(AIServiceFactory aiServiceFactory, SessionManager sessionManager) {
+    public CodeAnalysisService(AIServiceFactory aiServiceFactory, SessionManager sessionManager,
+                               TokenCoalescer tokenCoalescer, ConversationWindow conversationWindow,
+                               PromptMetrics promptMetrics, HedgedRequestExecutor hedgedRequestExecutor,
+                               AnalysisCache analysisCache) {
         this.aiServiceFactory = aiServiceFactory;
         this.sessionManager = sessionManager;
+        this.tokenCoalescer = tokenCoalescer;
+        this.conversationWindow = conversationWindow;
+        this.promptMetrics = promptMetrics;
+        this.hedgedRequestExecutor = hedgedRequestExecutor;
+        this.analysisCache = analysisCache;
         logger.info("CodeAnalysisService initialized with AI service factory and session manager");
     }
     
@@ -52,28 +77,82 @@ public class CodeAnalysisService {
             throw new AIServiceException("Session not found: " + request.getSessionId());
         }
         
+        // "auto" picks a provider; a named provider with an open circuit is turned away
+        String resolvedService = aiServiceFactory.resolveServiceName(serviceName, LatencyTracker.Kind.RESPONSE);
+        return analyze(request, resolvedService, true);
+    }
+    
+    /**
+     * Analyzes code without session memory: the request neither sees nor extends the conversation.
+     * Used for batch items, which are independent of each other.
+     * 
+     * @param request The analysis request
+     * @param resolvedService A service name as returned by AIServiceFactory.resolveServiceName
+     * @return AnalysisResponse with the results
+     * @throws AIServiceException if the service fails or session is invalid
+     */
+    public AnalysisResponse analyzeIndependently(AnalysisRequest request, String resolvedService) throws AIServiceException {
+        if (!sessionManager.sessionExists(request.getSessionId())) {
+            throw new AIServiceException("Session not found: " + request.getSessionId());
+        }
+        return analyze(request, resolvedService, false);
+    }
+    
+    private AnalysisResponse analyze(AnalysisRequest request, String resolvedService, boolean withSessionMemory)
+            throws AIServiceException {
         try {
-            AIChatService service = aiServiceFactory.getService(serviceName);
+            AIChatService service = aiServiceFactory.getService(resolvedService);
             logger.info("Using specific AI service: {} for session: {}", service.getClass().getSimpleName(), request.getSessionId());
             
-            // Get session memory and enhance request with conversation context
             ChatMemory sessionMemory = sessionManager.getSessionMemory(request.getSessionId());
-            AnalysisRequest enhancedRequest = enhanceRequestWithMemory(request, sessionMemory);
             
-            AnalysisResponse response = service.analyzeCode(enhancedRequest);
+            // Enhance request with conversation context
+            AnalysisRequest enhancedRequest = withSessionMemory
+                ? enhanceRequestWithMemory(request, sessionMemory) : request;
+            
+            // Analyses of identical code sent without history are answered from the cache
+            String cacheKey = analysisCache.isCacheable(enhancedRequest)
+                ? analysisCache.key(request, service.getProviderName()) : null;
+            Optional<String> cached = cacheKey != null ? analysisCache.get(cacheKey) : Optional.empty();
             
-            // Log the LLM response
-            logger.info("LLM response received - Session: {}, Response length: {}", 
-                request.getSessionId(), response.getAnalysis().length());
-            logger.info("=== LLM RESPONSE ===");
-            logger.info(response.getAnalysis());
-            logger.info("=== END OF RESPONSE ===");
+            AnalysisResponse response;
+            if (cached.isPresent()) {
+                logger.info("Analysis served from cache - Session: {}, Type: {}, Response length: {}",
+                    request.getSessionId(), request.getAnalysisType(), cached.get().length());
+                aiServiceFactory.releaseService(resolvedService);
+                response = AnalysisResponse.builder()
+                    .analysis(cached.get())
+                    .analysisType(request.getAnalysisType())
+                    .language(request.getLanguage())
+                    .success(true)
+                    .cacheHit(true)
+                    .build();
+            } else {
+                // Hedged with a second provider if the request asks for it
+                HedgedRequestExecutor.Result result = hedgedRequestExecutor.analyze(enhancedRequest, resolvedService);
+                response = result.response();
+                
+                // Full responses are captured by the sampled trace of the AI service
+                logger.info("LLM response received - Session: {}, Service: {}, Response length: {}", 
+                    request.getSessionId(), result.service(), response.getAnalysis().length());
+                
+                // Stored under the model that answered, which is the hedge's if it won
+                if (cacheKey != null && response.isSuccess()) {
+                    AIChatService producer = aiServiceFactory.getService(result.service());
+                    analysisCache.put(analysisCache.key(request, producer.getProviderName()), response.getAnalysis());
+                }
+            }
+            
+            response.setSessionId(request.getSessionId());
+            if (!withSessionMemory) {
+                response.setConversationContext("Session: " + request.getSessionId() + " | Independent of conversation memory");
+                return response;
+            }
             
             // Add messages to chat memory for future follow-ups
             addToChatMemory(sessionMemory, request, response);
             
             // Update response with session information
-            response.setSessionId(request.getSessionId());
             response.setConversationContext("Session: " + request.getSessionId() + " | Messages in memory: " + 
                 (sessionMemory.messages().size() + 1)); // +1 for current message
             
@@ -106,20 +185,42 @@ public class CodeAnalysisService {
         }
         
         try {
-            AIChatService service = aiServiceFactory.getService(serviceName);
+            String resolvedService = aiServiceFactory.resolveServiceName(serviceName, LatencyTracker.Kind.FIRST_TOKEN);
+            AIChatService service = aiServiceFactory.getService(resolvedService);
             logger.info("Using specific AI service for streaming: {} for session: {}", service.getClass().getSimpleName(), request.getSessionId());
             
-            // Get session memory and enhance request with conversation context
             ChatMemory sessionMemory = sessionManager.getSessionMemory(request.getSessionId());
+            
+            // Enhance request with conversation context
             AnalysisRequest enhancedRequest = enhanceRequestWithMemory(request, sessionMemory);
             
-            Flux<StreamingAnalysisResponse> response = service.streamAnalysis(enhancedRequest);
+            // A cached analysis is replayed as a stream instead of asking the provider, unless
+            // the request carries history the answer would depend on
+            String cacheKey = analysisCache.isCacheable(enhancedRequest)
+                ? analysisCache.key(request, service.getProviderName()) : null;
+            Optional<String> cached = cacheKey != null ? analysisCache.get(cacheKey) : Optional.empty();
+            
+            Flux<StreamingAnalysisResponse> response;
+            AtomicReference<String> producer = new AtomicReference<>();
+            if (cached.isPresent()) {
+                logger.info("Streaming analysis replayed from cache - Session: {}, Type: {}, Response length: {}",
+                    request.getSessionId(), request.getAnalysisType(), cached.get().length());
+                aiServiceFactory.releaseService(resolvedService);
+                response = analysisCache.replay(cached.get(), request.getAnalysisType(), request.getLanguage());
+            } else {
+                response = hedgedRequestExecutor.stream(enhancedRequest, resolvedService, producer::set);
+            }
             
             // Stream immediately and collect for memory storage
             StringBuilder fullResponseBuilder = new StringBuilder();
+            AtomicBoolean failed = new AtomicBoolean();
             
-            return response
+            // Tokens are coalesced into fewer, larger SSE events
+            return tokenCoalescer.coalesce(response, request)
                 .doOnNext(chunk -> {
+                    if ("error".equals(chunk.getEventType())) {
+                        failed.set(true);
+                    }
                     // Log each chunk as it's emitted (for debugging)
                     if (chunk.getContent() != null) {
                         logger.debug("Streaming chunk - Session: {}, Chunk length: {}", 
@@ -134,9 +235,6 @@ public class CodeAnalysisService {
                     if (!completeResponse.isEmpty()) {
                         logger.info("LLM response received - Session: {}, Response length: {}", 
                             request.getSessionId(), completeResponse.length());
-                        logger.info("=== LLM RESPONSE ===");
-                        logger.info(completeResponse);
-                        logger.info("=== END OF RESPONSE ===");
                         
                         // Create a mock AnalysisResponse for memory storage
                         AnalysisResponse mockResponse = AnalysisResponse.builder()
@@ -147,8 +245,16 @@ public class CodeAnalysisService {
                         
                         // Add to chat memory
                         addToChatMemory(sessionMemory, request, mockResponse);
+                        
+                        // Stored under the model that answered, and never a placeholder stream
+                        if (cacheKey != null && cached.isEmpty() && !failed.get() && producer.get() != null) {
+                            cacheStreamedAnalysis(request, producer.get(), completeResponse);
+                        }
                     }
-                });
+                })
+                // A cancelled stream is an unfinished answer and stays out of session memory
+                .doOnCancel(() -> logger.info("Streaming analysis cancelled - Session: {}, Partial response length: {}",
+                    request.getSessionId(), fullResponseBuilder.length()));
             
         } catch (AIServiceException e) {
             logger.error("AI service failed to stream analysis for session: {}", request.getSessionId(), e);
@@ -159,14 +265,25 @@ public class CodeAnalysisService {
         }
     }
     
+    private void cacheStreamedAnalysis(AnalysisRequest request, String serviceName, String analysis) {
+        try {
+            AIChatService service = aiServiceFactory.getService(serviceName);
+            if (service.supportsStreaming()) {
+                analysisCache.put(analysisCache.key(request, service.getProviderName()), analysis);
+            }
+        } catch (AIServiceException e) {
+            logger.warn("Streamed analysis not cached for session: {}: {}", request.getSessionId(), e.getMessage());
+        }
+    }
+    
     /**
      * Enhances the analysis request with conversation memory context.
-     * This method works uniformly for all strategies and adds conversation context
-     * when memory exists, regardless of the analysis type.
+     * This method works uniformly for all strategies: earlier turns that fit the token window
+     * are attached as chat messages, sent between the system prompt and the current request.
      * 
      * @param request The original request
      * @param sessionMemory The session's chat memory
-     * @return Enhanced request with conversation context (if memory exists)
+     * @return Enhanced request with conversation history (if memory exists)
      */
     private AnalysisRequest enhanceRequestWithMemory(AnalysisRequest request, ChatMemory sessionMemory) {
         // If no memory exists, return the request as-is
@@ -176,31 +293,23 @@ public class CodeAnalysisService {
             return request;
         }
         
-        // Add conversation context for any request with existing memory
-        StringBuilder enhancedCode = new StringBuilder();
-        
-        // Add conversation context from previous messages
-        enhancedCode.append("// Previous conversation context:\n");
-        sessionMemory.messages().forEach(message -> {
-            enhancedCode.append("// ").append(message.type()).append(": ").append(message.text()).append("\n");
-        });
-        enhancedCode.append("\n// Current request:\n");
-        
-        // Add the current request content
-        String codeContent = request.getCode() != null ? request.getCode() : "";
-        enhancedCode.append(codeContent);
-        
-        String finalPrompt = enhancedCode.toString();
+        ConversationWindow.Window window = conversationWindow.select(sessionMemory.messages());
+        promptMetrics.recordHistory(window.tokens(), window.omittedMessages());
         
         // Log the memory enhancement
-        logger.info("Request enhanced with memory - Type: {}, Language: {}, Session: {}, Memory: {} messages", 
-            request.getAnalysisType(), request.getLanguage(), request.getSessionId(), sessionMemory.messages().size());
+        logger.info("Request enhanced with memory - Type: {}, Language: {}, Session: {}, History: {} messages, ~{} tokens, {} omitted", 
+            request.getAnalysisType(), request.getLanguage(), request.getSessionId(),
+            window.messages().size(), window.tokens(), window.omittedMessages());
         
         return new AnalysisRequest(
-            finalPrompt,
+            request.getCode(),
             request.getAnalysisType(),
             request.getLanguage(),
-            request.getSessionId()
+            request.getSessionId(),
+            request.getCoalesceChars(),
+            request.getCoalesceMillis(),
+            request.getHedge(),
+            window.messages()
         );
     }
     
@@ -216,8 +325,9 @@ public class CodeAnalysisService {
         try {
             int memoryBefore = sessionMemory.messages().size();
             
-            // Add the user message to the memory
-            sessionMemory.add(dev.langchain4j.data.message.UserMessage.from(request.getCode()));
+            // Add the user message to the memory as the model saw it, code fenced with its language
+            sessionMemory.add(dev.langchain4j.data.message.UserMessage.from(UserMessage.createAnalysisMessage(
+                request.getCode(), request.getAnalysisType(), request.getLanguage()).getContent()));
             
             // Add the AI response to the memory
             sessionMemory.add(dev.langchain4j.data.message.AiMessage.from(response.getAnalysis()));
@@ -241,6 +351,15 @@ public class CodeAnalysisService {
         return aiServiceFactory.getAllAvailableServices();
     }
     
+    /**
+     * Gets the live routing table of the AI services.
+     * 
+     * @return Health, latency and circuit state per service, best first
+     */
+    public java.util.List<ProviderRouter.Route> getRoutingTable() {
+        return aiServiceFactory.getRoutingTable();
+    }
+    
     /**
      * Checks if any AI service is available.
      * 
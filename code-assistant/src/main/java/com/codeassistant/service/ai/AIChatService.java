@@ -35,4 +35,19 @@ public interface AIChatService {
      * @return true if the service is available, false otherwise
      */
     boolean isAvailable();
+    
+    /**
+     * Checks if streamAnalysis streams the provider's answer token by token, rather than
+     * returning a placeholder.
+     * 
+     * @return true if the service really streams
+     */
+    boolean supportsStreaming();
+    
+    /**
+     * Gets the AI provider this service calls.
+     * 
+     * @return The provider's service name from AIServiceConstants (e.g. "openai")
+     */
+    String getProviderName();
 } 
\ No newline at end of file
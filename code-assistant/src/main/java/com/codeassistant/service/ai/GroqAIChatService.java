@@ -7,6 +7,7 @@ import com.codeassistant.model.StreamingAnalysisResponse;
 import com.codeassistant.service.strategy.AnalysisStrategy;
 import com.common.AIServiceManager;
 import com.common.AIServiceConstants;
+import com.common.service.TraceCaptureService;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
@@ -33,11 +34,17 @@ public class GroqAIChatService implements AIChatService {
     
     private final Map<com.codeassistant.model.AnalysisType, AnalysisStrategy> analysisStrategies;
     private final AIServiceManager aiServiceManager;
+    private final TraceCaptureService traceCaptureService;
+    private final PromptMetrics promptMetrics;
     
     public GroqAIChatService(@Autowired AIServiceManager aiServiceManager,
-                             @Autowired List<AnalysisStrategy> strategies) {
+                             @Autowired List<AnalysisStrategy> strategies,
+                            @Autowired TraceCaptureService traceCaptureService,
+                            @Autowired PromptMetrics promptMetrics) {
         
         this.aiServiceManager = aiServiceManager;
+        this.traceCaptureService = traceCaptureService;
+        this.promptMetrics = promptMetrics;
         
         // Initialize analysis strategies
         this.analysisStrategies = strategies.stream()
@@ -59,26 +66,31 @@ public class GroqAIChatService implements AIChatService {
             ChatLanguageModel chatModel = aiServiceManager.getModel(AIServiceConstants.GROQ_SERVICE, null);
             
             // Use the strategy to build messages (maintains Strategy pattern)
-            List<ChatMessage> messages = strategy.buildMessages(request).toLangChain4jMessages();
+            List<ChatMessage> messages = strategy.buildMessages(request).toLangChain4jMessages(request.getHistory());
             
-            // Log the actual LLM prompt after strategy processing
             logger.info("LLM prompt sent - Session: {}, Type: {}, Language: {}", 
                 request.getSessionId(), request.getAnalysisType(), request.getLanguage());
-            logger.info("=== FULL PROMPT SENT TO LLM ===");
-            messages.forEach(message -> {
-                logger.info("{}: {}", message.type(), message.text());
-            });
-            logger.info("=== END OF PROMPT ===");
+            // Full prompt and response are captured for sampled requests only
+            TraceCaptureService.Trace trace = startTrace("analyze", request).prompt(messages);
             
-            Response<AiMessage> response = chatModel.generate(messages);
+            Response<AiMessage> response;
+            try {
+                response = chatModel.generate(messages);
+            } catch (RuntimeException e) {
+                trace.fail(e);
+                throw e;
+            }
             
             String analysis = response.content().text();
+            trace.finish(analysis);
+            promptMetrics.record(AIServiceConstants.GROQ_SERVICE, messages, response);
             
             return AnalysisResponse.builder()
                 .analysis(analysis)
                 .analysisType(request.getAnalysisType())
                 .language(request.getLanguage())
                 .success(true)
+                .promptTokens(response.tokenUsage() != null ? response.tokenUsage().inputTokenCount() : null)
                 .build();
                 
         } catch (Exception e) {
@@ -103,10 +115,7 @@ public class GroqAIChatService implements AIChatService {
             MessagePair messages = strategy.buildMessages(request);
             
             // Convert to LangChain4j message types
-            List<ChatMessage> chatMessages = List.of(
-                new dev.langchain4j.data.message.SystemMessage(messages.getSystemMessage().getContent()),
-                new dev.langchain4j.data.message.UserMessage(messages.getUserMessage().getContent())
-            );
+            List<ChatMessage> chatMessages = messages.toLangChain4jMessages(request.getHistory());
             
             // For now, return a simple streaming response
             // TODO: Implement proper streaming when LangChain4j API is stable
@@ -122,8 +131,25 @@ public class GroqAIChatService implements AIChatService {
         }
     }
     
+    private TraceCaptureService.Trace startTrace(String operation, AnalysisRequest request) {
+        return traceCaptureService.start("code-assistant", operation, request.getSessionId())
+            .service(AIServiceConstants.GROQ_SERVICE)
+            .attribute("analysisType", request.getAnalysisType())
+            .attribute("language", request.getLanguage());
+    }
+    
     @Override
     public boolean isAvailable() {
         return true; // Service is available, user can provide API key
     }
+    
+    @Override
+    public boolean supportsStreaming() {
+        return false; // streamAnalysis returns a placeholder until Groq streaming is implemented
+    }
+    
+    @Override
+    public String getProviderName() {
+        return AIServiceConstants.GROQ_SERVICE;
+    }
 } 
\ No newline at end of file
@@ -4,8 +4,11 @@ import com.codeassistant.model.AnalysisRequest;
 import com.codeassistant.model.AnalysisResponse;
 import com.codeassistant.model.StreamingAnalysisResponse;
 import com.codeassistant.service.strategy.AnalysisStrategy;
+import com.codeassistant.service.streaming.StreamCancellation;
+import com.codeassistant.service.streaming.StreamMetrics;
 import com.common.AIServiceManager;
 import com.common.AIServiceConstants;
+import com.common.service.TraceCaptureService;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
@@ -33,11 +36,20 @@ public class OpenAIChatService implements AIChatService {
     
     private final Map<com.codeassistant.model.AnalysisType, AnalysisStrategy> analysisStrategies;
     private final AIServiceManager aiServiceManager;
+    private final TraceCaptureService traceCaptureService;
+    private final StreamMetrics streamMetrics;
+    private final PromptMetrics promptMetrics;
     
     public OpenAIChatService(@Autowired AIServiceManager aiServiceManager,
-                            @Autowired List<AnalysisStrategy> strategies) {
+                            @Autowired List<AnalysisStrategy> strategies,
+                            @Autowired TraceCaptureService traceCaptureService,
+                            @Autowired StreamMetrics streamMetrics,
+                            @Autowired PromptMetrics promptMetrics) {
         
         this.aiServiceManager = aiServiceManager;
+        this.traceCaptureService = traceCaptureService;
+        this.streamMetrics = streamMetrics;
+        this.promptMetrics = promptMetrics;
         
         // Initialize analysis strategies
         this.analysisStrategies = strategies.stream()
@@ -59,26 +71,31 @@ public class OpenAIChatService implements AIChatService {
             ChatLanguageModel chatModel = aiServiceManager.getModel(AIServiceConstants.OPENAI_SERVICE, null);
             
             // Use the strategy to build messages (maintains Strategy pattern)
-            List<ChatMessage> messages = strategy.buildMessages(request).toLangChain4jMessages();
+            List<ChatMessage> messages = strategy.buildMessages(request).toLangChain4jMessages(request.getHistory());
             
-            // Log the actual LLM prompt after strategy processing
             logger.info("LLM prompt sent - Session: {}, Type: {}, Language: {}", 
                 request.getSessionId(), request.getAnalysisType(), request.getLanguage());
-            logger.info("=== FULL PROMPT SENT TO LLM ===");
-            messages.forEach(message -> {
-                logger.info("{}: {}", message.type(), message.text());
-            });
-            logger.info("=== END OF PROMPT ===");
+            // Full prompt and response are captured for sampled requests only
+            TraceCaptureService.Trace trace = startTrace("analyze", request).prompt(messages);
             
-            Response<AiMessage> response = chatModel.generate(messages);
+            Response<AiMessage> response;
+            try {
+                response = chatModel.generate(messages);
+            } catch (RuntimeException e) {
+                trace.fail(e);
+                throw e;
+            }
             
             String analysis = response.content().text();
+            trace.finish(analysis);
+            promptMetrics.record(AIServiceConstants.OPENAI_SERVICE, messages, response);
             
             return AnalysisResponse.builder()
                 .analysis(analysis)
                 .analysisType(request.getAnalysisType())
                 .language(request.getLanguage())
                 .success(true)
+                .promptTokens(response.tokenUsage() != null ? response.tokenUsage().inputTokenCount() : null)
                 .build();
                 
         } catch (Exception e) {
@@ -100,30 +117,40 @@ public class OpenAIChatService implements AIChatService {
             StreamingChatLanguageModel streamingModel = aiServiceManager.getStreamingModel(AIServiceConstants.OPENAI_SERVICE, null);
             
             // Use the strategy to build messages (maintains Strategy pattern)
-            List<ChatMessage> messages = strategy.buildMessages(request).toLangChain4jMessages();
+            List<ChatMessage> messages = strategy.buildMessages(request).toLangChain4jMessages(request.getHistory());
 
-            // Log the actual LLM prompt after strategy processing
             logger.info("LLM prompt sent (streaming) - Session: {}, Type: {}, Language: {}", 
                 request.getSessionId(), request.getAnalysisType(), request.getLanguage());
-            logger.info("=== FULL PROMPT SENT TO LLM (STREAMING) ===");
-            messages.forEach(message -> {
-                logger.info("{}: {}", message.type(), message.text());
-            });
-            logger.info("=== END OF PROMPT (STREAMING) ===");
+            TraceCaptureService.Trace trace = startTrace("analyze-stream", request).prompt(messages);
+            StringBuilder answer = new StringBuilder();
 
             // Implement proper streaming using Flux.create and StreamingResponseHandler
             return Flux.create(emitter -> {
+                // Aborts the provider call once the subscriber is gone
+                StreamCancellation cancellation = new StreamCancellation(
+                    AIServiceConstants.OPENAI_SERVICE, request.getSessionId(), streamMetrics, emitter);
                 try {
                     streamingModel.generate(messages, new StreamingResponseHandler<AiMessage>() {
                         @Override
                         public void onNext(String token) {
+                            if (!cancellation.onToken()) {
+                                return;
+                            }
                             // Emit each token as a content chunk
                            // logger.info("Emitting content: "+token);
+                            if (trace.isSampled()) {
+                                answer.append(token);
+                            }
                             emitter.next(StreamingAnalysisResponse.contentChunk(token, request.getAnalysisType(), request.getLanguage()));
                         }
 
                         @Override
                         public void onComplete(Response<AiMessage> response) {
+                            if (cancellation.onEnd()) {
+                                return;
+                            }
+                            trace.finish(answer.toString());
+                            promptMetrics.record(AIServiceConstants.OPENAI_SERVICE, messages, response);
                             // Emit completion event
                             emitter.next(StreamingAnalysisResponse.complete(request.getAnalysisType(), request.getLanguage()));
                             emitter.complete();
@@ -131,6 +158,11 @@ public class OpenAIChatService implements AIChatService {
                         
                         @Override
                         public void onError(Throwable error) {
+                            // The abort after a cancellation surfaces here as an I/O error
+                            if (cancellation.onEnd()) {
+                                return;
+                            }
+                            trace.fail(error);
                             // Emit error event
                             emitter.next(StreamingAnalysisResponse.error("Streaming error: " + error.getMessage(), 
                                 request.getAnalysisType(), request.getLanguage()));
@@ -139,6 +171,7 @@ public class OpenAIChatService implements AIChatService {
                     });
                 } catch (Exception e) {
                     logger.error("Error in streaming generation", e);
+                    trace.fail(e);
                     emitter.next(StreamingAnalysisResponse.error("Failed to start streaming: " + e.getMessage(), 
                         request.getAnalysisType(), request.getLanguage()));
                     emitter.complete();
@@ -151,8 +184,25 @@ public class OpenAIChatService implements AIChatService {
         }
     }
     
+    private TraceCaptureService.Trace startTrace(String operation, AnalysisRequest request) {
+        return traceCaptureService.start("code-assistant", operation, request.getSessionId())
+            .service(AIServiceConstants.OPENAI_SERVICE)
+            .attribute("analysisType", request.getAnalysisType())
+            .attribute("language", request.getLanguage());
+    }
+    
     @Override
     public boolean isAvailable() {
         return true; // Service is available, user can provide API key
     }
+    
+    @Override
+    public boolean supportsStreaming() {
+        return true;
+    }
+    
+    @Override
+    public String getProviderName() {
+        return AIServiceConstants.OPENAI_SERVICE;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.codeassistant.service.ai;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Micrometer meters for how much of each prompt is a stable, cacheable prefix.
+ *
+ * The system prompt is precompiled per analysis type and language (see SystemMessage), so it is
+ * the prefix providers can serve from their prompt cache. Its share is recorded against the input
+ * tokens the provider reports. The client library does not return the provider's own cached-token
+ * count, so this is the upper bound of what can be cached rather than what was.
+ *
+ * Conversation history sent with each request is recorded as well, with the number of stored
+ * messages the token window left out.
+ */
+@Component
+public class PromptMetrics {
+
+    public static final String INPUT_TOKENS = "code.prompt.input.tokens";
+    public static final String PREFIX_SHARE = "code.prompt.prefix.share";
+    public static final String HISTORY_TOKENS = "code.prompt.history.tokens";
+    public static final String HISTORY_MESSAGES_OMITTED = "code.prompt.history.omitted";
+
+    public static final String TAG_SERVICE = "service";
+
+    private final MeterRegistry registry;
+    private final Tokenizer tokenizer = new OpenAiTokenizer("gpt-3.5-turbo");
+
+    // Token counts of the precompiled system prompts; bounded by analysis types times languages
+    private final Map<String, Integer> prefixTokens = new ConcurrentHashMap<>();
+
+    public PromptMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Record a provider response to the given prompt, if the provider reported its token usage
+     */
+    public void record(String service, List<ChatMessage> messages, Response<AiMessage> response) {
+        if (response == null || response.tokenUsage() == null
+                || response.tokenUsage().inputTokenCount() == null
+                || response.tokenUsage().inputTokenCount() <= 0
+                || messages.isEmpty() || !(messages.get(0) instanceof SystemMessage)) {
+            return;
+        }
+        int inputTokens = response.tokenUsage().inputTokenCount();
+        int prefix = prefixTokens.computeIfAbsent(((SystemMessage) messages.get(0)).text(),
+            tokenizer::estimateTokenCountInText);
+
+        DistributionSummary.builder(INPUT_TOKENS)
+            .description("Prompt tokens reported by the provider per request")
+            .baseUnit("tokens")
+            .tag(TAG_SERVICE, service)
+            .register(registry)
+            .record(inputTokens);
+        DistributionSummary.builder(PREFIX_SHARE)
+            .description("Share of prompt tokens in the precompiled prefix providers can cache")
+            .tag(TAG_SERVICE, service)
+            .register(registry)
+            .record(Math.min(1.0, (double) prefix / inputTokens));
+    }
+    
+    /**
+     * Estimated tokens of the conversation history sent with a request
+     */
+    public void recordHistory(int tokens, int omittedMessages) {
+        DistributionSummary.builder(HISTORY_TOKENS)
+            .description("Estimated conversation history tokens sent per request")
+            .baseUnit("tokens")
+            .register(registry)
+            .record(tokens);
+        DistributionSummary.builder(HISTORY_MESSAGES_OMITTED)
+            .description("Stored conversation messages left out of a request")
+            .baseUnit("messages")
+            .register(registry)
+            .record(omittedMessages);
+    }
+}
@@ -0,0 +1,246 @@
+package com.codeassistant.service.cache;
+
+import com.codeassistant.model.AnalysisRequest;
+import com.codeassistant.model.AnalysisType;
+import com.codeassistant.model.StreamingAnalysisResponse;
+import com.common.AIServiceManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Cache of analyses of identical code, keyed by a hash of the normalized code, analysis type,
+ * language and model.
+ *
+ * Only analyses sent without conversation history are cached. The session's earlier turns go
+ * to the model with every analysis type, so an answer given with history depends on that session
+ * and is neither served from nor stored in the cache. Follow-ups and code generation are never
+ * cached, since they depend on the conversation or on wording. Code is normalized to ignore line endings, trailing whitespace and
+ * surrounding blank lines, while indentation is kept since it can be meaningful.
+ *
+ * Entries live in a bounded, least-recently-used memory tier and, if enabled, in a directory of
+ * JSON files that survives restarts. Both tiers drop entries older than the TTL. Streaming
+ * requests get a cached analysis replayed as a stream of chunks.
+ */
+@Component
+public class AnalysisCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisCache.class);
+
+    public static final String LOOKUPS = "code.analysis.cache.lookups";
+
+    private static final Set<AnalysisType> CACHEABLE_TYPES =
+        EnumSet.of(AnalysisType.ANALYZE, AnalysisType.DEBUG, AnalysisType.REFACTOR);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MeterRegistry registry;
+    private final AIServiceManager aiServiceManager;
+    private final Map<String, Entry> memory;
+
+    @Value("${code-assistant.analysis-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${code-assistant.analysis-cache.ttl:PT24H}")
+    private Duration ttl;
+
+    @Value("${code-assistant.analysis-cache.disk.enabled:false}")
+    private boolean diskEnabled;
+
+    @Value("${code-assistant.analysis-cache.disk.directory:./cache/analysis}")
+    private String diskDirectory;
+
+    @Value("${code-assistant.analysis-cache.replay-chunk-chars:64}")
+    private int replayChunkChars;
+
+    @Value("${code-assistant.analysis-cache.replay-interval:PT0.01S}")
+    private Duration replayInterval;
+
+    /**
+     * A cached analysis and when it was produced
+     */
+    public record Entry(String analysis, long createdAt) {
+    }
+
+    public AnalysisCache(MeterRegistry registry, AIServiceManager aiServiceManager,
+                         @Value("${code-assistant.analysis-cache.max-entries:1000}") int maxEntries) {
+        this.registry = registry;
+        this.aiServiceManager = aiServiceManager;
+        // Least recently used analyses are evicted first
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Whether the request, as it will be sent to the provider, has an answer independent of any
+     * session
+     */
+    public boolean isCacheable(AnalysisRequest request) {
+        return enabled && CACHEABLE_TYPES.contains(request.getAnalysisType())
+            && (request.getHistory() == null || request.getHistory().isEmpty());
+    }
+
+    /**
+     * Cache key of the request's analysis by the provider's configured model
+     */
+    public String key(AnalysisRequest request, String provider) {
+        String model = provider + "/" + aiServiceManager.getModelName(provider);
+        String language = request.getLanguage() == null ? "" : request.getLanguage().toLowerCase();
+        String input = String.join("\u0000", normalize(request.getCode()), request.getAnalysisType().name(),
+            language, model);
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(input.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public Optional<String> get(String key) {
+        Entry entry;
+        synchronized (memory) {
+            entry = memory.get(key);
+            if (entry != null && isExpired(entry)) {
+                memory.remove(key);
+                entry = null;
+            }
+        }
+        if (entry != null) {
+            count("hit", "memory");
+            return Optional.of(entry.analysis());
+        }
+        entry = readFromDisk(key);
+        if (entry != null) {
+            synchronized (memory) {
+                memory.put(key, entry);
+            }
+            count("hit", "disk");
+            return Optional.of(entry.analysis());
+        }
+        count("miss", "none");
+        return Optional.empty();
+    }
+
+    public void put(String key, String analysis) {
+        if (analysis == null || analysis.isBlank()) {
+            return;
+        }
+        Entry entry = new Entry(analysis, System.currentTimeMillis());
+        synchronized (memory) {
+            memory.put(key, entry);
+        }
+        writeToDisk(key, entry);
+    }
+
+    /**
+     * A cached analysis as a stream: content chunks at the replay interval, then completion
+     */
+    public Flux<StreamingAnalysisResponse> replay(String analysis, AnalysisType analysisType, String language) {
+        List<String> chunks = new ArrayList<>();
+        int size = Math.max(1, replayChunkChars);
+        for (int start = 0; start < analysis.length(); start += size) {
+            chunks.add(analysis.substring(start, Math.min(analysis.length(), start + size)));
+        }
+        Flux<String> content = Flux.fromIterable(chunks);
+        if (!replayInterval.isZero()) {
+            content = content.delayElements(replayInterval);
+        }
+        return content
+            .map(chunk -> StreamingAnalysisResponse.contentChunk(chunk, analysisType, language))
+            .concatWith(Mono.fromSupplier(() -> StreamingAnalysisResponse.complete(analysisType, language)));
+    }
+
+    private boolean isExpired(Entry entry) {
+        return System.currentTimeMillis() - entry.createdAt() > ttl.toMillis();
+    }
+
+    private Entry readFromDisk(String key) {
+        if (!diskEnabled) {
+            return null;
+        }
+        Path file = diskFile(key);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            Entry entry = objectMapper.readValue(file.toFile(), Entry.class);
+            if (isExpired(entry)) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            return entry;
+        } catch (IOException e) {
+            logger.warn("Failed to read cached analysis {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        if (!diskEnabled) {
+            return;
+        }
+        Path file = diskFile(key);
+        try {
+            Files.createDirectories(file.getParent());
+            // Written aside and moved, so readers never see a partial file
+            Path temp = Files.createTempFile(file.getParent(), key, ".tmp");
+            objectMapper.writeValue(temp.toFile(), entry);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to write cached analysis {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Path diskFile(String key) {
+        // Two-character fan-out keeps directories small
+        return Paths.get(diskDirectory, key.substring(0, 2), key + ".json");
+    }
+
+    private void count(String result, String tier) {
+        Counter.builder(LOOKUPS)
+            .description("Analysis cache lookups by result and tier")
+            .tag("result", result)
+            .tag("tier", tier)
+            .register(registry)
+            .increment();
+    }
+
+    static String normalize(String code) {
+        if (code == null) {
+            return "";
+        }
+        String[] lines = code.replace("\r\n", "\n").replace('\r', '\n').split("\n", -1);
+        StringBuilder normalized = new StringBuilder(code.length());
+        for (String line : lines) {
+            normalized.append(line.stripTrailing()).append('\n');
+        }
+        return normalized.toString().replaceFirst("^\n+", "").stripTrailing();
+    }
+}
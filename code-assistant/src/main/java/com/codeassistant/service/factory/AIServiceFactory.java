@@ -2,6 +2,8 @@ package com.codeassistant.service.factory;
 
 import com.codeassistant.service.ai.AIChatService;
 import com.codeassistant.service.ai.AIServiceException;
+import com.codeassistant.service.routing.LatencyTracker;
+import com.codeassistant.service.routing.ProviderRouter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,16 +16,24 @@ import java.util.stream.Collectors;
 /**
  * Factory class for AI services that demonstrates the Strategy pattern.
  * This allows dynamic selection of AI providers based on availability and preferences.
+ * 
+ * Requests name a provider or "auto"; the provider router picks the healthiest, fastest
+ * provider for "auto" and turns away named providers whose circuit breaker is open. Streaming
+ * requests are only routed to services that really stream.
  */
 @Component
 public class AIServiceFactory {
     
     private static final Logger logger = LoggerFactory.getLogger(AIServiceFactory.class);
     
+    public static final String AUTO_SERVICE = "auto";
+    
     private final Map<String, AIChatService> availableServices;
+    private final ProviderRouter providerRouter;
     
     @Autowired
-    public AIServiceFactory(List<AIChatService> services) {
+    public AIServiceFactory(List<AIChatService> services, ProviderRouter providerRouter) {
+        this.providerRouter = providerRouter;
         this.availableServices = services.stream()
             .filter(AIChatService::isAvailable)
             .collect(Collectors.toMap(
@@ -52,6 +62,54 @@ public class AIServiceFactory {
         return service;
     }
     
+    /**
+     * Resolves the service a request should use: the healthiest, fastest one for "auto", otherwise
+     * the named service if its circuit breaker lets the request through.
+     * 
+     * @param serviceName The name of the service, or "auto"
+     * @param kind Whether the request waits for a full response or for the first streamed token
+     * @return The name of the service to use
+     * @throws AIServiceException if no service can take the request
+     */
+    public String resolveServiceName(String serviceName, LatencyTracker.Kind kind) throws AIServiceException {
+        if (AUTO_SERVICE.equalsIgnoreCase(serviceName)) {
+            List<String> candidates = availableServices.entrySet().stream()
+                .filter(entry -> kind != LatencyTracker.Kind.FIRST_TOKEN || entry.getValue().supportsStreaming())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+            String chosen = providerRouter.choose(candidates, kind)
+                .orElseThrow(() -> new AIServiceException(
+                    "No AI service is available: all circuit breakers are open after repeated failures"));
+            logger.debug("Routed '{}' request to service: {}", AUTO_SERVICE, chosen);
+            return chosen;
+        }
+        getService(serviceName);
+        if (!providerRouter.tryAcquire(serviceName)) {
+            throw new AIServiceException("Service '" + serviceName + "' is temporarily unavailable after repeated failures. " +
+                "Use '" + AUTO_SERVICE + "' to route to a healthy service.");
+        }
+        return serviceName;
+    }
+    
+    /**
+     * Gives back the admission taken by resolveServiceName when no provider call is made,
+     * e.g. because the answer came from the cache.
+     * 
+     * @param serviceName A service name as returned by resolveServiceName
+     */
+    public void releaseService(String serviceName) {
+        providerRouter.release(serviceName);
+    }
+    
+    /**
+     * Gets the live routing table: health, latency and circuit state per service, best first.
+     * 
+     * @return Routes of all available services
+     */
+    public List<ProviderRouter.Route> getRoutingTable() {
+        return providerRouter.routingTable(availableServices.keySet(), LatencyTracker.Kind.RESPONSE);
+    }
+    
     /**
      * Gets all available services.
      * 
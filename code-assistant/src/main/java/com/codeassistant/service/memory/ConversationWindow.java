@@ -0,0 +1,145 @@
+package com.codeassistant.service.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Selects the part of a session's memory that is sent with a request, as chat messages between the
+ * system prompt and the current request.
+ *
+ * Messages are taken newest first until the token budget is spent. The latest exchange keeps its
+ * code verbatim, since follow-ups usually refer to it. Earlier code blocks longer than the
+ * configured size are replaced by a short reference naming their language, length and first
+ * line, and any single message is cut to the per-message cap. The window always starts with a
+ * user message so the turns stay paired.
+ */
+@Component
+public class ConversationWindow {
+
+    // A fenced code block: opening fence with optional language, body, closing fence
+    private static final Pattern CODE_BLOCK = Pattern.compile("```([\\w+#.-]*)\\n(.*?)\\n?```", Pattern.DOTALL);
+
+    private static final String TRUNCATED_MARKER = "\n[... truncated ...]";
+
+    private final Tokenizer tokenizer = new OpenAiTokenizer("gpt-3.5-turbo");
+
+    @Value("${code-assistant.memory.history-max-tokens:3000}")
+    private int maxHistoryTokens;
+
+    @Value("${code-assistant.memory.message-max-tokens:1000}")
+    private int maxMessageTokens;
+
+    @Value("${code-assistant.memory.code-block-max-tokens:200}")
+    private int maxCodeBlockTokens;
+
+    /**
+     * History messages to send, their estimated tokens, and how many stored messages were left out
+     */
+    public record Window(List<ChatMessage> messages, int tokens, int omittedMessages) {
+    }
+
+    public Window select(List<ChatMessage> memory) {
+        List<ChatMessage> turns = new ArrayList<>();
+        for (ChatMessage message : memory) {
+            if (message instanceof UserMessage || message instanceof AiMessage) {
+                turns.add(message);
+            }
+        }
+
+        List<ChatMessage> selected = new ArrayList<>();
+        int tokens = 0;
+        // The latest exchange is the last user message and everything after it
+        int latestExchange = lastUserMessage(turns);
+        for (int i = turns.size() - 1; i >= 0; i--) {
+            boolean fromUser = turns.get(i) instanceof UserMessage;
+            String text = fromUser ? text((UserMessage) turns.get(i)) : ((AiMessage) turns.get(i)).text();
+            if (i < latestExchange) {
+                text = referenceLongCode(text);
+            }
+            text = truncate(text, maxMessageTokens);
+            ChatMessage compacted = fromUser ? UserMessage.from(text) : AiMessage.from(text);
+            int messageTokens = tokenizer.estimateTokenCountInMessage(compacted);
+            if (tokens + messageTokens > maxHistoryTokens) {
+                break;
+            }
+            selected.add(compacted);
+            tokens += messageTokens;
+        }
+        // Drop answers whose question did not fit
+        while (!selected.isEmpty() && !(selected.get(selected.size() - 1) instanceof UserMessage)) {
+            tokens -= tokenizer.estimateTokenCountInMessage(selected.remove(selected.size() - 1));
+        }
+        Collections.reverse(selected);
+        return new Window(selected, tokens, memory.size() - selected.size());
+    }
+
+    /**
+     * Text parts of a user message; memory only holds text, but a message may have several parts
+     */
+    private static String text(UserMessage message) {
+        return message.contents().stream()
+            .filter(TextContent.class::isInstance)
+            .map(content -> ((TextContent) content).text())
+            .collect(Collectors.joining("\n"));
+    }
+
+    private static int lastUserMessage(List<ChatMessage> turns) {
+        for (int i = turns.size() - 1; i >= 0; i--) {
+            if (turns.get(i) instanceof UserMessage) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    private String referenceLongCode(String text) {
+        Matcher matcher = CODE_BLOCK.matcher(text);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            String code = matcher.group(2);
+            String replacement = matcher.group();
+            if (tokenizer.estimateTokenCountInText(code) > maxCodeBlockTokens) {
+                replacement = codeReference(matcher.group(1), code);
+            }
+            matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static String codeReference(String language, String code) {
+        String[] lines = code.split("\n");
+        String firstLine = "";
+        for (String line : lines) {
+            if (!line.isBlank()) {
+                firstLine = line.strip();
+                break;
+            }
+        }
+        return String.format("[Earlier %scode omitted: %d lines, starting with `%s`]",
+            language.isEmpty() ? "" : language + " ", lines.length, firstLine);
+    }
+
+    private String truncate(String text, int maxTokens) {
+        int tokens = tokenizer.estimateTokenCountInText(text);
+        if (tokens <= maxTokens) {
+            return text;
+        }
+        // Tokens are spread evenly enough over a message to cut it proportionally
+        int end = (int) ((long) text.length() * maxTokens / tokens);
+        return text.substring(0, end) + TRUNCATED_MARKER;
+    }
+}
@@ -0,0 +1,355 @@
+package com.codeassistant.service.routing;
+
+import com.codeassistant.model.AnalysisRequest;
+import com.codeassistant.model.AnalysisResponse;
+import com.codeassistant.model.StreamingAnalysisResponse;
+import com.codeassistant.service.ai.AIChatService;
+import com.codeassistant.service.ai.AIServiceException;
+import com.codeassistant.service.factory.AIServiceFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Runs analyses on the requested AI service, optionally hedged with a second provider.
+ *
+ * A hedged request goes to the requested (primary) service first. If no response, or for streams
+ * no first token, arrives within the primary's recent latency percentile, the same request also
+ * goes to another available service. Whichever produces a value first wins and the other call is
+ * cancelled; a primary that fails outright leaves the hedge to answer. Until a service has enough
+ * latency samples the hedge waits a fixed initial delay.
+ *
+ * Hedging is off unless the request asks for it or it is enabled by default. Latencies and
+ * failures are recorded for every call, hedged or not, except for calls cancelled because the
+ * other call won or the client went away. Providers whose circuit is open are never used as
+ * the hedge, and streams are only hedged between services that really stream.
+ *
+ * Every provider call waits for a slot of its provider's rate limit; a hedge is only sent if a
+ * slot is free at once, and its delay counts from the primary's slot rather than from the request. Rate-limit errors pause the provider instead of counting as failures, so
+ * a burst of them does not open its circuit.
+ */
+@Component
+public class HedgedRequestExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgedRequestExecutor.class);
+
+    public static final String HEDGE_REQUESTS = "code.hedge.requests";
+    public static final String HEDGE_WINS = "code.hedge.wins";
+
+    private static final String MODE_ANALYZE = "analyze";
+    private static final String MODE_STREAM = "stream";
+    private static final String CONTENT_EVENT = "content";
+    private static final String ERROR_EVENT = "error";
+
+    private final AIServiceFactory aiServiceFactory;
+    private final LatencyTracker latencyTracker;
+    private final ProviderRouter providerRouter;
+    private final ProviderRateLimiter rateLimiter;
+    private final MeterRegistry registry;
+
+    @Value("${code-assistant.hedge.enabled-by-default:false}")
+    private boolean enabledByDefault;
+
+    @Value("${code-assistant.hedge.percentile:95}")
+    private double percentile;
+
+    @Value("${code-assistant.hedge.min-samples:20}")
+    private int minSamples;
+
+    @Value("${code-assistant.hedge.initial-delay:PT3S}")
+    private Duration initialDelay;
+
+    @Value("${code-assistant.hedge.min-delay:PT0.5S}")
+    private Duration minDelay;
+
+    @Value("${code-assistant.hedge.max-delay:PT20S}")
+    private Duration maxDelay;
+
+    /**
+     * A response and the service that produced it, which differs from the requested one when the
+     * hedge won
+     */
+    public record Result(String service, AnalysisResponse response) {
+    }
+
+    public HedgedRequestExecutor(AIServiceFactory aiServiceFactory, LatencyTracker latencyTracker,
+                                 ProviderRouter providerRouter, ProviderRateLimiter rateLimiter,
+                                 MeterRegistry registry) {
+        this.aiServiceFactory = aiServiceFactory;
+        this.latencyTracker = latencyTracker;
+        this.providerRouter = providerRouter;
+        this.rateLimiter = rateLimiter;
+        this.registry = registry;
+    }
+
+    public Result analyze(AnalysisRequest request, String serviceName) throws AIServiceException {
+        AIChatService primary = aiServiceFactory.getService(serviceName);
+        Optional<String> backup = isHedged(request) ? backupFor(serviceName, false) : Optional.empty();
+        Duration primaryWait = rateLimiter.reserve(primary.getProviderName());
+        if (backup.isEmpty()) {
+            return new Result(serviceName, timedAnalyze(serviceName, primary, request, primaryWait, () -> false));
+        }
+
+        Duration delay = hedgeDelay(serviceName, LatencyTracker.Kind.RESPONSE);
+        AtomicBoolean hedgeSent = new AtomicBoolean();
+        AtomicReference<Throwable> primaryError = new AtomicReference<>();
+
+        Mono<Map.Entry<Boolean, AnalysisResponse>> first = analyzeAsync(serviceName, primary, request, primaryWait)
+            .doOnError(primaryError::set)
+            .map(response -> Map.entry(false, response));
+        // The primary is not slow while it is only waiting for its slot
+        Mono<Map.Entry<Boolean, AnalysisResponse>> second = Mono.delay(primaryWait.plus(delay))
+            .then(Mono.defer(() -> {
+                AIChatService hedge = aiServiceFactory.getService(backup.get());
+                if (!rateLimiter.tryAcquire(hedge.getProviderName()) || !providerRouter.tryAcquire(backup.get())) {
+                    return Mono.empty();
+                }
+                hedgeSent.set(true);
+                logger.info("Hedging analysis - Session: {}, Primary: {}, Hedge: {}, After: {} ms",
+                    request.getSessionId(), serviceName, backup.get(), delay.toMillis());
+                return analyzeAsync(backup.get(), hedge, request, Duration.ZERO);
+            }))
+            .map(response -> Map.entry(true, response));
+
+        try {
+            Map.Entry<Boolean, AnalysisResponse> result = Mono.firstWithValue(first, second).block();
+            record(MODE_ANALYZE, hedgeSent.get(), result.getKey());
+            return new Result(result.getKey() ? backup.get() : serviceName, result.getValue());
+        } catch (RuntimeException e) {
+            record(MODE_ANALYZE, hedgeSent.get(), null);
+            Throwable cause = primaryError.get() != null ? primaryError.get() : Exceptions.unwrap(e);
+            if (cause instanceof AIServiceException) {
+                throw (AIServiceException) cause;
+            }
+            throw new AIServiceException("Analysis failed on all services: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Streams the analysis; onProducer is told which service's events are delivered, once the
+     * first one is
+     */
+    public Flux<StreamingAnalysisResponse> stream(AnalysisRequest request, String serviceName,
+                                                  Consumer<String> onProducer) throws AIServiceException {
+        AIChatService primary = aiServiceFactory.getService(serviceName);
+        // A stream is only hedged between services that really stream; a placeholder would win
+        Optional<String> backup = isHedged(request) && primary.supportsStreaming()
+            ? backupFor(serviceName, true) : Optional.empty();
+        Flux<StreamingAnalysisResponse> events = primary.streamAnalysis(request);
+        if (backup.isEmpty()) {
+            AtomicBoolean first = new AtomicBoolean(true);
+            // The provider call starts on subscription, so the slot is booked then
+            return Flux.defer(() -> timedStream(serviceName, primary, events,
+                    rateLimiter.reserve(primary.getProviderName())))
+                .doOnNext(event -> {
+                    if (first.compareAndSet(true, false)) {
+                        onProducer.accept(serviceName);
+                    }
+                });
+        }
+        return Flux.defer(() -> hedgedStream(request, serviceName, primary, events, backup.get(), onProducer));
+    }
+
+    private Flux<StreamingAnalysisResponse> hedgedStream(AnalysisRequest request, String serviceName,
+                                                         AIChatService primary,
+                                                         Flux<StreamingAnalysisResponse> events, String backup,
+                                                         Consumer<String> onProducer) {
+        Duration primaryWait = rateLimiter.reserve(primary.getProviderName());
+        Duration delay = hedgeDelay(serviceName, LatencyTracker.Kind.FIRST_TOKEN);
+        AtomicBoolean hedgeSent = new AtomicBoolean();
+        AtomicReference<Boolean> hedgeWon = new AtomicReference<>();
+        AtomicReference<Throwable> primaryError = new AtomicReference<>();
+
+        Flux<Map.Entry<Boolean, StreamingAnalysisResponse>> first =
+            raceableStream(serviceName, timedStream(serviceName, primary, events, primaryWait))
+                .doOnError(primaryError::set)
+                .map(event -> Map.entry(false, event));
+        // The primary is not slow while it is only waiting for its slot
+        Flux<Map.Entry<Boolean, StreamingAnalysisResponse>> second = Mono.delay(primaryWait.plus(delay))
+            .thenMany(Flux.defer(() -> {
+                try {
+                    AIChatService hedge = aiServiceFactory.getService(backup);
+                    if (!rateLimiter.tryAcquire(hedge.getProviderName()) || !providerRouter.tryAcquire(backup)) {
+                        return Flux.empty();
+                    }
+                    hedgeSent.set(true);
+                    logger.info("Hedging stream - Session: {}, Primary: {}, Hedge: {}, After: {} ms",
+                        request.getSessionId(), serviceName, backup, delay.toMillis());
+                    return raceableStream(backup,
+                        timedStream(backup, hedge, hedge.streamAnalysis(request), Duration.ZERO));
+                } catch (AIServiceException e) {
+                    return Flux.error(e);
+                }
+            }))
+            .map(event -> Map.entry(true, event));
+
+        return Flux.firstWithValue(first, second)
+            .doOnNext(entry -> {
+                if (hedgeWon.compareAndSet(null, entry.getKey())) {
+                    onProducer.accept(entry.getKey() ? backup : serviceName);
+                }
+            })
+            .map(Map.Entry::getValue)
+            .onErrorResume(e -> {
+                Throwable cause = primaryError.get() != null ? primaryError.get() : e;
+                return Flux.just(StreamingAnalysisResponse.error("Streaming failed on all services: " + cause.getMessage(),
+                    request.getAnalysisType(), request.getLanguage()));
+            })
+            .doFinally(signal -> record(MODE_STREAM, hedgeSent.get(), hedgeWon.get()));
+    }
+
+    private boolean isHedged(AnalysisRequest request) {
+        return request.getHedge() != null ? request.getHedge() : enabledByDefault;
+    }
+
+    private Optional<String> backupFor(String serviceName, boolean streaming) {
+        return aiServiceFactory.getAllAvailableServices().entrySet().stream()
+            .filter(entry -> !streaming || entry.getValue().supportsStreaming())
+            .map(Map.Entry::getKey)
+            .filter(name -> !name.equals(serviceName) && !providerRouter.isOpen(name))
+            .sorted()
+            .findFirst();
+    }
+
+    private Duration hedgeDelay(String serviceName, LatencyTracker.Kind kind) {
+        Duration delay = latencyTracker.percentile(serviceName, kind, percentile, minSamples).orElse(initialDelay);
+        if (delay.compareTo(minDelay) < 0) {
+            return minDelay;
+        }
+        return delay.compareTo(maxDelay) > 0 ? maxDelay : delay;
+    }
+
+    /**
+     * A provider call, after waiting for the rate limit slot booked for it
+     */
+    private AnalysisResponse timedAnalyze(String serviceName, AIChatService service, AnalysisRequest request,
+                                          Duration slotWait, BooleanSupplier cancelled) throws AIServiceException {
+        awaitSlot(slotWait, service, request);
+        long start = System.nanoTime();
+        AnalysisResponse response;
+        try {
+            response = service.analyzeCode(request);
+        } catch (RuntimeException e) {
+            if (!cancelled.getAsBoolean()) {
+                recordFailure(serviceName, service, ProviderRateLimiter.isRateLimited(e));
+            }
+            throw e;
+        }
+        Duration latency = Duration.ofNanos(System.nanoTime() - start);
+        latencyTracker.record(serviceName, LatencyTracker.Kind.RESPONSE, latency);
+        providerRouter.recordSuccess(serviceName, LatencyTracker.Kind.RESPONSE, latency);
+        return response;
+    }
+
+    /**
+     * Blocking analysis on a worker thread; cancelling it interrupts the provider call
+     */
+    private Mono<AnalysisResponse> analyzeAsync(String serviceName, AIChatService service, AnalysisRequest request,
+                                                Duration slotWait) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        return Mono.fromCallable(() -> timedAnalyze(serviceName, service, request, slotWait, cancelled::get))
+            .subscribeOn(Schedulers.boundedElastic())
+            .doOnCancel(() -> cancelled.set(true));
+    }
+
+    /**
+     * The service's events, subscribed once the rate limit slot booked for them is due
+     */
+    private Flux<StreamingAnalysisResponse> timedStream(String serviceName, AIChatService service,
+                                                         Flux<StreamingAnalysisResponse> events, Duration slotWait) {
+        // A placeholder stream says nothing about how fast the provider answers
+        boolean recordsFirstToken = service.supportsStreaming();
+        return Flux.defer(() -> {
+            long start = System.nanoTime() + slotWait.toNanos();
+            AtomicBoolean firstToken = new AtomicBoolean(true);
+            AtomicBoolean failed = new AtomicBoolean();
+            Flux<StreamingAnalysisResponse> timed = events
+                .doOnNext(event -> {
+                    if (recordsFirstToken && CONTENT_EVENT.equals(event.getEventType())
+                            && firstToken.compareAndSet(true, false)) {
+                        Duration latency = Duration.ofNanos(System.nanoTime() - start);
+                        latencyTracker.record(serviceName, LatencyTracker.Kind.FIRST_TOKEN, latency);
+                        providerRouter.recordSuccess(serviceName, LatencyTracker.Kind.FIRST_TOKEN, latency);
+                    } else if (ERROR_EVENT.equals(event.getEventType()) && failed.compareAndSet(false, true)) {
+                        recordFailure(serviceName, service, ProviderRateLimiter.isRateLimited(event.getError()));
+                    }
+                })
+                .doOnError(error -> {
+                    if (failed.compareAndSet(false, true)) {
+                        recordFailure(serviceName, service, ProviderRateLimiter.isRateLimited(error));
+                    }
+                });
+            return slotWait.isZero() ? timed : timed.delaySubscription(slotWait);
+        });
+    }
+
+    private void awaitSlot(Duration wait, AIChatService service, AnalysisRequest request) throws AIServiceException {
+        if (wait.isZero()) {
+            return;
+        }
+        logger.debug("Waiting {} ms for a rate limit slot - Provider: {}, Session: {}",
+            wait.toMillis(), service.getProviderName(), request.getSessionId());
+        try {
+            Thread.sleep(wait.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AIServiceException("Interrupted while waiting for a rate limit slot", e);
+        }
+    }
+
+    /**
+     * A rate-limit error pauses the provider and says nothing about its health, so a probe it was
+     * admitted as is given back; anything else counts towards its circuit breaker
+     */
+    private void recordFailure(String serviceName, AIChatService service, boolean rateLimited) {
+        if (rateLimited) {
+            rateLimiter.backOff(service.getProviderName());
+            providerRouter.release(serviceName);
+        } else {
+            providerRouter.recordFailure(serviceName);
+        }
+    }
+
+    /**
+     * A stream whose leading error event becomes an error signal, so it cannot win the race
+     */
+    private Flux<StreamingAnalysisResponse> raceableStream(String serviceName,
+                                                            Flux<StreamingAnalysisResponse> stream) {
+        return stream
+            .switchOnFirst((signal, events) -> signal.hasValue() && ERROR_EVENT.equals(signal.get().getEventType())
+                ? Flux.error(new AIServiceException(serviceName + ": " + signal.get().getError()))
+                : events);
+    }
+
+    private void record(String mode, boolean hedged, Boolean hedgeWon) {
+        Counter.builder(HEDGE_REQUESTS)
+            .description("Hedge-enabled requests, by whether the hedge was sent")
+            .tag("mode", mode)
+            .tag("hedged", Boolean.toString(hedged))
+            .register(registry)
+            .increment();
+        if (hedged) {
+            Counter.builder(HEDGE_WINS)
+                .description("Hedged requests by which call produced the answer")
+                .tag("mode", mode)
+                .tag("winner", hedgeWon == null ? "none" : hedgeWon ? "hedge" : "primary")
+                .register(registry)
+                .increment();
+        }
+    }
+}
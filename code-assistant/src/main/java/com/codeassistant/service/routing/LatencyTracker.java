@@ -0,0 +1,83 @@
+package com.codeassistant.service.routing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Recent latencies per AI service, for percentile-based decisions such as when to hedge.
+ *
+ * Each service keeps the last samples of full responses and, separately, of the first streamed
+ * token, in fixed-size rings, so percentiles follow the provider's current behaviour rather than
+ * its history.
+ */
+@Component
+public class LatencyTracker {
+
+    public enum Kind {
+        RESPONSE, FIRST_TOKEN
+    }
+
+    @Value("${code-assistant.latency.window-size:200}")
+    private int windowSize;
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    public void record(String service, Kind kind, Duration latency) {
+        windows.computeIfAbsent(service + ":" + kind, key -> new Window(windowSize)).add(latency.toMillis());
+    }
+
+    /**
+     * The given percentile (0-100) of the recent latencies, once at least minSamples were recorded
+     */
+    public Optional<Duration> percentile(String service, Kind kind, double percentile, int minSamples) {
+        Window window = windows.get(service + ":" + kind);
+        if (window == null) {
+            return Optional.empty();
+        }
+        long[] samples = window.snapshot();
+        if (samples.length == 0 || samples.length < minSamples) {
+            return Optional.empty();
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(percentile / 100.0 * samples.length) - 1;
+        return Optional.of(Duration.ofMillis(samples[Math.max(0, Math.min(index, samples.length - 1))]));
+    }
+
+    /**
+     * Number of samples currently held for a service
+     */
+    public int sampleCount(String service, Kind kind) {
+        Window window = windows.get(service + ":" + kind);
+        return window == null ? 0 : window.snapshot().length;
+    }
+
+    /**
+     * Ring of the most recent samples in milliseconds
+     */
+    private static final class Window {
+
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        Window(int capacity) {
+            this.samples = new long[Math.max(1, capacity)];
+        }
+
+        synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(samples, size);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.codeassistant.service.routing;
+
+import com.common.AIServiceConstants;
+import dev.ai4j.openai4j.OpenAiHttpException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Paces requests to each AI provider to stay under its requests-per-minute limit.
+ *
+ * Every provider call, interactive or batch, primary or hedge, takes a slot. Requests are spaced
+ * evenly: each reservation returns how long to wait for the next free slot and books the slot
+ * after it. A provider that answers with a rate-limit error pushes its next slot out by the
+ * backoff. A limit of zero or less means unlimited.
+ */
+@Component
+public class ProviderRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderRateLimiter.class);
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    // Wording of rate-limit errors; a bare "429" may be part of a token count or an id
+    private static final Pattern RATE_LIMIT_MESSAGE =
+        Pattern.compile("\\brate[ _-]?limit|\\btoo many requests\\b", Pattern.CASE_INSENSITIVE);
+
+    @Value("${code-assistant.rate-limit.openai.requests-per-minute:60}")
+    private int openAiRequestsPerMinute;
+
+    @Value("${code-assistant.rate-limit.groq.requests-per-minute:30}")
+    private int groqRequestsPerMinute;
+
+    @Value("${code-assistant.rate-limit.backoff:PT10S}")
+    private Duration backoff;
+
+    // Earliest time, in System.nanoTime(), of each provider's next free slot
+    private final Map<String, Long> nextSlots = new ConcurrentHashMap<>();
+
+    /**
+     * Books the provider's next slot and returns how long to wait for it
+     */
+    public Duration reserve(String provider) {
+        int requestsPerMinute = requestsPerMinute(provider);
+        if (requestsPerMinute <= 0) {
+            return Duration.ZERO;
+        }
+        long interval = Duration.ofMinutes(1).toNanos() / requestsPerMinute;
+        long now = System.nanoTime();
+        long slot = nextSlots.compute(provider, (name, next) -> Math.max(now, next == null ? now : next) + interval)
+            - interval;
+        return Duration.ofNanos(Math.max(0, slot - now));
+    }
+
+    /**
+     * Books the provider's next slot only if it is free now; for requests not worth waiting for
+     */
+    public boolean tryAcquire(String provider) {
+        int requestsPerMinute = requestsPerMinute(provider);
+        if (requestsPerMinute <= 0) {
+            return true;
+        }
+        long interval = Duration.ofMinutes(1).toNanos() / requestsPerMinute;
+        long now = System.nanoTime();
+        boolean[] acquired = new boolean[1];
+        nextSlots.compute(provider, (name, next) -> {
+            if (next != null && next > now) {
+                return next;
+            }
+            acquired[0] = true;
+            return now + interval;
+        });
+        return acquired[0];
+    }
+
+    /**
+     * Holds back the provider's requests for the backoff after it reported a rate limit
+     */
+    public void backOff(String provider) {
+        long resumeAt = System.nanoTime() + backoff.toNanos();
+        nextSlots.merge(provider, resumeAt, Math::max);
+        logger.warn("Rate limited by AI provider: {}, pausing its requests for {} ms", provider, backoff.toMillis());
+    }
+
+    /**
+     * Whether the error, or one of its causes, is a provider rate-limit response: an HTTP 429, or
+     * failing a status code, a message that says so
+     */
+    public static boolean isRateLimited(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OpenAiHttpException httpError) {
+                return httpError.code() == TOO_MANY_REQUESTS;
+            }
+            if (isRateLimited(cause.getMessage())) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an error message, e.g. of a streamed error event, reports a provider rate limit
+     */
+    public static boolean isRateLimited(String message) {
+        return message != null && RATE_LIMIT_MESSAGE.matcher(message).find();
+    }
+
+    private int requestsPerMinute(String provider) {
+        if (AIServiceConstants.OPENAI_SERVICE.equals(provider)) {
+            return openAiRequestsPerMinute;
+        }
+        if (AIServiceConstants.GROQ_SERVICE.equals(provider)) {
+            return groqRequestsPerMinute;
+        }
+        return 0;
+    }
+}
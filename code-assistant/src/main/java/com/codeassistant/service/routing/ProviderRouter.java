@@ -0,0 +1,215 @@
+package com.codeassistant.service.routing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Health of each AI provider, for picking one automatically and for failing fast on a broken one.
+ *
+ * Per provider it keeps exponentially weighted moving averages of response latency, time to first
+ * streamed token and error rate, plus a circuit breaker. The circuit opens after the configured
+ * number of consecutive failures; while open the provider gets no requests. After the open
+ * duration a single probe request is let through (half-open): success closes the circuit, failure
+ * opens it again. A request admitted as the probe that ends without a verdict, e.g. because it was
+ * answered from the cache or rate limited, gives the probe back. A probe that never reports back,
+ * e.g. because its client went away, is replaced by a new one after another open duration.
+ *
+ * The best provider is the one with an allowing circuit and the lowest latency for the kind of
+ * request, scaled up by its error rate. Providers without samples yet score zero, so each gets
+ * tried early on.
+ */
+@Component
+public class ProviderRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderRouter.class);
+
+    public enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * One row of the live routing table
+     */
+    public record Route(String service, CircuitState circuit, Double latencyMillis, Double firstTokenMillis,
+                        double errorRate, int consecutiveFailures, long requests, long failures, double score) {
+    }
+
+    @Value("${code-assistant.routing.ewma-alpha:0.2}")
+    private double alpha;
+
+    @Value("${code-assistant.routing.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${code-assistant.routing.open-duration:PT30S}")
+    private Duration openDuration;
+
+    @Value("${code-assistant.routing.error-rate-penalty:4}")
+    private double errorRatePenalty;
+
+    private final Map<String, Health> providers = new ConcurrentHashMap<>();
+
+    public void recordSuccess(String service, LatencyTracker.Kind kind, Duration latency) {
+        health(service).success(kind, latency.toNanos() / 1_000_000.0);
+    }
+
+    public void recordFailure(String service) {
+        health(service).failure();
+    }
+
+    /**
+     * Whether a request may go to the provider now; in half-open state this admits the probe
+     */
+    public boolean tryAcquire(String service) {
+        return health(service).tryAcquire();
+    }
+
+    /**
+     * Gives back an admission for a request that ended without telling anything about the
+     * provider's health, so a half-open circuit can send its probe right away
+     */
+    public void release(String service) {
+        health(service).release();
+    }
+
+    /**
+     * The best provider among the candidates for the kind of request, admitting its request
+     */
+    public Optional<String> choose(Collection<String> candidates, LatencyTracker.Kind kind) {
+        List<String> ranked = new ArrayList<>(candidates);
+        ranked.sort(Comparator.comparingDouble((String name) -> health(name).score(kind)).thenComparing(name -> name));
+        for (String name : ranked) {
+            if (health(name).tryAcquire()) {
+                return Optional.of(name);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public boolean isOpen(String service) {
+        return health(service).state() == CircuitState.OPEN;
+    }
+
+    public List<Route> routingTable(Collection<String> services, LatencyTracker.Kind kind) {
+        List<Route> routes = new ArrayList<>();
+        for (String service : services) {
+            routes.add(health(service).route(service, kind));
+        }
+        routes.sort(Comparator.comparingDouble(Route::score));
+        return routes;
+    }
+
+    private Health health(String service) {
+        return providers.computeIfAbsent(service, Health::new);
+    }
+
+    private final class Health {
+
+        private final String service;
+        private Double latencyMillis;
+        private Double firstTokenMillis;
+        private double errorRate;
+        private int consecutiveFailures;
+        private long requests;
+        private long failures;
+        private CircuitState state = CircuitState.CLOSED;
+        private long openedAt;
+        private boolean probeInFlight;
+        private long probeStartedAt;
+
+        Health(String service) {
+            this.service = service;
+        }
+
+        synchronized void success(LatencyTracker.Kind kind, double millis) {
+            requests++;
+            if (kind == LatencyTracker.Kind.FIRST_TOKEN) {
+                firstTokenMillis = average(firstTokenMillis, millis);
+            } else {
+                latencyMillis = average(latencyMillis, millis);
+            }
+            errorRate = average(errorRate, 0);
+            consecutiveFailures = 0;
+            if (state != CircuitState.CLOSED) {
+                logger.info("Circuit closed for AI service: {}", service);
+                state = CircuitState.CLOSED;
+                probeInFlight = false;
+            }
+        }
+
+        synchronized void failure() {
+            requests++;
+            failures++;
+            errorRate = average(errorRate, 1);
+            consecutiveFailures++;
+            if (state == CircuitState.HALF_OPEN
+                    || (state == CircuitState.CLOSED && consecutiveFailures >= failureThreshold)) {
+                logger.warn("Circuit opened for AI service: {} after {} consecutive failures",
+                    service, consecutiveFailures);
+                state = CircuitState.OPEN;
+                openedAt = System.nanoTime();
+                probeInFlight = false;
+            }
+        }
+
+        synchronized boolean tryAcquire() {
+            long now = System.nanoTime();
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (now - openedAt < openDuration.toNanos()) {
+                        return false;
+                    }
+                    state = CircuitState.HALF_OPEN;
+                    probeInFlight = true;
+                    probeStartedAt = now;
+                    logger.info("Circuit half-open for AI service: {}, sending a probe request", service);
+                    return true;
+                default:
+                    // One probe at a time, unless the last one never reported back
+                    if (probeInFlight && now - probeStartedAt < openDuration.toNanos()) {
+                        return false;
+                    }
+                    probeInFlight = true;
+                    probeStartedAt = now;
+                    return true;
+            }
+        }
+
+        synchronized void release() {
+            if (state == CircuitState.HALF_OPEN) {
+                probeInFlight = false;
+            }
+        }
+
+        synchronized CircuitState state() {
+            return state;
+        }
+
+        synchronized double score(LatencyTracker.Kind kind) {
+            Double latency = kind == LatencyTracker.Kind.FIRST_TOKEN && firstTokenMillis != null
+                ? firstTokenMillis : latencyMillis;
+            return (latency == null ? 0 : latency) * (1 + errorRatePenalty * errorRate);
+        }
+
+        synchronized Route route(String name, LatencyTracker.Kind kind) {
+            return new Route(name, state, latencyMillis, firstTokenMillis, errorRate, consecutiveFailures,
+                requests, failures, score(kind));
+        }
+
+        private double average(Double current, double sample) {
+            return current == null ? sample : alpha * sample + (1 - alpha) * current;
+        }
+    }
+}
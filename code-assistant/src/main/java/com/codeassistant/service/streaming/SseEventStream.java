@@ -0,0 +1,86 @@
+package com.codeassistant.service.streaming;
+
+import com.codeassistant.model.AnalysisRequest;
+import com.codeassistant.model.StreamingAnalysisResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns an analysis stream into Server-Sent Events for the reactive streaming endpoint.
+ *
+ * Events are written as the client consumes them, so the stream follows the connection's pace
+ * instead of holding a thread per open stream. Comment-only heartbeat events keep idle
+ * connections alive through proxies. A stream ends with an error event when no token arrives
+ * within the idle timeout or when it runs longer than the maximum duration.
+ */
+@Component
+public class SseEventStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(SseEventStream.class);
+
+    private static final String HEARTBEAT = "heartbeat";
+
+    @Value("${code-assistant.stream.heartbeat-interval:PT15S}")
+    private Duration heartbeatInterval;
+
+    @Value("${code-assistant.stream.idle-timeout:PT60S}")
+    private Duration idleTimeout;
+
+    @Value("${code-assistant.stream.max-duration:PT5M}")
+    private Duration maxDuration;
+
+    /**
+     * Events of one analysis stream, always ending with a "complete" or "error" event
+     */
+    public Flux<ServerSentEvent<StreamingAnalysisResponse>> toEvents(
+            Flux<StreamingAnalysisResponse> analysis, AnalysisRequest request) {
+        AtomicLong sequence = new AtomicLong();
+        AtomicBoolean ended = new AtomicBoolean();
+
+        Flux<ServerSentEvent<StreamingAnalysisResponse>> events = analysis
+            .timeout(idleTimeout)
+            .onErrorResume(TimeoutException.class, e -> Flux.just(failure(request,
+                "No response from the AI service for " + idleTimeout.toSeconds() + " seconds")))
+            .onErrorResume(e -> Flux.just(failure(request, e.getMessage())))
+            .doOnNext(response -> ended.compareAndSet(false, response.isComplete()))
+            // Streams that finish without a terminal event still end with one
+            .concatWith(Mono.fromSupplier(() -> ended.get() ? null
+                : StreamingAnalysisResponse.complete(request.getAnalysisType(), request.getLanguage())))
+            .map(response -> event(response, request, sequence.incrementAndGet()));
+
+        Flux<ServerSentEvent<StreamingAnalysisResponse>> heartbeats = Flux.interval(heartbeatInterval)
+            .map(tick -> ServerSentEvent.<StreamingAnalysisResponse>builder().comment(HEARTBEAT).build());
+
+        Flux<ServerSentEvent<StreamingAnalysisResponse>> deadline = Mono.delay(maxDuration)
+            .map(tick -> event(failure(request, "Stream exceeded " + maxDuration.toSeconds() + " seconds"),
+                request, sequence.incrementAndGet()))
+            .flux();
+
+        return Flux.merge(events, heartbeats, deadline)
+            .takeUntil(event -> event.data() != null && event.data().isComplete())
+            .doOnCancel(() -> logger.debug("SSE stream cancelled for session: {}", request.getSessionId()));
+    }
+
+    private static StreamingAnalysisResponse failure(AnalysisRequest request, String message) {
+        return StreamingAnalysisResponse.error(message, request.getAnalysisType(), request.getLanguage());
+    }
+
+    private static ServerSentEvent<StreamingAnalysisResponse> event(
+            StreamingAnalysisResponse response, AnalysisRequest request, long id) {
+        response.setSessionId(request.getSessionId());
+        return ServerSentEvent.builder(response)
+            .id(Long.toString(id))
+            .event(response.getEventType())
+            .build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.codeassistant.service.streaming;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.FluxSink;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ties one streamed provider call to its subscriber, and aborts the call once the subscriber
+ * cancels (client disconnect, emitter timeout or error).
+ *
+ * LangChain4j does not expose a handle to cancel a streaming call. Tokens are delivered on the
+ * HTTP client thread that reads the provider's response, so the first token arriving after the
+ * cancellation interrupts that thread: its next socket read fails, the event source closes the
+ * connection, and the provider stops generating.
+ */
+public final class StreamCancellation {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamCancellation.class);
+
+    private final String service;
+    private final String sessionId;
+    private final StreamMetrics streamMetrics;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicBoolean ended = new AtomicBoolean();
+    private final AtomicInteger tokensStreamed = new AtomicInteger();
+    private final AtomicInteger tokensDiscarded = new AtomicInteger();
+
+    public StreamCancellation(String service, String sessionId, StreamMetrics streamMetrics,
+                              FluxSink<?> sink) {
+        this.service = service;
+        this.sessionId = sessionId;
+        this.streamMetrics = streamMetrics;
+        sink.onCancel(this::cancel);
+    }
+
+    /**
+     * Whether a token should be emitted; after a cancellation it is discarded and the provider
+     * call aborted.
+     */
+    public boolean onToken() {
+        if (!cancelled.get()) {
+            tokensStreamed.incrementAndGet();
+            return true;
+        }
+        if (tokensDiscarded.getAndIncrement() == 0) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    /**
+     * Record how the provider call ended; returns true if the stream was cancelled, in which case
+     * nothing more should be emitted.
+     */
+    public boolean onEnd() {
+        if (!ended.compareAndSet(false, true)) {
+            return cancelled.get();
+        }
+        if (cancelled.get()) {
+            streamMetrics.recordDiscarded(service, tokensDiscarded.get());
+            return true;
+        }
+        streamMetrics.recordCompleted(service, tokensStreamed.get());
+        return false;
+    }
+
+    private void cancel() {
+        if (!ended.get() && cancelled.compareAndSet(false, true)) {
+            logger.info("Stream cancelled by client - Service: {}, Session: {}, Tokens streamed: {}",
+                service, sessionId, tokensStreamed.get());
+            streamMetrics.recordCancelled(service, tokensStreamed.get());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.codeassistant.service.streaming;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Micrometer meters for streamed analyses: how streams end, and what cancelling saves.
+ *
+ * Tokens saved by a cancellation cannot be observed, since the provider never generates them.
+ * They are estimated as the mean length of completed streams of the same service minus the
+ * tokens already streamed when the client left.
+ */
+@Component
+public class StreamMetrics {
+
+    public static final String STREAMS = "code.stream.requests";
+    public static final String TOKENS_SAVED = "code.stream.tokens.saved";
+    public static final String TOKENS_DISCARDED = "code.stream.tokens.discarded";
+
+    public static final String TAG_SERVICE = "service";
+    public static final String TAG_OUTCOME = "outcome";
+
+    private final MeterRegistry registry;
+
+    // Completed streams and their tokens per service, for the tokens-saved estimate
+    private final Map<String, LongAdder[]> completedTotals = new ConcurrentHashMap<>();
+
+    public StreamMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void recordCompleted(String service, int tokens) {
+        count(service, "completed");
+        LongAdder[] totals = completedTotals.computeIfAbsent(service,
+            key -> new LongAdder[] {new LongAdder(), new LongAdder()});
+        totals[0].increment();
+        totals[1].add(tokens);
+    }
+
+    /**
+     * A stream cancelled by its client after the given number of tokens was streamed
+     */
+    public void recordCancelled(String service, int tokensStreamed) {
+        count(service, "cancelled");
+        LongAdder[] totals = completedTotals.get(service);
+        if (totals != null && totals[0].sum() > 0) {
+            double meanTokens = (double) totals[1].sum() / totals[0].sum();
+            summary(TOKENS_SAVED, "Estimated tokens not generated because a stream was cancelled", service)
+                .record(Math.max(0, meanTokens - tokensStreamed));
+        }
+    }
+
+    /**
+     * Tokens that still arrived between the cancellation and the provider connection closing
+     */
+    public void recordDiscarded(String service, int tokens) {
+        summary(TOKENS_DISCARDED, "Tokens received after a stream was cancelled", service).record(tokens);
+    }
+
+    private void count(String service, String outcome) {
+        Counter.builder(STREAMS)
+            .description("Streamed analyses by outcome")
+            .tag(TAG_SERVICE, service)
+            .tag(TAG_OUTCOME, outcome)
+            .register(registry)
+            .increment();
+    }
+
+    private DistributionSummary summary(String name, String description, String service) {
+        return DistributionSummary.builder(name)
+            .description(description)
+            .baseUnit("tokens")
+            .tag(TAG_SERVICE, service)
+            .register(registry);
+    }
+}
@@ -0,0 +1,127 @@
+package com.codeassistant.service.streaming;
+
+import com.codeassistant.model.AnalysisRequest;
+import com.codeassistant.model.StreamingAnalysisResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces streamed content tokens into larger chunks before they become SSE events.
+ *
+ * A chunk is emitted once it holds at least the configured number of characters, or once its
+ * first token has waited the configured number of milliseconds, whichever comes first. Complete
+ * and error events flush the pending chunk and pass through unchanged. Thresholds can be
+ * overridden per request; zero for both streams every token as it arrives.
+ */
+@Component
+public class TokenCoalescer {
+
+    private static final String CONTENT_EVENT = "content";
+
+    private final Scheduler timer = Schedulers.parallel();
+
+    @Value("${code-assistant.stream.coalesce-chars:32}")
+    private int defaultMaxChars;
+
+    @Value("${code-assistant.stream.coalesce-millis:30}")
+    private int defaultMaxMillis;
+
+    /**
+     * Coalesce the content events of a stream using the request's thresholds, or the defaults
+     * where the request sets none.
+     */
+    public Flux<StreamingAnalysisResponse> coalesce(Flux<StreamingAnalysisResponse> source,
+                                                    AnalysisRequest request) {
+        int maxChars = request.getCoalesceChars() != null ? request.getCoalesceChars() : defaultMaxChars;
+        int maxMillis = request.getCoalesceMillis() != null ? request.getCoalesceMillis() : defaultMaxMillis;
+        if (maxChars <= 0 && maxMillis <= 0) {
+            return source;
+        }
+        return Flux.create(sink -> {
+            Buffer buffer = new Buffer(sink, maxChars, maxMillis);
+            Disposable upstream = source.subscribe(buffer::onNext, buffer::onError, buffer::onComplete);
+            sink.onDispose(() -> {
+                upstream.dispose();
+                buffer.cancelTimer();
+            });
+        });
+    }
+
+    /**
+     * Pending text of one stream; the upstream and the flush timer both call in, so all state is
+     * guarded by the buffer's monitor.
+     */
+    private final class Buffer {
+
+        private final FluxSink<StreamingAnalysisResponse> sink;
+        private final int maxChars;
+        private final int maxMillis;
+        private final StringBuilder pending = new StringBuilder();
+        private StreamingAnalysisResponse template;
+        private Disposable scheduledFlush;
+
+        Buffer(FluxSink<StreamingAnalysisResponse> sink, int maxChars, int maxMillis) {
+            this.sink = sink;
+            this.maxChars = maxChars;
+            this.maxMillis = maxMillis;
+        }
+
+        synchronized void onNext(StreamingAnalysisResponse event) {
+            if (!CONTENT_EVENT.equals(event.getEventType()) || event.getContent() == null) {
+                flush();
+                sink.next(event);
+                return;
+            }
+            if (template == null) {
+                template = event;
+            }
+            pending.append(event.getContent());
+            if (maxChars > 0 && pending.length() >= maxChars) {
+                flush();
+            } else if (scheduledFlush == null && maxMillis > 0) {
+                scheduledFlush = timer.schedule(this::flushOnTimer, maxMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        synchronized void onError(Throwable error) {
+            flush();
+            sink.error(error);
+        }
+
+        synchronized void onComplete() {
+            flush();
+            sink.complete();
+        }
+
+        synchronized void cancelTimer() {
+            if (scheduledFlush != null) {
+                scheduledFlush.dispose();
+                scheduledFlush = null;
+            }
+        }
+
+        private synchronized void flushOnTimer() {
+            scheduledFlush = null;
+            flush();
+        }
+
+        private void flush() {
+            cancelTimer();
+            if (pending.length() == 0) {
+                return;
+            }
+            StreamingAnalysisResponse chunk = StreamingAnalysisResponse.contentChunk(
+                pending.toString(), template.getAnalysisType(), template.getLanguage());
+            chunk.setSessionId(template.getSessionId());
+            pending.setLength(0);
+            sink.next(chunk);
+        }
+    }
+}
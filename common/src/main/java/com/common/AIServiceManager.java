@@ -178,6 +178,20 @@ public class AIServiceManager {
         }
     }
 
+    /**
+     * Get the configured model name by service name
+     */
+    public String getModelName(String serviceName) {
+        switch (serviceName.toLowerCase()) {
+            case AIServiceConstants.OPENAI_SERVICE:
+                return openaiModel.trim();
+            case AIServiceConstants.GROQ_SERVICE:
+                return groqModel.trim();
+            default:
+                throw new IllegalArgumentException(AIServiceConstants.ERROR_UNKNOWN_SERVICE + serviceName);
+        }
+    }
+
     /**
      * Check if AI service is available
      */
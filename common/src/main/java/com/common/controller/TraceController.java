@@ -0,0 +1,49 @@
+package com.common.controller;
+
+import com.common.model.TraceRecord;
+import com.common.service.TraceCaptureService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST Controller exposing recently captured LLM traces.
+ * Only sampled calls are captured; see {@link TraceCaptureService}.
+ */
+@RestController
+@RequestMapping("/api/v1/traces")
+@CrossOrigin(origins = "*")
+public class TraceController {
+
+    private static final int MAX_LIMIT = 200;
+
+    private final TraceCaptureService traceCaptureService;
+
+    @Autowired
+    public TraceController(TraceCaptureService traceCaptureService) {
+        this.traceCaptureService = traceCaptureService;
+    }
+
+    /**
+     * Most recent traces first, optionally filtered by component and session
+     */
+    @GetMapping
+    public ResponseEntity<List<TraceRecord>> getRecentTraces(
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            @RequestParam(value = "component", required = false) String component,
+            @RequestParam(value = "sessionId", required = false) String sessionId) {
+        int boundedLimit = Math.max(1, Math.min(limit, MAX_LIMIT));
+        return ResponseEntity.ok(traceCaptureService.recent(boundedLimit, component, sessionId));
+    }
+
+    /**
+     * Capture counters: sampled, dropped on a full queue, and written to the trace file
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(traceCaptureService.stats());
+    }
+}
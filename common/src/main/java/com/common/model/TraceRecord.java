@@ -0,0 +1,43 @@
+package com.common.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A captured LLM exchange: the prompt as sent, the response and timing.
+ * Text is redacted and capped before the record is stored.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TraceRecord {
+
+    private String traceId;
+    private long timestamp;
+    private String component; // e.g. "code-assistant", "document-rag"
+    private String operation; // e.g. "analyze", "chat-stream"
+    private String sessionId;
+    private String service; // AI service that answered
+    private List<Message> prompt;
+    private String response;
+    private String error;
+    private long durationMs;
+    private int promptChars; // before capping
+    private int responseChars; // before capping
+    private boolean truncated;
+    private Map<String, String> attributes;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Message {
+        private String role;
+        private String content;
+    }
+}
@@ -0,0 +1,10 @@
+package com.common.service;
+
+/**
+ * Published when a chat session is cleared, so modules holding per-session state
+ * (documents, indexes, history) can evict it along with the session.
+ *
+ * @param sessionId The cleared session ID
+ */
+public record SessionClearedEvent(String sessionId) {
+}
@@ -4,8 +4,11 @@ import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -14,6 +17,7 @@ import java.util.concurrent.ConcurrentHashMap;
  * Service for managing chat sessions and their associated memory.
  * Provides session creation, retrieval, and cleanup functionality.
  * Sessions are stored in memory without expiration - cleanup is manual only.
+ * Clearing a session publishes a {@link SessionClearedEvent}.
  */
 @Service
 public class SessionManager {
@@ -23,6 +27,12 @@ public class SessionManager {
     // Store sessions in memory with their associated chat memory
     private final Map<String, ChatMemory> sessions = new ConcurrentHashMap<>();
     
+    private final ApplicationEventPublisher eventPublisher;
+    
+    public SessionManager(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+    
     /**
      * Creates a new session with a unique session ID.
      * 
@@ -64,13 +74,15 @@ public class SessionManager {
     }
     
     /**
-     * Clears a specific session.
+     * Clears a specific session. The event is published even if the session is no longer
+     * in memory, since other modules may still hold state for it (e.g. after a restart).
      * 
      * @param sessionId The session ID to clear
      * @return true if session was cleared, false if session didn't exist
      */
     public boolean clearSession(String sessionId) {
         ChatMemory removed = sessions.remove(sessionId);
+        eventPublisher.publishEvent(new SessionClearedEvent(sessionId));
         if (removed != null) {
             logger.info("Cleared session: {}", sessionId);
             return true;
@@ -86,8 +98,10 @@ public class SessionManager {
      * @return The number of sessions that were cleared
      */
     public int clearAllSessions() {
-        int sessionCount = sessions.size();
+        List<String> sessionIds = new ArrayList<>(sessions.keySet());
+        int sessionCount = sessionIds.size();
         sessions.clear();
+        sessionIds.forEach(sessionId -> eventPublisher.publishEvent(new SessionClearedEvent(sessionId)));
         logger.info("Cleared all {} sessions", sessionCount);
         return sessionCount;
     }
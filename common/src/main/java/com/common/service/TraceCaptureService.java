@@ -0,0 +1,353 @@
+package com.common.service;
+
+import com.common.model.TraceRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.message.ChatMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Sampled capture of LLM prompts and responses.
+ *
+ * <p>Request threads only decide whether to sample and hand finished records to a bounded queue;
+ * when the queue is full the record is dropped rather than blocking the request. A single
+ * background thread redacts secrets, caps text, keeps the most recent records in a ring buffer
+ * served by {@code /api/v1/traces} and appends them as JSON lines to a size-rotated file.
+ */
+@Service
+public class TraceCaptureService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TraceCaptureService.class);
+
+    private static final String REDACTED = "[REDACTED]";
+
+    // API keys of the supported providers, bearer tokens and key=value credentials
+    private static final List<Pattern> DEFAULT_REDACTIONS = List.of(
+        Pattern.compile("sk-[A-Za-z0-9_-]{16,}"),
+        Pattern.compile("gsk_[A-Za-z0-9]{16,}"),
+        Pattern.compile("(?i)bearer\\s+[A-Za-z0-9._~+/-]+=*"),
+        Pattern.compile("(?i)(?<=(api[_-]?key|password|secret|token)[\"']?\\s{0,3}[:=]\\s{0,3}[\"']?)[^\\s\"',;]+")
+    );
+
+    @Value("${trace.sample-rate:0.05}")
+    private double sampleRate;
+
+    @Value("${trace.buffer-size:200}")
+    private int bufferSize;
+
+    @Value("${trace.max-field-chars:8000}")
+    private int maxFieldChars;
+
+    // Extra regular expressions to redact, separated by ';'
+    @Value("${trace.redaction.extra-patterns:}")
+    private String extraRedactions;
+
+    @Value("${trace.file.enabled:true}")
+    private boolean fileEnabled;
+
+    @Value("${trace.file.path:logs/llm-traces.jsonl}")
+    private String filePath;
+
+    @Value("${trace.file.max-size:50MB}")
+    private DataSize fileMaxSize;
+
+    private final BlockingQueue<TraceRecord> queue;
+    private final Deque<TraceRecord> recent = new ArrayDeque<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong captured = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    private List<Pattern> redactions;
+    private Path file;
+    private BufferedWriter writer;
+    private Thread worker;
+
+    public TraceCaptureService(@Value("${trace.queue-capacity:1000}") int queueCapacity) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        redactions = new ArrayList<>(DEFAULT_REDACTIONS);
+        Arrays.stream(extraRedactions.split(";"))
+            .map(String::trim)
+            .filter(pattern -> !pattern.isEmpty())
+            .map(Pattern::compile)
+            .forEach(redactions::add);
+        file = Paths.get(filePath).toAbsolutePath();
+        worker = new Thread(this::drain, "trace-capture");
+        worker.setDaemon(true);
+        worker.start();
+        logger.info("Trace capture started - Sample rate: {}, Buffer: {}, File: {}",
+            sampleRate, bufferSize, fileEnabled ? file : "disabled");
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Start a trace for one LLM call. Unsampled calls get a handle whose methods do nothing, so
+     * callers pay for building a record only when it is kept.
+     */
+    public Trace start(String component, String operation, String sessionId) {
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return Trace.DISABLED;
+        }
+        return new Trace(this, component, operation, sessionId);
+    }
+
+    /** Most recent records first, optionally filtered by component and session */
+    public List<TraceRecord> recent(int limit, String component, String sessionId) {
+        synchronized (recent) {
+            List<TraceRecord> records = new ArrayList<>();
+            var iterator = recent.descendingIterator();
+            while (iterator.hasNext() && records.size() < limit) {
+                TraceRecord record = iterator.next();
+                if ((component == null || component.equals(record.getComponent()))
+                        && (sessionId == null || sessionId.equals(record.getSessionId()))) {
+                    records.add(record);
+                }
+            }
+            return records;
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sampleRate", sampleRate);
+        stats.put("captured", captured.get());
+        stats.put("dropped", dropped.get());
+        stats.put("written", written.get());
+        stats.put("queued", queue.size());
+        synchronized (recent) {
+            stats.put("buffered", recent.size());
+        }
+        stats.put("file", fileEnabled ? file.toString() : null);
+        return stats;
+    }
+
+    private void submit(TraceRecord record) {
+        if (queue.offer(record)) {
+            captured.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void drain() {
+        List<TraceRecord> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                TraceRecord first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            queue.drainTo(batch);
+            if (!batch.isEmpty()) {
+                batch.forEach(this::sanitize);
+                buffer(batch);
+                write(batch);
+                batch.clear();
+            }
+        }
+        closeWriter();
+    }
+
+    private void sanitize(TraceRecord record) {
+        boolean[] truncated = {false};
+        if (record.getPrompt() != null) {
+            record.getPrompt().forEach(message ->
+                message.setContent(cap(redact(message.getContent()), truncated)));
+        }
+        record.setResponse(cap(redact(record.getResponse()), truncated));
+        record.setError(cap(redact(record.getError()), truncated));
+        record.setTruncated(truncated[0]);
+    }
+
+    private String redact(String text) {
+        if (text == null) {
+            return null;
+        }
+        for (Pattern pattern : redactions) {
+            text = pattern.matcher(text).replaceAll(REDACTED);
+        }
+        return text;
+    }
+
+    private String cap(String text, boolean[] truncated) {
+        if (text == null || text.length() <= maxFieldChars) {
+            return text;
+        }
+        truncated[0] = true;
+        return text.substring(0, maxFieldChars) + " ... [" + (text.length() - maxFieldChars)
+            + " chars truncated]";
+    }
+
+    private void buffer(List<TraceRecord> batch) {
+        synchronized (recent) {
+            for (TraceRecord record : batch) {
+                recent.addLast(record);
+                while (recent.size() > bufferSize) {
+                    recent.removeFirst();
+                }
+            }
+        }
+    }
+
+    private void write(List<TraceRecord> batch) {
+        if (!fileEnabled) {
+            return;
+        }
+        try {
+            if (writer == null) {
+                Files.createDirectories(file.getParent());
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (TraceRecord record : batch) {
+                writer.write(objectMapper.writeValueAsString(record));
+                writer.newLine();
+            }
+            writer.flush();
+            written.addAndGet(batch.size());
+            if (Files.size(file) > fileMaxSize.toBytes()) {
+                rotate();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to write {} traces to {}: {}", batch.size(), file, e.getMessage());
+            closeWriter();
+        }
+    }
+
+    // Keeps one previous file, so the sink never uses more than twice the configured size
+    private void rotate() throws IOException {
+        closeWriter();
+        Path previous = file.resolveSibling(file.getFileName() + ".1");
+        Files.move(file, previous, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close trace file {}: {}", file, e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    /** One traced LLM call; finish or fail it exactly once */
+    public static final class Trace {
+
+        static final Trace DISABLED = new Trace(null, null, null, null);
+
+        private final TraceCaptureService owner;
+        private final TraceRecord record;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Trace(TraceCaptureService owner, String component, String operation,
+                      String sessionId) {
+            this.owner = owner;
+            this.record = owner == null ? null : TraceRecord.builder()
+                .traceId(UUID.randomUUID().toString())
+                .timestamp(System.currentTimeMillis())
+                .component(component)
+                .operation(operation)
+                .sessionId(sessionId)
+                .attributes(new LinkedHashMap<>())
+                .build();
+        }
+
+        public boolean isSampled() {
+            return owner != null;
+        }
+
+        public Trace service(String service) {
+            if (isSampled()) {
+                record.setService(service);
+            }
+            return this;
+        }
+
+        public Trace prompt(List<ChatMessage> messages) {
+            if (isSampled()) {
+                List<TraceRecord.Message> prompt = messages.stream()
+                    .map(message -> new TraceRecord.Message(message.type().name(), message.text()))
+                    .collect(Collectors.toList());
+                record.setPrompt(prompt);
+                record.setPromptChars(
+                    prompt.stream().mapToInt(message -> length(message.getContent())).sum());
+            }
+            return this;
+        }
+
+        public Trace attribute(String key, Object value) {
+            if (isSampled()) {
+                record.getAttributes().put(key, String.valueOf(value));
+            }
+            return this;
+        }
+
+        public void finish(String response) {
+            if (isSampled() && done.compareAndSet(false, true)) {
+                record.setResponse(response);
+                record.setResponseChars(length(response));
+                record.setDurationMs((System.nanoTime() - startNanos) / 1_000_000);
+                owner.submit(record);
+            }
+        }
+
+        public void fail(Throwable error) {
+            if (isSampled() && done.compareAndSet(false, true)) {
+                record.setError(error.getClass().getSimpleName() + ": " + error.getMessage());
+                record.setDurationMs((System.nanoTime() - startNanos) / 1_000_000);
+                owner.submit(record);
+            }
+        }
+
+        private static int length(String text) {
+            return text == null ? 0 : text.length();
+        }
+    }
+}
@@ -1,17 +1,26 @@
 package com.documentrag.controller;
 
+import com.documentrag.model.ConversationHistoryPage;
 import com.documentrag.model.DocumentChatRequest;
 import com.documentrag.model.DocumentChatResponse;
+import com.documentrag.model.DocumentChatStreamEvent;
+import com.documentrag.model.DocumentInfo;
 import com.documentrag.model.DocumentUploadResponse;
 import com.documentrag.service.DocumentChatService;
 import com.documentrag.service.DocumentProcessingService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
 import org.springframework.http.HttpStatus;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -20,10 +29,15 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class DocumentUploadController {
 
+  private static final int MAX_HISTORY_PAGE_SIZE = 100;
+
   @Autowired private DocumentProcessingService documentProcessingService;
 
   @Autowired private DocumentChatService documentChatService;
 
+  @Value("${document-rag.chat.stream-timeout:PT2M}")
+  private Duration streamTimeout;
+
   @PostMapping("/upload")
   public ResponseEntity<DocumentUploadResponse> uploadDocument(
       @RequestParam("file") MultipartFile file, @RequestParam("sessionId") String sessionId) {
@@ -36,26 +50,33 @@ public class DocumentUploadController {
       log.info("  - Is empty: {}", file.isEmpty());
       log.info("  - Session ID: {}", sessionId);
 
-      // Check if it's a Java file
-      boolean isJavaFile =
-          (file.getOriginalFilename() != null
-              && file.getOriginalFilename().toLowerCase().endsWith(".java")
-              && file.getSize() > 0
-              && file.getSize() <= (100 * 1024)); // 10KB Limit
+      // Check if it's a Java or PDF file within the configured size limits
+      boolean isJavaFile = documentProcessingService.isValidJavaFile(file);
+      boolean isPdfFile = !isJavaFile && documentProcessingService.isValidPdfFile(file);
 
       log.info("  - Is Java file: {}", isJavaFile);
+      log.info("  - Is PDF file: {}", isPdfFile);
 
       if (isJavaFile) {
         log.info("Processing as Java source file with session ID: {}", sessionId);
         DocumentUploadResponse response =
             documentProcessingService.processJavaDocument(file, sessionId);
         return ResponseEntity.ok(response);
+      } else if (isPdfFile) {
+        log.info("Processing as PDF document with session ID: {}", sessionId);
+        DocumentUploadResponse response =
+            documentProcessingService.processPdfDocument(file, sessionId);
+        return ResponseEntity.ok(response);
       } else {
-        log.warn("Non-Java file rejected: {}", file.getOriginalFilename());
+        log.warn("Unsupported file rejected: {}", file.getOriginalFilename());
         DocumentUploadResponse errorResponse = new DocumentUploadResponse();
         errorResponse.setSuccess(false);
         errorResponse.setMessage(
-            "Only Java source files (.java) are supported unless 100 KB. Please upload a valid .java file.");
+            "Only Java source files (.java) up to "
+                + documentProcessingService.getMaxJavaFileSize().toKilobytes()
+                + " KB and PDF documents (.pdf) up to "
+                + documentProcessingService.getMaxPdfFileSize().toMegabytes()
+                + " MB are supported. Please upload a valid .java or .pdf file.");
         return ResponseEntity.badRequest().body(errorResponse);
       }
     } catch (Exception e) {
@@ -90,6 +111,87 @@ public class DocumentUploadController {
     }
   }
 
+  /**
+   * Streaming chat over Server-Sent Events: a "retrieval" event, then "content" events per token,
+   * then "complete" with the full answer and updated history (or "error").
+   */
+  @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public ResponseEntity<SseEmitter> streamChatWithDocuments(
+      @RequestBody DocumentChatRequest request) {
+    SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+    String sessionId = request.getSessionId();
+
+    Disposable subscription =
+        documentChatService
+            .streamChatWithDocuments(request)
+            .subscribe(
+                event -> {
+                  try {
+                    emitter.send(event);
+                  } catch (Exception e) {
+                    // Usually the client went away
+                    log.warn(
+                        "Error sending SSE event for session: {}: {}", sessionId, e.getMessage());
+                    emitter.completeWithError(e);
+                  }
+                },
+                error -> {
+                  log.error("Error in streaming chat for session: {}", sessionId, error);
+                  try {
+                    emitter.send(DocumentChatStreamEvent.error(sessionId, error.getMessage()));
+                    emitter.complete();
+                  } catch (Exception e) {
+                    emitter.completeWithError(e);
+                  }
+                },
+                emitter::complete);
+
+    // Client disconnects and emitter timeouts cancel retrieval and the model stream
+    emitter.onTimeout(subscription::dispose);
+    emitter.onError(error -> subscription.dispose());
+    emitter.onCompletion(subscription::dispose);
+
+    return ResponseEntity.ok(emitter);
+  }
+
+  /** Chat history in pages, newest page first; pass a page's nextCursor as "before" */
+  @GetMapping("/chat/history")
+  public ResponseEntity<ConversationHistoryPage> getConversationHistory(
+      @RequestParam("sessionId") String sessionId,
+      @RequestParam(value = "before", required = false) Long before,
+      @RequestParam(value = "limit", defaultValue = "20") int limit) {
+    return ResponseEntity.ok(
+        documentChatService.getConversationHistoryPage(
+            sessionId, before, Math.min(limit, MAX_HISTORY_PAGE_SIZE)));
+  }
+
+  @GetMapping("/documents")
+  public ResponseEntity<List<DocumentInfo>> listDocuments(
+      @RequestParam("sessionId") String sessionId) {
+    return ResponseEntity.ok(documentProcessingService.listDocuments(sessionId));
+  }
+
+  @GetMapping("/documents/{documentId}")
+  public ResponseEntity<DocumentInfo> getDocument(@PathVariable String documentId) {
+    return documentProcessingService
+        .getDocument(documentId)
+        .map(ResponseEntity::ok)
+        .orElseGet(() -> ResponseEntity.notFound().build());
+  }
+
+  @DeleteMapping("/documents/{documentId}")
+  public ResponseEntity<DocumentInfo> deleteDocument(@PathVariable String documentId) {
+    try {
+      return documentProcessingService
+          .deleteDocument(documentId)
+          .map(ResponseEntity::ok)
+          .orElseGet(() -> ResponseEntity.notFound().build());
+    } catch (Exception e) {
+      log.error("Error deleting document {}: {}", documentId, e.getMessage(), e);
+      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    }
+  }
+
   @GetMapping("/health")
   public ResponseEntity<Map<String, Object>> health() {
     Map<String, Object> health = new HashMap<>();
@@ -0,0 +1,80 @@
+package com.documentrag.controller;
+
+import com.documentrag.service.IngestionMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actuator endpoint at {@code /actuator/ingestion} summarising ingestion meters per document type.
+ *
+ * <p>The raw meters remain available under {@code /actuator/metrics}; this view puts every stage of
+ * a document type side by side.
+ */
+@Component
+@Endpoint(id = "ingestion")
+public class IngestionMetricsEndpoint {
+
+  private final MeterRegistry registry;
+
+  public IngestionMetricsEndpoint(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @ReadOperation
+  public Map<String, Map<String, Object>> ingestion() {
+    Map<String, Map<String, Object>> byType = new TreeMap<>();
+
+    for (DistributionSummary summary : registry.find(IngestionMetrics.BYTES).summaries()) {
+      Map<String, Object> type = typeEntry(byType, summary);
+      type.put("documents", summary.count());
+      type.put("bytes", (long) summary.totalAmount());
+      type.put("maxBytes", (long) summary.max());
+    }
+    for (Counter counter : registry.find(IngestionMetrics.SEGMENTS).counters()) {
+      typeEntry(byType, counter).put("segments", (long) counter.count());
+    }
+    for (Counter counter : registry.find(IngestionMetrics.DEDUPLICATED).counters()) {
+      typeEntry(byType, counter).put("deduplicatedSegments", (long) counter.count());
+    }
+    for (Timer timer : registry.find(IngestionMetrics.STAGE_TIMER).timers()) {
+      Map<String, Object> stage = new LinkedHashMap<>();
+      stage.put("count", timer.count());
+      stage.put("totalMs", timer.totalTime(TimeUnit.MILLISECONDS));
+      stage.put("meanMs", timer.mean(TimeUnit.MILLISECONDS));
+      stage.put("maxMs", timer.max(TimeUnit.MILLISECONDS));
+      stageEntries(byType, timer, "stages").put(stageOf(timer), stage);
+    }
+    for (Counter counter : registry.find(IngestionMetrics.FAILURES).counters()) {
+      stageEntries(byType, counter, "failures").put(stageOf(counter), (long) counter.count());
+    }
+    return byType;
+  }
+
+  private static Map<String, Object> typeEntry(Map<String, Map<String, Object>> byType, Meter m) {
+    String type = m.getId().getTag(IngestionMetrics.TAG_DOCUMENT_TYPE);
+    return byType.computeIfAbsent(type != null ? type : "unknown", key -> new LinkedHashMap<>());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> stageEntries(
+      Map<String, Map<String, Object>> byType, Meter meter, String key) {
+    return (Map<String, Object>)
+        typeEntry(byType, meter).computeIfAbsent(key, k -> new TreeMap<String, Object>());
+  }
+
+  private static String stageOf(Meter meter) {
+    String stage = meter.getId().getTag(IngestionMetrics.TAG_STAGE);
+    return stage != null ? stage : "unknown";
+  }
+}
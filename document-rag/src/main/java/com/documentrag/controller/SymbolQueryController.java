@@ -0,0 +1,111 @@
+package com.documentrag.controller;
+
+import com.documentrag.model.CodeSymbol;
+import com.documentrag.model.SymbolQueryResponse;
+import com.documentrag.service.SymbolIndexService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/** Structural queries over the symbol index of the Java files uploaded in a session */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/document-rag/symbols")
+@CrossOrigin(origins = "*")
+public class SymbolQueryController {
+
+  @Autowired private SymbolIndexService symbolIndexService;
+
+  @GetMapping("/types")
+  public ResponseEntity<SymbolQueryResponse> types(
+      @RequestParam("sessionId") String sessionId,
+      @RequestParam(value = "name", required = false) String name) {
+    return query(
+        sessionId,
+        "types " + (name != null ? name : "*"),
+        () -> symbolIndexService.findTypes(sessionId, name));
+  }
+
+  @GetMapping("/types/{typeName}/members")
+  public ResponseEntity<SymbolQueryResponse> members(
+      @PathVariable String typeName,
+      @RequestParam("sessionId") String sessionId,
+      @RequestParam(value = "kind", required = false) String kind) {
+    return query(
+        sessionId,
+        (kind != null ? kind : "members") + " of " + typeName,
+        () -> symbolIndexService.findMembers(sessionId, typeName, kind));
+  }
+
+  @GetMapping("/types/{typeName}/implementations")
+  public ResponseEntity<SymbolQueryResponse> implementations(
+      @PathVariable String typeName, @RequestParam("sessionId") String sessionId) {
+    return query(
+        sessionId,
+        "implementations of " + typeName,
+        () -> symbolIndexService.findImplementations(sessionId, typeName));
+  }
+
+  @GetMapping("/methods/{methodName}/callers")
+  public ResponseEntity<SymbolQueryResponse> callers(
+      @PathVariable String methodName,
+      @RequestParam("sessionId") String sessionId,
+      @RequestParam(value = "className", required = false) String className) {
+    return query(
+        sessionId,
+        "callers of " + (className != null ? className + "." : "") + methodName,
+        () -> symbolIndexService.findCallers(sessionId, methodName, className));
+  }
+
+  @GetMapping("/methods/{methodName}/callees")
+  public ResponseEntity<SymbolQueryResponse> callees(
+      @PathVariable String methodName,
+      @RequestParam("sessionId") String sessionId,
+      @RequestParam(value = "className", required = false) String className) {
+    return query(
+        sessionId,
+        "callees of " + (className != null ? className + "." : "") + methodName,
+        () -> symbolIndexService.findCallees(sessionId, methodName, className));
+  }
+
+  private ResponseEntity<SymbolQueryResponse> query(
+      String sessionId, String description, Supplier<List<CodeSymbol>> lookup) {
+    try {
+      long start = System.nanoTime();
+      List<CodeSymbol> symbols = lookup.get();
+      long elapsedMicros = (System.nanoTime() - start) / 1_000;
+
+      log.info(
+          "Symbol query - Session: {}, Query: {}, Results: {}, Time: {}us",
+          sessionId,
+          description,
+          symbols.size(),
+          elapsedMicros);
+
+      return ResponseEntity.ok(
+          SymbolQueryResponse.builder()
+              .success(true)
+              .message(symbols.isEmpty() ? "No matching symbols found" : "Symbols found")
+              .sessionId(sessionId)
+              .query(description)
+              .symbols(symbols)
+              .count(symbols.size())
+              .elapsedMicros(elapsedMicros)
+              .build());
+    } catch (Exception e) {
+      log.error("Error processing symbol query: {}", e.getMessage(), e);
+      return ResponseEntity.internalServerError()
+          .body(
+              SymbolQueryResponse.builder()
+                  .success(false)
+                  .message("Error processing symbol query: " + e.getMessage())
+                  .sessionId(sessionId)
+                  .query(description)
+                  .build());
+    }
+  }
+}
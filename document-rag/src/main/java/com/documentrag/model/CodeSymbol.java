@@ -0,0 +1,27 @@
+package com.documentrag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CodeSymbol {
+
+    private String id; // qualified id, e.g. com.example.Outer.Inner#method(String,int)
+    private String kind; // class, interface, enum, annotation, method, constructor, field
+    private String name;
+    private String className; // declaring type for members, the type itself for types
+    private String packageName;
+    private String signature;
+    private String modifiers;
+    private String documentId;
+    private int startLine;
+    private int endLine;
+    private List<String> supertypes; // extended and implemented types, for types only
+}
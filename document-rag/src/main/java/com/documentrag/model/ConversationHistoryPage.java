@@ -0,0 +1,26 @@
+package com.documentrag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A page of a session's chat history, oldest message first.
+ * Pass nextCursor as "before" to fetch the preceding page. Turns older than the retained
+ * messages are only available as the summary.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversationHistoryPage {
+
+    private String sessionId;
+    private List<DocumentChatRequest.ChatMessage> messages;
+    private String summary; // summary of turns no longer kept verbatim, if any
+    private Long nextCursor; // null on the first retained page
+    private boolean hasMore;
+}
@@ -13,6 +13,8 @@ public class DocumentChatRequest {
     private String sessionId;
     private String service; // AI service to use (OpenAIChatService, GroqAIChatService)
     private List<ChatMessage> conversationHistory;
+    private Boolean fastPath; // answer listing questions from the symbol index; null uses the server default
+    private String historyMode; // "full" (default) or "delta": only the new turn and a history cursor
     
     @Data
     @NoArgsConstructor
@@ -20,5 +22,6 @@ public class DocumentChatRequest {
         private String role; // "user" or "assistant"
         private String content;
         private String timestamp;
+        private Long sequence; // position in the session's history, assigned when stored
     }
 } 
\ No newline at end of file
@@ -21,6 +21,10 @@ public class DocumentChatResponse {
     private String sessionId;
     private List<String> relevantDocuments;
     private List<String> sources;
+    private String answerSource; // "llm" or "symbol-index"
+    private boolean cacheHit; // answer reused from a near-identical question on the same documents
     private LocalDateTime timestamp = LocalDateTime.now();
-    private List<DocumentChatRequest.ChatMessage> conversationHistory;
+    private List<DocumentChatRequest.ChatMessage> conversationHistory; // omitted in "delta" history mode
+    private List<DocumentChatRequest.ChatMessage> newMessages; // the turn just stored
+    private Long historyCursor; // sequence of the last stored message
 } 
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.documentrag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Server-Sent Event of the streaming document chat.
+ * A stream sends one "retrieval" event, then "content" events as tokens arrive,
+ * and ends with a "complete" or "error" event.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentChatStreamEvent {
+
+    public static final String RETRIEVAL = "retrieval";
+    public static final String CONTENT = "content";
+    public static final String COMPLETE = "complete";
+    public static final String ERROR = "error";
+
+    private String eventType;
+    private String sessionId;
+    private String content; // token chunk for "content" events
+    private List<String> relevantDocuments; // sent with the "retrieval" event
+    private String answerSource; // "llm" or "symbol-index"
+    private boolean cacheHit; // sent with the "retrieval" event
+    private String answer; // full answer, sent with the "complete" event
+    private List<DocumentChatRequest.ChatMessage> conversationHistory; // sent with the "complete" event
+    private Long historyCursor; // sent with the "complete" event
+    private String error;
+    private boolean isComplete;
+    private boolean success;
+
+    public static DocumentChatStreamEvent retrieval(
+            String sessionId, List<String> relevantDocuments, String answerSource) {
+        return DocumentChatStreamEvent.builder()
+            .eventType(RETRIEVAL)
+            .sessionId(sessionId)
+            .relevantDocuments(relevantDocuments)
+            .answerSource(answerSource)
+            .success(true)
+            .build();
+    }
+
+    public static DocumentChatStreamEvent contentChunk(String sessionId, String content) {
+        return DocumentChatStreamEvent.builder()
+            .eventType(CONTENT)
+            .sessionId(sessionId)
+            .content(content)
+            .success(true)
+            .build();
+    }
+
+    public static DocumentChatStreamEvent complete(
+            String sessionId, String answer, String answerSource,
+            List<DocumentChatRequest.ChatMessage> conversationHistory) {
+        return DocumentChatStreamEvent.builder()
+            .eventType(COMPLETE)
+            .sessionId(sessionId)
+            .answer(answer)
+            .answerSource(answerSource)
+            .conversationHistory(conversationHistory)
+            .isComplete(true)
+            .success(true)
+            .build();
+    }
+
+    public static DocumentChatStreamEvent error(String sessionId, String errorMessage) {
+        return DocumentChatStreamEvent.builder()
+            .eventType(ERROR)
+            .sessionId(sessionId)
+            .error(errorMessage)
+            .isComplete(true)
+            .success(false)
+            .build();
+    }
+}
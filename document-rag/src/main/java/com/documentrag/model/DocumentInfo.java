@@ -0,0 +1,28 @@
+package com.documentrag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DocumentInfo {
+
+    private String documentId;
+    private String sessionId;
+    private String fileName;
+    private String documentType;
+    private String description;
+    private String contentHash; // SHA-256 of the uploaded bytes
+    private long fileSize;
+    private int totalSegments;
+    private int processedSegments;
+    private String content; // short summary of what was indexed
+    private long uploadedAt;
+    private Map<String, Object> metadata; // metadata returned with the original upload response
+}
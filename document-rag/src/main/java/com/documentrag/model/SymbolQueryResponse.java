@@ -0,0 +1,23 @@
+package com.documentrag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SymbolQueryResponse {
+
+    private boolean success;
+    private String message;
+    private String sessionId;
+    private String query;
+    private List<CodeSymbol> symbols;
+    private int count;
+    private long elapsedMicros;
+}
@@ -0,0 +1,117 @@
+package com.documentrag.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Semantic cache of LLM answers, keyed by document-set version and query embedding.
+ *
+ * <p>A question whose embedding is close enough to a cached question asked against the same
+ * document set gets the cached answer. The version is a fingerprint of the documents' content
+ * (see {@link DocumentCatalog#documentSetVersion}), so sessions that uploaded the same files share
+ * answers, and entries stop matching as soon as a session's documents change; stale sets then
+ * age out of the bounded cache.
+ */
+@Slf4j
+@Service
+public class AnswerCache {
+
+  // Cosine similarity a question needs to reuse a cached answer
+  @Value("${document-rag.answer-cache.similarity-threshold:0.95}")
+  private double similarityThreshold;
+
+  @Value("${document-rag.answer-cache.ttl:PT1H}")
+  private Duration ttl;
+
+  @Value("${document-rag.answer-cache.max-entries-per-set:100}")
+  private int maxEntriesPerSet;
+
+  private final Map<String, Deque<Entry>> entriesByVersion;
+
+  public AnswerCache(@Value("${document-rag.answer-cache.max-document-sets:1000}") int maxSets) {
+    // Least recently used document sets are evicted first
+    this.entriesByVersion =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Deque<Entry>> eldest) {
+            return size() > maxSets;
+          }
+        };
+  }
+
+  /** A cached answer together with the segments it was generated from */
+  public record CachedAnswer(String answer, List<String> relevantDocuments) {}
+
+  private record Entry(float[] vector, double norm, CachedAnswer answer, long createdAt) {}
+
+  /** The answer to the most similar cached question, if one is similar enough */
+  public Optional<CachedAnswer> find(String documentSetVersion, Embedding query) {
+    if (documentSetVersion == null) {
+      return Optional.empty();
+    }
+    float[] vector = query.vector();
+    double norm = norm(vector);
+    long oldest = System.currentTimeMillis() - ttl.toMillis();
+    synchronized (entriesByVersion) {
+      Deque<Entry> entries = entriesByVersion.get(documentSetVersion);
+      if (entries == null) {
+        return Optional.empty();
+      }
+      entries.removeIf(entry -> entry.createdAt() < oldest);
+      Entry best = null;
+      double bestSimilarity = similarityThreshold;
+      for (Entry entry : entries) {
+        double similarity = dot(vector, entry.vector()) / (norm * entry.norm());
+        if (similarity >= bestSimilarity) {
+          best = entry;
+          bestSimilarity = similarity;
+        }
+      }
+      if (best != null) {
+        log.info(
+            "Answer cache hit - Document set: {}, Similarity: {}",
+            documentSetVersion,
+            bestSimilarity);
+      }
+      return Optional.ofNullable(best).map(Entry::answer);
+    }
+  }
+
+  public void put(String documentSetVersion, Embedding query, CachedAnswer answer) {
+    if (documentSetVersion == null) {
+      return;
+    }
+    float[] vector = query.vector();
+    Entry entry = new Entry(vector, norm(vector), answer, System.currentTimeMillis());
+    synchronized (entriesByVersion) {
+      Deque<Entry> entries =
+          entriesByVersion.computeIfAbsent(documentSetVersion, version -> new ArrayDeque<>());
+      entries.addLast(entry);
+      while (entries.size() > maxEntriesPerSet) {
+        entries.removeFirst();
+      }
+    }
+  }
+
+  private static double dot(float[] a, float[] b) {
+    double sum = 0;
+    for (int i = 0; i < Math.min(a.length, b.length); i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+
+  private static double norm(float[] vector) {
+    return Math.sqrt(dot(vector, vector));
+  }
+}
@@ -0,0 +1,61 @@
+package com.documentrag.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Micrometer meters for document chat requests.
+ *
+ * <p>Prompt sizes are recorded per part (instructions, segments, history) so budgets can be tuned
+ * from what requests actually use and what packing removes. The share of each prompt that is a
+ * precompiled, cacheable prefix is recorded against the input tokens the provider reports.
+ */
+@Component
+public class ChatMetrics {
+
+  public static final String PROMPT_TOKENS = "document.chat.prompt.tokens";
+  public static final String PROMPT_TOKENS_SAVED = "document.chat.prompt.tokens.saved";
+  public static final String PROMPT_INPUT_TOKENS = "document.chat.prompt.input.tokens";
+  public static final String PROMPT_PREFIX_SHARE = "document.chat.prompt.prefix.share";
+
+  public static final String TAG_PART = "part";
+
+  private final MeterRegistry registry;
+
+  public ChatMetrics(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  /** Tokens a prompt part was sent with, and how many packing removed from it */
+  public void recordPromptPart(String part, int tokensSent, int tokensSaved) {
+    DistributionSummary.builder(PROMPT_TOKENS)
+        .description("Estimated prompt tokens sent per request")
+        .baseUnit("tokens")
+        .tag(TAG_PART, part)
+        .register(registry)
+        .record(tokensSent);
+    DistributionSummary.builder(PROMPT_TOKENS_SAVED)
+        .description("Estimated prompt tokens removed by context packing per request")
+        .baseUnit("tokens")
+        .tag(TAG_PART, part)
+        .register(registry)
+        .record(tokensSaved);
+  }
+
+  /** Input tokens the provider reported for a prompt, and the share taken by its stable prefix */
+  public void recordPromptPrefix(int stablePrefixTokens, int inputTokens) {
+    if (inputTokens <= 0) {
+      return;
+    }
+    DistributionSummary.builder(PROMPT_INPUT_TOKENS)
+        .description("Prompt tokens reported by the provider per request")
+        .baseUnit("tokens")
+        .register(registry)
+        .record(inputTokens);
+    DistributionSummary.builder(PROMPT_PREFIX_SHARE)
+        .description("Share of prompt tokens in the precompiled prefix providers can cache")
+        .register(registry)
+        .record(Math.min(1.0, (double) stablePrefixTokens / inputTokens));
+  }
+}
@@ -0,0 +1,440 @@
+package com.documentrag.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed segment layer over the Pinecone index.
+ *
+ * <p>Each distinct segment text is embedded and stored once, under the SHA-256 of its
+ * whitespace-normalised text. Documents hold lightweight references (the hash plus their own
+ * segment metadata), which are appended to a file per document so reference counts survive
+ * restarts. Session-scoped search filters on the hashes the session references and resolves each
+ * match back to the session's own metadata. A vector is deleted when its last reference goes.
+ *
+ * <p>Shared vectors carry no session or document id. Vectors written before this layer existed do,
+ * so searches and deletes still cover them through their session and document filters.
+ */
+@Slf4j
+@Service
+public class ContentAddressedSegmentStore {
+
+  public static final String CONTENT_HASH = "contentHash";
+
+  // Per-reference metadata stays with the reference instead of the shared vector
+  private static final Set<String> REFERENCE_ONLY_KEYS =
+      Set.of("documentId", "sessionId", "chunkIndex", "processingTimestamp");
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Autowired private PineconeEmbeddingStore embeddingStore;
+
+  @Autowired private OpenAIEmbeddingModel embeddingModel;
+
+  @Autowired private IngestionMetrics ingestionMetrics;
+
+  @Value("${document-rag.dedup.dir:data/segment-refs}")
+  private String refsDir;
+
+  // Pinecone caps $in lists, so large sessions are searched in several filtered queries
+  @Value("${document-rag.dedup.max-filter-values:1000}")
+  private int maxFilterValues;
+
+  private Path root;
+
+  /** One reference line in a document's refs file */
+  record SegmentRef(String sessionId, String hash, Map<String, String> metadata) {}
+
+  /** References held by one document, in upload order */
+  private record DocumentRefs(String sessionId, List<String> hashes) {}
+
+  // hash -> references across all sessions; a vector exists while its count is positive
+  private final ConcurrentHashMap<String, Integer> refCounts = new ConcurrentHashMap<>();
+
+  // sessionId -> hash -> documentId -> that document's segment metadata
+  private final ConcurrentHashMap<String, Map<String, Map<String, Map<String, String>>>>
+      sessionRefs = new ConcurrentHashMap<>();
+
+  private final ConcurrentHashMap<String, DocumentRefs> documentRefs = new ConcurrentHashMap<>();
+
+  // Hashes whose vectors are known to be in the index
+  private final Set<String> stored = ConcurrentHashMap.newKeySet();
+
+  // Hashes whose orphaned vectors are being deleted; guarded by this store's monitor
+  private final Set<String> deleting = new HashSet<>();
+
+  @PostConstruct
+  public void load() throws IOException {
+    root = Paths.get(refsDir).toAbsolutePath();
+    Files.createDirectories(root);
+    try (Stream<Path> files = Files.list(root)) {
+      files.filter(file -> file.toString().endsWith(".refs.jsonl")).forEach(this::loadRefs);
+    }
+    ingestionMetrics.gauge(IngestionMetrics.DISTINCT_SEGMENTS, this::distinctSegments);
+    log.info(
+        "Segment references loaded - Directory: {}, Documents: {}, Distinct segments: {}",
+        root,
+        documentRefs.size(),
+        refCounts.size());
+  }
+
+  private void loadRefs(Path file) {
+    String name = file.getFileName().toString();
+    String documentId = name.substring(0, name.length() - ".refs.jsonl".length());
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isBlank()) {
+          SegmentRef ref = objectMapper.readValue(line, SegmentRef.class);
+          reference(documentId, ref);
+          stored.add(ref.hash());
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Skipping unreadable segment references {}: {}", file, e.getMessage());
+    }
+  }
+
+  /**
+   * Reference a batch of segments of one document type, embedding and storing only the texts no
+   * session has stored before. Segments carry their documentId and sessionId in metadata. If the
+   * batch fails, the references of its documents are dropped so nothing points at a missing vector.
+   */
+  public void addAll(List<TextSegment> segments, String documentType) {
+    if (segments.isEmpty()) {
+      return;
+    }
+    Registration registration = register(segments);
+    Map<String, TextSegment> missing = registration.missing();
+    int shared = segments.size() - missing.size();
+    try {
+      if (!missing.isEmpty()) {
+        store(missing, documentType);
+      }
+      commit(registration);
+    } catch (RuntimeException e) {
+      registration.refsByDocument().keySet().forEach(this::removeDocument);
+      throw e;
+    }
+    if (shared > 0) {
+      ingestionMetrics.recordDeduplicated(documentType, shared);
+    }
+    log.info(
+        "Stored segments - Batch: {}, Newly embedded: {}, Shared with earlier uploads: {}",
+        segments.size(),
+        missing.size(),
+        shared);
+  }
+
+  private void store(Map<String, TextSegment> missing, String documentType) {
+    List<String> ids = new ArrayList<>(missing.keySet());
+    List<TextSegment> texts = new ArrayList<>(missing.values());
+    List<Embedding> embeddings =
+        ingestionMetrics.time(
+            documentType, IngestionMetrics.STAGE_EMBED, () -> embeddingModel.embedAll(texts))
+            .content();
+    if (embeddings.size() != texts.size()) {
+      ingestionMetrics.recordFailure(documentType, IngestionMetrics.STAGE_EMBED);
+      throw new IllegalStateException(
+          "Expected " + texts.size() + " embeddings but received " + embeddings.size());
+    }
+    ingestionMetrics.time(
+        documentType,
+        IngestionMetrics.STAGE_UPSERT,
+        () -> {
+          embeddingStore.addAll(ids, embeddings, texts);
+          return null;
+        });
+  }
+
+  /** References taken by one batch, and the shared form of each text that has no vector yet */
+  private record Registration(
+      Map<String, TextSegment> missing, Map<String, List<SegmentRef>> refsByDocument) {}
+
+  private synchronized Registration register(List<TextSegment> segments) {
+    // A text whose vector is being deleted is stored again only once the delete is done
+    awaitDeletes(segments.stream().map(segment -> contentHash(segment.text())).toList());
+    Map<String, TextSegment> missing = new LinkedHashMap<>();
+    Map<String, List<SegmentRef>> refsByDocument = new LinkedHashMap<>();
+    for (TextSegment segment : segments) {
+      String documentId = segment.metadata().get("documentId");
+      String sessionId = segment.metadata().get("sessionId");
+      String hash = contentHash(segment.text());
+      // A text being stored by a concurrent upload is stored again rather than trusted
+      if (!stored.contains(hash) && !missing.containsKey(hash)) {
+        missing.put(hash, sharedSegment(segment, hash));
+      }
+      SegmentRef ref = new SegmentRef(sessionId, hash, segment.metadata().asMap());
+      reference(documentId, ref);
+      refsByDocument.computeIfAbsent(documentId, id -> new ArrayList<>()).add(ref);
+    }
+    return new Registration(missing, refsByDocument);
+  }
+
+  // References are persisted only once their vectors exist
+  private synchronized void commit(Registration registration) {
+    registration.missing().keySet().stream()
+        .filter(refCounts::containsKey)
+        .forEach(stored::add);
+    registration.refsByDocument().forEach(this::append);
+  }
+
+  private void reference(String documentId, SegmentRef ref) {
+    refCounts.merge(ref.hash(), 1, Integer::sum);
+    sessionRefs
+        .computeIfAbsent(ref.sessionId(), id -> new ConcurrentHashMap<>())
+        .computeIfAbsent(ref.hash(), hash -> new ConcurrentHashMap<>())
+        .put(documentId, ref.metadata());
+    documentRefs
+        .computeIfAbsent(documentId, id -> new DocumentRefs(ref.sessionId(), new ArrayList<>()))
+        .hashes()
+        .add(ref.hash());
+  }
+
+  /**
+   * Drop a document's references, deleting vectors that no other reference holds. The vectors are
+   * deleted outside the lock, so only uploads of the same texts wait for the vector store.
+   */
+  public int removeDocument(String documentId) {
+    List<String> orphaned = release(documentId);
+    if (orphaned == null) {
+      return 0;
+    }
+    try {
+      embeddingStore.removeByIds(orphaned);
+    } finally {
+      deleted(orphaned);
+    }
+    log.info(
+        "Segment vectors deleted - Document: {}, Vectors deleted: {}",
+        documentId,
+        orphaned.size());
+    return orphaned.size();
+  }
+
+  /**
+   * Drop a document's references and return the hashes no reference holds any more, or null if
+   * the document had none. The returned hashes are marked as being deleted until {@link #deleted}.
+   */
+  private synchronized List<String> release(String documentId) {
+    DocumentRefs refs = documentRefs.remove(documentId);
+    if (refs == null) {
+      return null;
+    }
+    Map<String, Map<String, Map<String, String>>> session = sessionRefs.get(refs.sessionId());
+    List<String> orphaned = new ArrayList<>();
+    for (String hash : refs.hashes()) {
+      if (session != null) {
+        Map<String, Map<String, String>> holders = session.get(hash);
+        if (holders != null) {
+          holders.remove(documentId);
+          if (holders.isEmpty()) {
+            session.remove(hash);
+          }
+        }
+      }
+      if (refCounts.merge(hash, -1, Integer::sum) <= 0) {
+        refCounts.remove(hash);
+        stored.remove(hash);
+        orphaned.add(hash);
+      }
+    }
+    if (session != null && session.isEmpty()) {
+      sessionRefs.remove(refs.sessionId());
+    }
+
+    deleting.addAll(orphaned);
+    deleteQuietly(refsFile(documentId));
+    log.info(
+        "Segment references released - Document: {}, References: {}, Orphaned vectors: {}",
+        documentId,
+        refs.hashes().size(),
+        orphaned.size());
+    return orphaned;
+  }
+
+  private synchronized void deleted(List<String> hashes) {
+    deleting.removeAll(hashes);
+    notifyAll();
+  }
+
+  private void awaitDeletes(List<String> hashes) {
+    try {
+      while (hashes.stream().anyMatch(deleting::contains)) {
+        wait();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for segment vectors to be deleted");
+    }
+  }
+
+  /** Drop the references of every document of a session */
+  public int removeSession(String sessionId) {
+    List<String> documentIds =
+        documentRefs.entrySet().stream()
+            .filter(entry -> entry.getValue().sessionId().equals(sessionId))
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+    int deleted = 0;
+    for (String documentId : documentIds) {
+      deleted += removeDocument(documentId);
+    }
+    return deleted;
+  }
+
+  /**
+   * Search the segments a session references, plus its vectors from before deduplication.
+   *
+   * @param type segment type to restrict to, or null for every type
+   */
+  public List<EmbeddingMatch<TextSegment>> findRelevant(
+      String sessionId, Embedding queryEmbedding, int maxResults, double minScore, String type) {
+    Map<String, Map<String, Map<String, String>>> session =
+        sessionRefs.getOrDefault(sessionId, Map.of());
+    List<String> hashes = new ArrayList<>(session.keySet());
+
+    List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+    int groupSize = Math.max(1, maxFilterValues);
+    int from = 0;
+    do {
+      List<String> group = hashes.subList(from, Math.min(from + groupSize, hashes.size()));
+      // The first query also covers legacy vectors tagged with the session id
+      Map<String, Object> filter = sessionFilter(sessionId, group, from == 0, type);
+      if (filter != null) {
+        for (EmbeddingMatch<TextSegment> match :
+            embeddingStore.findRelevantWithFilter(queryEmbedding, maxResults, minScore, filter)) {
+          matches.add(resolve(session, match));
+        }
+      }
+      from += groupSize;
+    } while (from < hashes.size());
+
+    return matches.stream()
+        .sorted(Comparator.comparingDouble(EmbeddingMatch<TextSegment>::score).reversed())
+        .limit(maxResults)
+        .collect(Collectors.toList());
+  }
+
+  private static Map<String, Object> sessionFilter(
+      String sessionId, List<String> hashes, boolean includeLegacy, String type) {
+    List<Map<String, Object>> scopes = new ArrayList<>(2);
+    if (!hashes.isEmpty()) {
+      scopes.add(Map.of(CONTENT_HASH, Map.of("$in", hashes)));
+    }
+    if (includeLegacy) {
+      scopes.add(Map.of("sessionId", Map.of("$eq", sessionId)));
+    }
+    if (scopes.isEmpty()) {
+      return null;
+    }
+    Map<String, Object> scope = scopes.size() == 1 ? scopes.get(0) : Map.of("$or", scopes);
+    return type == null
+        ? scope
+        : Map.of("$and", List.of(scope, Map.of("type", Map.of("$eq", type))));
+  }
+
+  /** Replace shared metadata with the session's own metadata for the same text */
+  private static EmbeddingMatch<TextSegment> resolve(
+      Map<String, Map<String, Map<String, String>>> session, EmbeddingMatch<TextSegment> match) {
+    TextSegment segment = match.embedded();
+    String hash = segment != null ? segment.metadata().get(CONTENT_HASH) : null;
+    Map<String, Map<String, String>> holders = hash != null ? session.get(hash) : null;
+    if (holders == null || holders.isEmpty()) {
+      return match;
+    }
+    Map<String, String> metadata = holders.values().iterator().next();
+    return new EmbeddingMatch<>(
+        match.score(),
+        match.embeddingId(),
+        match.embedding(),
+        TextSegment.from(segment.text(), new Metadata(metadata)));
+  }
+
+  /** Number of distinct segment vectors currently stored */
+  public int distinctSegments() {
+    return stored.size();
+  }
+
+  /** SHA-256 of the text with whitespace runs collapsed, so formatting alone does not split it */
+  public static String contentHash(String text) {
+    String normalized = WHITESPACE.matcher(text.strip()).replaceAll(" ");
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(normalized.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private static TextSegment sharedSegment(TextSegment segment, String hash) {
+    Metadata metadata = new Metadata();
+    segment.metadata().asMap().entrySet().stream()
+        .filter(entry -> !REFERENCE_ONLY_KEYS.contains(entry.getKey()))
+        .forEach(entry -> metadata.add(entry.getKey(), entry.getValue()));
+    metadata.add(CONTENT_HASH, hash);
+    return TextSegment.from(segment.text(), metadata);
+  }
+
+  private void append(String documentId, List<SegmentRef> refs) {
+    try (BufferedWriter writer =
+        Files.newBufferedWriter(
+            refsFile(documentId),
+            StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.APPEND)) {
+      for (SegmentRef ref : refs) {
+        writer.write(objectMapper.writeValueAsString(ref));
+        writer.newLine();
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to record segment references of " + documentId, e);
+    }
+  }
+
+  private void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("Failed to delete segment references {}: {}", file, e.getMessage());
+    }
+  }
+
+  private Path refsFile(String documentId) {
+    return root.resolve(documentId + ".refs.jsonl");
+  }
+}
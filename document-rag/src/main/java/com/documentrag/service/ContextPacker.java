@@ -0,0 +1,158 @@
+package com.documentrag.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fits the parts of a RAG prompt into separate token budgets.
+ *
+ * <p>Instructions are cut to their budget. Segments arrive ranked by relevance and are taken whole
+ * while they fit; the first one that does not fit is truncated if enough budget is left for it to
+ * be useful, and smaller lower-ranked segments may still fill the rest. History keeps the most
+ * recent contiguous messages, truncating the newest one only when it alone exceeds the budget.
+ */
+@Slf4j
+@Component
+public class ContextPacker {
+
+  public static final String PART_INSTRUCTIONS = "instructions";
+  public static final String PART_SEGMENTS = "segments";
+  public static final String PART_HISTORY = "history";
+
+  private static final String TRUNCATION_MARKER = "\n... [truncated]";
+
+  @Autowired private TokenCounter tokenCounter;
+
+  @Autowired private ChatMetrics chatMetrics;
+
+  @Value("${document-rag.prompt.budget.instructions:800}")
+  private int instructionsBudget;
+
+  @Value("${document-rag.prompt.budget.segments:6000}")
+  private int segmentsBudget;
+
+  @Value("${document-rag.prompt.budget.history:2000}")
+  private int historyBudget;
+
+  // A segment is only truncated into the remaining budget if at least this much of it fits
+  @Value("${document-rag.prompt.min-truncated-segment-tokens:120}")
+  private int minTruncatedSegmentTokens;
+
+  /** Packed prompt parts, and the estimated prompt size before and after packing */
+  public record PackedContext(
+      String instructions,
+      List<String> segments,
+      List<String> history,
+      int tokensBefore,
+      int tokensAfter) {
+
+    public int tokensSaved() {
+      return tokensBefore - tokensAfter;
+    }
+  }
+
+  /**
+   * @param instructions system instructions
+   * @param rankedSegments formatted segments, most relevant first
+   * @param history formatted history entries, oldest first
+   */
+  public PackedContext pack(
+      String instructions, List<String> rankedSegments, List<String> history) {
+    Part packedInstructions = packInstructions(instructions);
+    Part packedSegments = packSegments(rankedSegments);
+    Part packedHistory = packHistory(history);
+
+    record(PART_INSTRUCTIONS, packedInstructions);
+    record(PART_SEGMENTS, packedSegments);
+    record(PART_HISTORY, packedHistory);
+
+    PackedContext packed =
+        new PackedContext(
+            packedInstructions.texts().get(0),
+            packedSegments.texts(),
+            packedHistory.texts(),
+            packedInstructions.tokensBefore()
+                + packedSegments.tokensBefore()
+                + packedHistory.tokensBefore(),
+            packedInstructions.tokensAfter()
+                + packedSegments.tokensAfter()
+                + packedHistory.tokensAfter());
+    log.info(
+        "Context packed - Segments: {} of {}, History: {} of {}, Tokens: {} -> {} (saved {})",
+        packed.segments().size(),
+        rankedSegments.size(),
+        packed.history().size(),
+        history.size(),
+        packed.tokensBefore(),
+        packed.tokensAfter(),
+        packed.tokensSaved());
+    return packed;
+  }
+
+  private record Part(List<String> texts, int tokensBefore, int tokensAfter) {}
+
+  private Part packInstructions(String instructions) {
+    int before = tokenCounter.count(instructions);
+    String packed = tokenCounter.truncate(instructions, instructionsBudget, TRUNCATION_MARKER);
+    return new Part(List.of(packed), before, tokenCounter.count(packed));
+  }
+
+  private Part packSegments(List<String> rankedSegments) {
+    List<String> packed = new ArrayList<>();
+    int before = 0;
+    int remaining = segmentsBudget;
+    for (String segment : rankedSegments) {
+      int tokens = tokenCounter.count(segment);
+      before += tokens;
+      if (tokens <= remaining) {
+        packed.add(segment);
+        remaining -= tokens;
+      } else if (remaining >= minTruncatedSegmentTokens) {
+        String truncated = tokenCounter.truncate(segment, remaining, TRUNCATION_MARKER);
+        packed.add(truncated);
+        remaining -= tokenCounter.count(truncated);
+      }
+    }
+    return new Part(packed, before, segmentsBudget - remaining);
+  }
+
+  private Part packHistory(List<String> history) {
+    List<String> packed = new ArrayList<>();
+    int before = 0;
+    int remaining = historyBudget;
+    boolean full = false;
+    for (int i = history.size() - 1; i >= 0; i--) {
+      String entry = history.get(i);
+      int tokens = tokenCounter.count(entry);
+      before += tokens;
+      if (full) {
+        continue;
+      }
+      if (tokens <= remaining) {
+        packed.add(entry);
+        remaining -= tokens;
+      } else {
+        if (packed.isEmpty()) {
+          String truncated = tokenCounter.truncate(entry, remaining, TRUNCATION_MARKER);
+          packed.add(truncated);
+          remaining -= tokenCounter.count(truncated);
+        }
+        // Older messages are dropped so the kept history has no gaps
+        full = true;
+      }
+    }
+    Collections.reverse(packed);
+    return new Part(packed, before, historyBudget - remaining);
+  }
+
+  private void record(String part, Part packed) {
+    chatMetrics.recordPromptPart(
+        part, packed.tokensAfter(), packed.tokensBefore() - packed.tokensAfter());
+  }
+}
@@ -0,0 +1,224 @@
+package com.documentrag.service;
+
+import com.common.AIServiceConstants;
+import com.common.AIServiceManager;
+import com.documentrag.model.DocumentChatRequest.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded per-session chat history.
+ *
+ * <p>A session keeps its most recent messages verbatim. Older messages are folded into a running
+ * summary by the LLM on a background thread, so a turn never waits for summarization and the
+ * prompt stops growing with conversation length. Every part is capped: the number of recent
+ * messages, the tokens per stored message, the messages waiting to be folded and the summary.
+ */
+@Slf4j
+@Service
+public class ConversationMemory {
+
+  private static final String TRUNCATION_MARKER = " ... [truncated]";
+
+  private static final String SUMMARY_INSTRUCTIONS =
+      "You maintain a running summary of a conversation about Java code. Merge the new messages "
+          + "into the existing summary. Keep the classes, methods and facts the user asked about "
+          + "and the conclusions reached. Reply with the summary only, in at most %d words.";
+
+  @Autowired private AIServiceManager aiServiceManager;
+
+  @Autowired private TokenCounter tokenCounter;
+
+  // Messages kept verbatim; evicted messages are folded into the summary
+  @Value("${document-rag.history.max-recent-messages:8}")
+  private int maxRecentMessages;
+
+  @Value("${document-rag.history.max-message-tokens:1000}")
+  private int maxMessageTokens;
+
+  @Value("${document-rag.history.summary-max-tokens:400}")
+  private int summaryMaxTokens;
+
+  // Evicted messages waiting for summarization; the oldest are dropped if the summarizer lags
+  @Value("${document-rag.history.max-pending-messages:16}")
+  private int maxPendingMessages;
+
+  private final ConcurrentHashMap<String, SessionHistory> sessions = new ConcurrentHashMap<>();
+
+  private final ExecutorService summarizer;
+
+  public ConversationMemory(@Value("${document-rag.history.summarizer-threads:2}") int threads) {
+    AtomicInteger count = new AtomicInteger();
+    ThreadFactory threadFactory =
+        runnable -> {
+          Thread thread = new Thread(runnable, "history-summarizer-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        };
+    this.summarizer = Executors.newFixedThreadPool(threads, threadFactory);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    summarizer.shutdownNow();
+  }
+
+  /** Summary of folded messages (null before the first fold) and the recent messages */
+  public record Snapshot(String summary, List<ChatMessage> recent) {}
+
+  /** Consistent copy of a session's history; unknown sessions are empty */
+  public Snapshot snapshot(String sessionId) {
+    SessionHistory session = sessions.get(sessionId);
+    return session == null ? new Snapshot(null, List.of()) : session.snapshot();
+  }
+
+  /**
+   * Append messages atomically, so a turn's question and answer stay adjacent under concurrent
+   * turns. Each message is given the next sequence number of the session. Returns the recent
+   * messages after the append.
+   */
+  public List<ChatMessage> append(String sessionId, ChatMessage... messages) {
+    SessionHistory session = sessions.computeIfAbsent(sessionId, id -> new SessionHistory());
+    List<ChatMessage> recent;
+    boolean fold;
+    synchronized (session) {
+      for (ChatMessage message : messages) {
+        message.setSequence(session.nextSequence++);
+        session.recent.addLast(bounded(message));
+      }
+      while (session.recent.size() > maxRecentMessages) {
+        session.pending.addLast(session.recent.removeFirst());
+      }
+      dropOverflow(sessionId, session);
+      recent = new ArrayList<>(session.recent);
+      fold = !session.pending.isEmpty() && !session.summarizing;
+      session.summarizing |= fold;
+    }
+    if (fold) {
+      summarizer.execute(() -> fold(sessionId, session));
+    }
+    return recent;
+  }
+
+  public void clear(String sessionId) {
+    sessions.remove(sessionId);
+  }
+
+  private void fold(String sessionId, SessionHistory session) {
+    String summary;
+    List<ChatMessage> batch;
+    synchronized (session) {
+      summary = session.summary;
+      batch = new ArrayList<>(session.pending);
+      session.pending.clear();
+    }
+    boolean folded = false;
+    try {
+      long start = System.nanoTime();
+      String updated = tokenCounter.truncate(summarize(summary, batch), summaryMaxTokens, "");
+      synchronized (session) {
+        session.summary = updated;
+      }
+      folded = true;
+      log.info(
+          "Conversation history folded - Session: {}, Messages: {}, Summary tokens: {}, "
+              + "Elapsed: {} ms",
+          sessionId,
+          batch.size(),
+          tokenCounter.count(updated),
+          (System.nanoTime() - start) / 1_000_000);
+    } catch (Exception e) {
+      log.error("History summarization failed for session {}: {}", sessionId, e.getMessage(), e);
+      // Retried with the next eviction, within the pending cap
+      synchronized (session) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+          session.pending.addFirst(batch.get(i));
+        }
+        dropOverflow(sessionId, session);
+      }
+    } finally {
+      boolean again;
+      synchronized (session) {
+        // Messages evicted while this fold ran are folded right away
+        again = folded && !session.pending.isEmpty();
+        session.summarizing = again;
+      }
+      if (again) {
+        summarizer.execute(() -> fold(sessionId, session));
+      }
+    }
+  }
+
+  private String summarize(String summary, List<ChatMessage> messages) {
+    StringBuilder input = new StringBuilder();
+    input.append("Existing summary:\n").append(summary == null ? "(none)" : summary);
+    input.append("\n\nNew messages:\n");
+    for (ChatMessage message : messages) {
+      input
+          .append("user".equals(message.getRole()) ? "User: " : "Assistant: ")
+          .append(message.getContent())
+          .append("\n");
+    }
+    // Roughly three words per four tokens
+    int maxWords = summaryMaxTokens * 3 / 4;
+    return aiServiceManager
+        .getModel(AIServiceConstants.OPENAI_SERVICE, null)
+        .generate(
+            List.of(
+                new SystemMessage(String.format(SUMMARY_INSTRUCTIONS, maxWords)),
+                new UserMessage(input.toString())))
+        .content()
+        .text();
+  }
+
+  private void dropOverflow(String sessionId, SessionHistory session) {
+    int dropped = 0;
+    while (session.pending.size() > maxPendingMessages) {
+      session.pending.removeFirst();
+      dropped++;
+    }
+    if (dropped > 0) {
+      log.warn(
+          "History summarization lagging - Session: {}, Messages dropped: {}", sessionId, dropped);
+    }
+  }
+
+  // Stored copy with its content capped; the caller's message is left as is
+  private ChatMessage bounded(ChatMessage message) {
+    ChatMessage copy = new ChatMessage();
+    copy.setRole(message.getRole());
+    copy.setContent(
+        tokenCounter.truncate(message.getContent(), maxMessageTokens, TRUNCATION_MARKER));
+    copy.setTimestamp(message.getTimestamp());
+    copy.setSequence(message.getSequence());
+    return copy;
+  }
+
+  /** Guarded by its own monitor */
+  private static final class SessionHistory {
+    private final Deque<ChatMessage> recent = new ArrayDeque<>();
+    private final Deque<ChatMessage> pending = new ArrayDeque<>();
+    private String summary;
+    private boolean summarizing;
+    private long nextSequence = 1;
+
+    synchronized Snapshot snapshot() {
+      return new Snapshot(summary, List.copyOf(recent));
+    }
+  }
+}
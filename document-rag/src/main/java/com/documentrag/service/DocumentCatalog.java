@@ -0,0 +1,248 @@
+package com.documentrag.service;
+
+import com.documentrag.model.DocumentInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * File-backed catalog of uploaded documents, one JSON file per document under a directory per
+ * session.
+ *
+ * <p>Only the lookup keys (document to session, session and content hash to document, last upload
+ * per session) are kept in memory. Records are read from disk on demand, so the catalog survives
+ * restarts and its heap footprint does not grow with document metadata.
+ */
+@Slf4j
+@Component
+public class DocumentCatalog {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Value("${document-rag.catalog.dir:data/document-catalog}")
+  private String catalogDir;
+
+  private Path root;
+
+  private final ConcurrentHashMap<String, String> sessionByDocument = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, String> documentByContent = new ConcurrentHashMap<>();
+  // Content being processed by an upload that has not been saved yet
+  private final ConcurrentHashMap<String, String> pendingByContent = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, Long> lastUploadBySession = new ConcurrentHashMap<>();
+  // Derived from documentByContent; dropped whenever a session's documents change
+  private final ConcurrentHashMap<String, String> documentSetVersions = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  public void load() throws IOException {
+    root = Paths.get(catalogDir).toAbsolutePath();
+    Files.createDirectories(root);
+    try (Stream<Path> files = Files.walk(root, 2)) {
+      files.filter(file -> file.toString().endsWith(".json")).forEach(this::loadRecord);
+    }
+    log.info(
+        "Document catalog loaded - Directory: {}, Documents: {}, Sessions: {}",
+        root,
+        sessionByDocument.size(),
+        lastUploadBySession.size());
+  }
+
+  private void loadRecord(Path file) {
+    try {
+      index(objectMapper.readValue(file.toFile(), DocumentInfo.class));
+    } catch (IOException e) {
+      log.warn("Skipping unreadable catalog entry {}: {}", file, e.getMessage());
+    }
+  }
+
+  public synchronized void save(DocumentInfo document) {
+    try {
+      Path file = fileOf(document.getSessionId(), document.getDocumentId());
+      Files.createDirectories(file.getParent());
+      Path temp = Files.createTempFile(file.getParent(), document.getDocumentId(), ".tmp");
+      objectMapper.writeValue(temp.toFile(), document);
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      index(document);
+      if (document.getContentHash() != null) {
+        pendingByContent.remove(contentKey(document.getSessionId(), document.getContentHash()));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to save catalog entry " + document.getDocumentId(), e);
+    }
+  }
+
+  public Optional<DocumentInfo> get(String documentId) {
+    String sessionId = sessionByDocument.get(documentId);
+    return sessionId != null ? read(fileOf(sessionId, documentId)) : Optional.empty();
+  }
+
+  /**
+   * Claims the content for a new upload of the session, unless a saved or in-progress upload
+   * already holds it. Returns the id of that document, or empty if the claim succeeded. A claim
+   * ends when the document is saved or the claim is released.
+   */
+  public synchronized Optional<String> reserveContent(
+      String sessionId, String contentHash, String documentId) {
+    String key = contentKey(sessionId, contentHash);
+    String saved = documentByContent.get(key);
+    return saved != null
+        ? Optional.of(saved)
+        : Optional.ofNullable(pendingByContent.putIfAbsent(key, documentId));
+  }
+
+  /** Gives up a claim made by {@link #reserveContent} for an upload that was not saved */
+  public void releaseContent(String sessionId, String contentHash, String documentId) {
+    pendingByContent.remove(contentKey(sessionId, contentHash), documentId);
+  }
+
+  /** Documents of a session, oldest first */
+  public List<DocumentInfo> list(String sessionId) {
+    Path sessionDir = root.resolve(sessionKey(sessionId));
+    if (!Files.isDirectory(sessionDir)) {
+      return List.of();
+    }
+    try (Stream<Path> files = Files.list(sessionDir)) {
+      return files
+          .filter(file -> file.toString().endsWith(".json"))
+          .map(this::read)
+          .flatMap(Optional::stream)
+          .sorted(Comparator.comparingLong(DocumentInfo::getUploadedAt))
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to list catalog for session " + sessionId, e);
+    }
+  }
+
+  public synchronized Optional<DocumentInfo> remove(String documentId) {
+    Optional<DocumentInfo> document = get(documentId);
+    document.ifPresent(
+        info -> {
+          deleteQuietly(fileOf(info.getSessionId(), documentId));
+          sessionByDocument.remove(documentId);
+          documentByContent.remove(contentKey(info.getSessionId(), info.getContentHash()));
+          documentSetVersions.remove(info.getSessionId());
+          if (list(info.getSessionId()).isEmpty()) {
+            removeSession(info.getSessionId());
+          }
+        });
+    return document;
+  }
+
+  /** Drops every document of the session and returns how many were removed */
+  public synchronized int removeSession(String sessionId) {
+    List<String> documentIds =
+        sessionByDocument.entrySet().stream()
+            .filter(entry -> entry.getValue().equals(sessionId))
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+    documentIds.forEach(sessionByDocument::remove);
+    documentByContent.keySet().removeIf(key -> key.startsWith(sessionId + "\n"));
+    pendingByContent.keySet().removeIf(key -> key.startsWith(sessionId + "\n"));
+    lastUploadBySession.remove(sessionId);
+    documentSetVersions.remove(sessionId);
+
+    Path sessionDir = root.resolve(sessionKey(sessionId));
+    if (Files.isDirectory(sessionDir)) {
+      try (Stream<Path> files = Files.list(sessionDir)) {
+        files.forEach(this::deleteQuietly);
+      } catch (IOException e) {
+        log.warn("Failed to list catalog directory {}: {}", sessionDir, e.getMessage());
+      }
+      deleteQuietly(sessionDir);
+    }
+    return documentIds.size();
+  }
+
+  /**
+   * Fingerprint of the content of a session's documents, or null if it has none. Sessions that
+   * uploaded the same files share a version, and it changes whenever a document is added or
+   * removed.
+   */
+  public String documentSetVersion(String sessionId) {
+    return documentSetVersions.computeIfAbsent(sessionId, this::computeDocumentSetVersion);
+  }
+
+  private String computeDocumentSetVersion(String sessionId) {
+    String prefix = contentKey(sessionId, "");
+    List<String> hashes =
+        documentByContent.keySet().stream()
+            .filter(key -> key.startsWith(prefix))
+            .map(key -> key.substring(prefix.length()))
+            .sorted()
+            .collect(Collectors.toList());
+    return hashes.isEmpty()
+        ? null
+        : ContentAddressedSegmentStore.contentHash(String.join(" ", hashes));
+  }
+
+  /** Sessions whose most recent upload is older than the given time to live */
+  public List<String> expiredSessions(Duration ttl) {
+    long cutoff = System.currentTimeMillis() - ttl.toMillis();
+    return lastUploadBySession.entrySet().stream()
+        .filter(entry -> entry.getValue() < cutoff)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  private void index(DocumentInfo document) {
+    sessionByDocument.put(document.getDocumentId(), document.getSessionId());
+    if (document.getContentHash() != null) {
+      documentByContent.put(
+          contentKey(document.getSessionId(), document.getContentHash()), document.getDocumentId());
+    }
+    lastUploadBySession.merge(document.getSessionId(), document.getUploadedAt(), Math::max);
+    documentSetVersions.remove(document.getSessionId());
+  }
+
+  private Optional<DocumentInfo> read(Path file) {
+    try {
+      return Files.exists(file)
+          ? Optional.of(objectMapper.readValue(file.toFile(), DocumentInfo.class))
+          : Optional.empty();
+    } catch (IOException e) {
+      log.warn("Failed to read catalog entry {}: {}", file, e.getMessage());
+      return Optional.empty();
+    }
+  }
+
+  private void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      log.warn("Failed to delete catalog path {}: {}", path, e.getMessage());
+    }
+  }
+
+  private Path fileOf(String sessionId, String documentId) {
+    return root.resolve(sessionKey(sessionId)).resolve(documentId + ".json");
+  }
+
+  // Session ids come from clients, so they are encoded before being used as directory names
+  private static String sessionKey(String sessionId) {
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(sessionId.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String contentKey(String sessionId, String contentHash) {
+    return sessionId + "\n" + contentHash;
+  }
+}
@@ -1,13 +1,19 @@
 package com.documentrag.service;
 
+import com.documentrag.model.ConversationHistoryPage;
 import com.documentrag.model.DocumentChatRequest;
 import com.documentrag.model.DocumentChatResponse;
+import com.documentrag.model.DocumentChatStreamEvent;
+import com.documentrag.service.EnumerationAnswerService.EnumerationAnswer;
 import com.common.AIServiceManager;
 import com.common.AIServiceConstants;
+import com.common.service.TraceCaptureService;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.model.StreamingResponseHandler;
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.SystemMessage;
@@ -15,13 +21,18 @@ import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.output.Response;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -30,15 +41,44 @@ public class DocumentChatService {
 
   @Autowired private PineconeEmbeddingStore embeddingStore;
 
-  @Autowired private OpenAIEmbeddingModel embeddingModel;
-
   @Autowired private AIServiceManager aiServiceManager;
   
-  @Autowired private IntentDetectionService intentDetectionService;
+  @Autowired private RetrievalPipeline retrievalPipeline;
+
+  @Autowired private EnumerationAnswerService enumerationAnswerService;
+
+  @Autowired private ContentAddressedSegmentStore segmentStore;
+
+  @Autowired private ContextPacker contextPacker;
+
+  @Autowired private ConversationMemory conversationMemory;
+
+  @Autowired private AnswerCache answerCache;
+
+  @Autowired private DocumentCatalog documentCatalog;
+
+  @Autowired private TraceCaptureService traceCaptureService;
+
+  @Autowired private PromptTemplates promptTemplates;
+
+  @Autowired private ChatMetrics chatMetrics;
+
+  // Segments per embedding request and per Pinecone upsert
+  @Value("${document-rag.ingestion.batch-size:64}")
+  private int ingestionBatchSize;
+
+  static final String ANSWER_SOURCE_LLM = "llm";
+  static final String ANSWER_SOURCE_SYMBOL_INDEX = "symbol-index";
+
+  static final String HISTORY_MODE_DELTA = "delta";
+
+  private static final String TRACE_COMPONENT = "document-rag";
+
+  private static final String NO_ANSWER_MESSAGE =
+      "I apologize, but I couldn't generate a response. Please try rephrasing your question.";
+  private static final String ERROR_ANSWER_MESSAGE =
+      "I encountered an error while processing your request. Please try again.";
 
-  // In-memory conversation history (in production, use Redis or database)
-  private final ConcurrentHashMap<String, List<DocumentChatRequest.ChatMessage>>
-      conversationHistory = new ConcurrentHashMap<>();
 
   public DocumentChatResponse chatWithDocuments(DocumentChatRequest request) {
     DocumentChatResponse response = new DocumentChatResponse();
@@ -60,38 +100,76 @@ public class DocumentChatService {
         return response;
       }
 
-      // Get conversation history for this session
-      List<DocumentChatRequest.ChatMessage> history = getConversationHistory(sessionId);
-
-      // Add user message to history
-      DocumentChatRequest.ChatMessage userMsg = new DocumentChatRequest.ChatMessage();
-      userMsg.setRole("user");
-      userMsg.setContent(userMessage);
-      userMsg.setTimestamp(String.valueOf(System.currentTimeMillis()));
+      // The prompt sees the question as part of history; the stored history is only updated
+      // with the complete exchange
+      ConversationMemory.Snapshot memory = conversationMemory.snapshot(sessionId);
+      List<DocumentChatRequest.ChatMessage> history = new ArrayList<>(memory.recent());
+      DocumentChatRequest.ChatMessage userMsg = chatMessage("user", userMessage);
       history.add(userMsg);
 
-      // Search for relevant documents
-      List<TextSegment> relevantDocs = searchRelevantDocuments(userMessage, sessionId);
+      // Embedding, intent detection and both searches start now; the intent arrives first and
+      // drives the fast path, the segments are only awaited when the LLM needs them
+      RetrievalPipeline.Retrieval retrieval = retrievalPipeline.retrieve(sessionId, userMessage);
+      IntentDetectionService.IntentDetectionResult intentResult = retrieval.intent().join();
+
+      String aiResponse;
+      String answerSource;
+      List<String> relevantDocStrings;
+      boolean cacheHit = false;
+      Optional<EnumerationAnswer> enumerationAnswer =
+          enumerationAnswerService.tryAnswer(
+              sessionId, userMessage, intentResult, request.getFastPath());
+      if (enumerationAnswer.isPresent()) {
+        // Pure listing question: answered from the symbol index without search or LLM
+        retrieval.cancel();
+        aiResponse = enumerationAnswer.get().answer();
+        answerSource = ANSWER_SOURCE_SYMBOL_INDEX;
+        relevantDocStrings = describeSymbols(enumerationAnswer.get());
+      } else {
+        // The query embedding is ready once the intent is, so the cache lookup costs no wait
+        String documentSetVersion = documentCatalog.documentSetVersion(sessionId);
+        Embedding queryEmbedding = queryEmbedding(retrieval);
+        // Only opening questions are cached, and only they can be answered without the history
+        Optional<AnswerCache.CachedAnswer> cached =
+            queryEmbedding != null && isOpeningQuestion(memory)
+                ? answerCache.find(documentSetVersion, queryEmbedding)
+                : Optional.empty();
+        answerSource = ANSWER_SOURCE_LLM;
+        if (cached.isPresent()) {
+          retrieval.cancel();
+          aiResponse = cached.get().answer();
+          relevantDocStrings = cached.get().relevantDocuments();
+          cacheHit = true;
+        } else {
+          // Search for relevant documents
+          List<TextSegment> relevantDocs = retrieval.segments().join();
+          log.info(
+              "Found {} relevant documents for query in session {}",
+              relevantDocs.size(),
+              sessionId);
+
+          // Generate AI response
+          aiResponse =
+              generateAIResponse(
+                  sessionId, userMessage, relevantDocs, history, memory.summary(), intentResult);
+          relevantDocStrings = describeSegments(relevantDocs);
+          if (queryEmbedding != null && isCacheable(memory, aiResponse)) {
+            answerCache.put(
+                documentSetVersion,
+                queryEmbedding,
+                new AnswerCache.CachedAnswer(aiResponse, relevantDocStrings));
+          }
+        }
+      }
+
+      // Store the exchange; older turns are folded into the session summary
+      DocumentChatRequest.ChatMessage assistantMsg = chatMessage("assistant", aiResponse);
+      List<DocumentChatRequest.ChatMessage> storedHistory =
+          conversationMemory.append(sessionId, userMsg, assistantMsg);
       log.info(
-          "Found {} relevant documents for query in session {}", relevantDocs.size(), sessionId);
-
-      // Generate AI response
-      String aiResponse = generateAIResponse(userMessage, relevantDocs, history);
-
-      // Add assistant response to conversation history
-      DocumentChatRequest.ChatMessage assistantMsg = new DocumentChatRequest.ChatMessage();
-      assistantMsg.setRole("assistant");
-      assistantMsg.setContent(aiResponse);
-      assistantMsg.setTimestamp(String.valueOf(System.currentTimeMillis()));
-      history.add(assistantMsg);
-
-      // Store the updated conversation history back to the ConcurrentHashMap
-      conversationHistory.put(sessionId, history);
-      
-      log.info("=== CONVERSATION HISTORY STORED ===");
-      log.info("Final history size: {}", history.size());
-      log.info("History stored in ConcurrentHashMap for session: {}", sessionId);
-      log.info("=== END CONVERSATION HISTORY STORED ===");
+          "Conversation history stored - Session: {}, Recent messages: {}",
+          sessionId,
+          storedHistory.size());
 
       // Build response
       response.setSuccess(true);
@@ -99,19 +177,15 @@ public class DocumentChatService {
       response.setAnswer(aiResponse);
       response.setResponse(aiResponse); // Set response field for UI compatibility
       response.setSessionId(sessionId);
-      
-      // Convert TextSegments to strings for the response
-      List<String> relevantDocStrings = relevantDocs.stream()
-          .map(segment -> String.format("[%s] %s.%s (Lines %s-%s)", 
-              segment.metadata().get("type"),
-              segment.metadata().get("class"),
-              segment.metadata().get("name"),
-              segment.metadata().get("startLine"),
-              segment.metadata().get("endLine")))
-          .collect(Collectors.toList());
-      
+      response.setAnswerSource(answerSource);
+      response.setCacheHit(cacheHit);
       response.setRelevantDocuments(relevantDocStrings);
-      response.setConversationHistory(history);
+      response.setNewMessages(List.of(userMsg, assistantMsg));
+      response.setHistoryCursor(assistantMsg.getSequence());
+      // Delta mode leaves the history to the paginated endpoint
+      if (!isDeltaMode(request)) {
+        response.setConversationHistory(storedHistory);
+      }
 
       log.info(
           "Chat response generated successfully - Session: {}, Response length: {}",
@@ -127,6 +201,289 @@ public class DocumentChatService {
     return response;
   }
 
+  /**
+   * Streaming variant of {@link #chatWithDocuments}: emits the retrieval result first, then LLM
+   * tokens as they arrive, and appends the exchange to the conversation history only once the
+   * answer is complete.
+   */
+  public Flux<DocumentChatStreamEvent> streamChatWithDocuments(DocumentChatRequest request) {
+    String sessionId = request.getSessionId();
+    String userMessage = request.getMessage();
+    if (userMessage == null || userMessage.trim().isEmpty()) {
+      return Flux.just(
+          DocumentChatStreamEvent.error(
+              sessionId, "Please provide a question to ask about your documents."));
+    }
+
+    return Flux.<DocumentChatStreamEvent>create(
+            sink -> {
+              try {
+                log.info(
+                    "Processing streaming chat request - Session: {}, Message: {}",
+                    sessionId,
+                    userMessage.substring(0, Math.min(userMessage.length(), 50)));
+
+                // The prompt sees the question as part of history; the stored history is only
+                // updated when the answer completes
+                ConversationMemory.Snapshot memory = conversationMemory.snapshot(sessionId);
+                List<DocumentChatRequest.ChatMessage> history =
+                    new ArrayList<>(memory.recent());
+                DocumentChatRequest.ChatMessage userMsg = chatMessage("user", userMessage);
+                history.add(userMsg);
+
+                RetrievalPipeline.Retrieval retrieval =
+                    retrievalPipeline.retrieve(sessionId, userMessage);
+                sink.onCancel(retrieval::cancel);
+                IntentDetectionService.IntentDetectionResult intentResult =
+                    retrieval.intent().join();
+
+                Optional<EnumerationAnswer> enumerationAnswer =
+                    enumerationAnswerService.tryAnswer(
+                        sessionId, userMessage, intentResult, request.getFastPath());
+                if (enumerationAnswer.isPresent()) {
+                  retrieval.cancel();
+                  String answer = enumerationAnswer.get().answer();
+                  sink.next(
+                      DocumentChatStreamEvent.retrieval(
+                          sessionId,
+                          describeSymbols(enumerationAnswer.get()),
+                          ANSWER_SOURCE_SYMBOL_INDEX));
+                  sink.next(DocumentChatStreamEvent.contentChunk(sessionId, answer));
+                  sink.next(
+                      completeExchange(request, userMsg, answer, ANSWER_SOURCE_SYMBOL_INDEX));
+                  sink.complete();
+                  return;
+                }
+
+                String documentSetVersion = documentCatalog.documentSetVersion(sessionId);
+                Embedding queryEmbedding = queryEmbedding(retrieval);
+                Optional<AnswerCache.CachedAnswer> cached =
+                    queryEmbedding != null && isOpeningQuestion(memory)
+                        ? answerCache.find(documentSetVersion, queryEmbedding)
+                        : Optional.empty();
+                if (cached.isPresent()) {
+                  retrieval.cancel();
+                  String answer = cached.get().answer();
+                  DocumentChatStreamEvent retrievalEvent =
+                      DocumentChatStreamEvent.retrieval(
+                          sessionId, cached.get().relevantDocuments(), ANSWER_SOURCE_LLM);
+                  retrievalEvent.setCacheHit(true);
+                  sink.next(retrievalEvent);
+                  sink.next(DocumentChatStreamEvent.contentChunk(sessionId, answer));
+                  sink.next(completeExchange(request, userMsg, answer, ANSWER_SOURCE_LLM));
+                  sink.complete();
+                  return;
+                }
+
+                List<TextSegment> relevantDocs = retrieval.segments().join();
+                if (sink.isCancelled()) {
+                  log.info("Streaming chat cancelled before generation - Session: {}", sessionId);
+                  return;
+                }
+                List<String> relevantDocStrings = describeSegments(relevantDocs);
+                sink.next(
+                    DocumentChatStreamEvent.retrieval(
+                        sessionId, relevantDocStrings, ANSWER_SOURCE_LLM));
+
+                List<ChatMessage> messages =
+                    buildPromptMessages(
+                        userMessage, relevantDocs, history, memory.summary(), intentResult);
+                TraceCaptureService.Trace trace =
+                    startTrace("chat-stream", sessionId).prompt(messages);
+                StreamingChatLanguageModel streamingModel =
+                    aiServiceManager.getStreamingModel(AIServiceConstants.OPENAI_SERVICE, null);
+                StringBuilder answer = new StringBuilder();
+                AtomicBoolean aborted = new AtomicBoolean();
+                streamingModel.generate(
+                    messages,
+                    new StreamingResponseHandler<AiMessage>() {
+                      @Override
+                      public void onNext(String token) {
+                        if (sink.isCancelled()) {
+                          // Tokens arrive on the HTTP client thread; interrupting it fails the
+                          // next read, which closes the connection and stops generation
+                          if (aborted.compareAndSet(false, true)) {
+                            log.info(
+                                "Streaming chat cancelled by client - Session: {}, Chars: {}",
+                                sessionId,
+                                answer.length());
+                            Thread.currentThread().interrupt();
+                          }
+                          return;
+                        }
+                        answer.append(token);
+                        sink.next(DocumentChatStreamEvent.contentChunk(sessionId, token));
+                      }
+
+                      @Override
+                      public void onComplete(Response<AiMessage> response) {
+                        if (sink.isCancelled()) {
+                          // A partial answer is neither cached nor added to the history
+                          trace.fail(new CancellationException("Cancelled by client"));
+                          return;
+                        }
+                        trace.finish(answer.toString());
+                        recordPromptUsage(messages, response);
+                        if (queryEmbedding != null && isCacheable(memory, answer.toString())) {
+                          answerCache.put(
+                              documentSetVersion,
+                              queryEmbedding,
+                              new AnswerCache.CachedAnswer(answer.toString(), relevantDocStrings));
+                        }
+                        sink.next(
+                            completeExchange(
+                                request, userMsg, answer.toString(), ANSWER_SOURCE_LLM));
+                        sink.complete();
+                      }
+
+                      @Override
+                      public void onError(Throwable error) {
+                        trace.fail(error);
+                        if (sink.isCancelled()) {
+                          return;
+                        }
+                        log.error(
+                            "Streaming chat failed for session {}: {}",
+                            sessionId,
+                            error.getMessage(),
+                            error);
+                        sink.next(
+                            DocumentChatStreamEvent.error(
+                                sessionId, "Streaming error: " + error.getMessage()));
+                        sink.complete();
+                      }
+                    });
+              } catch (Exception e) {
+                if (sink.isCancelled()) {
+                  // Retrieval was cancelled along with the stream
+                  log.info("Streaming chat cancelled during retrieval - Session: {}", sessionId);
+                  return;
+                }
+                log.error("Error processing streaming chat request: {}", e.getMessage(), e);
+                sink.next(
+                    DocumentChatStreamEvent.error(
+                        sessionId, "Error processing chat request: " + e.getMessage()));
+                sink.complete();
+              }
+            })
+        // Waiting on retrieval blocks, so it runs off the request thread
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  private DocumentChatStreamEvent completeExchange(
+      DocumentChatRequest request,
+      DocumentChatRequest.ChatMessage userMsg,
+      String answer,
+      String answerSource) {
+    String sessionId = request.getSessionId();
+    DocumentChatRequest.ChatMessage assistantMsg = chatMessage("assistant", answer);
+    List<DocumentChatRequest.ChatMessage> history =
+        conversationMemory.append(sessionId, userMsg, assistantMsg);
+    log.info(
+        "Streaming chat completed - Session: {}, Response length: {}, History size: {}",
+        sessionId,
+        answer.length(),
+        history.size());
+    DocumentChatStreamEvent event =
+        DocumentChatStreamEvent.complete(
+            sessionId, answer, answerSource, isDeltaMode(request) ? null : history);
+    event.setHistoryCursor(assistantMsg.getSequence());
+    return event;
+  }
+
+  /** Share of the provider-reported prompt tokens taken by the precompiled instructions */
+  private void recordPromptUsage(List<ChatMessage> messages, Response<AiMessage> response) {
+    if (response.tokenUsage() == null || response.tokenUsage().inputTokenCount() == null) {
+      return;
+    }
+    String systemPrompt = ((SystemMessage) messages.get(0)).text();
+    chatMetrics.recordPromptPrefix(
+        promptTemplates.stablePrefixTokens(systemPrompt),
+        response.tokenUsage().inputTokenCount());
+  }
+
+  private TraceCaptureService.Trace startTrace(String operation, String sessionId) {
+    return traceCaptureService
+        .start(TRACE_COMPONENT, operation, sessionId)
+        .service(AIServiceConstants.OPENAI_SERVICE);
+  }
+
+  private static boolean isDeltaMode(DocumentChatRequest request) {
+    return HISTORY_MODE_DELTA.equalsIgnoreCase(request.getHistoryMode());
+  }
+
+  /**
+   * The question's embedding, or null if it could not be computed. Without it the answer cache is
+   * skipped; retrieval already falls back to an answer without documents.
+   */
+  private static Embedding queryEmbedding(RetrievalPipeline.Retrieval retrieval) {
+    try {
+      return retrieval.embedding().join();
+    } catch (CompletionException | CancellationException e) {
+      log.warn("Query embedding failed, answer cache skipped: {}", e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Whether the question opens the session's conversation, so no earlier turn shapes it. Only
+   * answers to opening questions are cached: later answers may lean on the conversation and would
+   * not fit a near-identical question asked elsewhere.
+   */
+  private static boolean isOpeningQuestion(ConversationMemory.Snapshot memory) {
+    return memory.summary() == null && memory.recent().isEmpty();
+  }
+
+  private static boolean isCacheable(ConversationMemory.Snapshot memory, String answer) {
+    return isOpeningQuestion(memory)
+        && answer != null
+        && !answer.isBlank()
+        && !NO_ANSWER_MESSAGE.equals(answer)
+        && !ERROR_ANSWER_MESSAGE.equals(answer);
+  }
+
+  private static DocumentChatRequest.ChatMessage chatMessage(String role, String content) {
+    DocumentChatRequest.ChatMessage message = new DocumentChatRequest.ChatMessage();
+    message.setRole(role);
+    message.setContent(content);
+    message.setTimestamp(String.valueOf(System.currentTimeMillis()));
+    return message;
+  }
+
+  private static List<String> describeSymbols(EnumerationAnswer answer) {
+    return answer.symbols().stream()
+        .map(
+            symbol ->
+                String.format(
+                    "[%s] %s.%s (Lines %s-%s)",
+                    symbol.getKind(),
+                    symbol.getClassName(),
+                    symbol.getName(),
+                    symbol.getStartLine(),
+                    symbol.getEndLine()))
+        .collect(Collectors.toList());
+  }
+
+  // Convert TextSegments to strings for the response
+  private List<String> describeSegments(List<TextSegment> segments) {
+    return segments.stream()
+        .map(
+            segment ->
+                String.format(
+                    "[%s] %s.%s (Lines %s-%s)",
+                    segment.metadata().get("type"),
+                    segment.metadata().get("class"),
+                    segment.metadata().get("name"),
+                    segment.metadata().get("startLine"),
+                    segment.metadata().get("endLine")))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Store all segments of a document. If any batch fails, the document's references and the
+   * vectors only it held are removed again and the failure is rethrown, so a document is either
+   * fully searchable or not stored at all.
+   */
   public void addDocumentToVectorStore(
       String documentId, List<TextSegment> segments, String documentType) {
     try {
@@ -137,11 +494,10 @@ public class DocumentChatService {
           segments.size());
 
       // Store pre-split segments in embedding store (metadata is already preserved from Document)
-      for (TextSegment segment : segments) {
-        log.info(
-            "Storing segment in embedding store"+ segment);
-        Embedding embedding = embeddingModel.embed(segment).content();
-        embeddingStore.add(embedding, segment);
+      for (int from = 0; from < segments.size(); from += ingestionBatchSize) {
+        addSegmentsToVectorStore(
+            segments.subList(from, Math.min(from + ingestionBatchSize, segments.size())),
+            documentType);
       }
 
       log.info(
@@ -149,230 +505,208 @@ public class DocumentChatService {
           documentId,
           segments.size());
 
-    } catch (Exception e) {
+    } catch (RuntimeException e) {
       log.error("Error adding document to vector store: {}", e.getMessage(), e);
+      try {
+        segmentStore.removeDocument(documentId);
+      } catch (RuntimeException rollback) {
+        e.addSuppressed(rollback);
+      }
+      throw e;
     }
   }
 
-    /**
-     * Search for relevant documents using hybrid search (semantic + metadata filtering)
-     */
-    private List<TextSegment> searchRelevantDocuments(String userMessage, String sessionId) {
-        try {
-            // Use embedding-based intent detection instead of hardcoded regex
-            IntentDetectionService.IntentDetectionResult intentResult = intentDetectionService.detectSearchIntent(userMessage);
-            IntentDetectionService.SearchIntent searchIntent = intentResult.getIntent();
-            double confidence = intentResult.getConfidence();
-            
-            log.info("Search intent detected: {} (confidence: {}) for query: '{}'", 
-                searchIntent, confidence, userMessage);
-            
-            // Create metadata filter based on search intent
-            Map<String, String> metadataFilter = new HashMap<>();
-            metadataFilter.put("sessionId", sessionId);
-            
-            // Add type filtering based on intent
-            if (searchIntent != IntentDetectionService.SearchIntent.GENERAL) {
-                metadataFilter.put("type", searchIntent.getPineconeFilter());
-            }
-            
-            log.info("Using metadata filter: {}", metadataFilter);
-            
-            // Generate embedding for the user message first
-            Embedding queryEmbedding = embeddingModel.embed(userMessage).content();
-            
-            // Search with hybrid approach: semantic + metadata filtering
-            List<dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment>> matches = embeddingStore.findRelevant(
-                queryEmbedding, 
-                10, // topK
-                0.0, // minScore - lower threshold for intent-based filtering
-                metadataFilter
-            );
-            
-            log.info("Pinecone search completed - Found {} matches with intent: {} (confidence: {})", 
-                matches.size(), searchIntent, confidence);
-            
-            // Log detailed results for debugging
-            for (int i = 0; i < matches.size(); i++) {
-                dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment> match = matches.get(i);
-                TextSegment segment = match.embedded();
-                String segmentText = segment.text();
-                String segmentType = segment.metadata().get("type");
-                String segmentName = segment.metadata().get("name");
-                String segmentClass = segment.metadata().get("class");
-                
-                log.info("Match {} - Score: {}, Type: {}, Name: {}, Class: {}, Complete Text: {}", 
-                    i + 1, match.score(), segmentType, segmentName, segmentClass, segmentText);
-            }
-            
-            // Convert to TextSegment list
-            return matches.stream()
-                .map(dev.langchain4j.store.embedding.EmbeddingMatch::embedded)
-                .collect(Collectors.toList());
-                
-        } catch (Exception e) {
-            log.error("Error searching relevant documents: {}", e.getMessage(), e);
-            return new ArrayList<>();
-        }
-    }
-
   private String generateAIResponse(
+      String sessionId,
       String userMessage,
       List<TextSegment> relevantDocs,
-      List<DocumentChatRequest.ChatMessage> history) {
+      List<DocumentChatRequest.ChatMessage> history,
+      String historySummary,
+      IntentDetectionService.IntentDetectionResult intentResult) {
+    TraceCaptureService.Trace trace = startTrace("chat", sessionId);
     try {
       // Get the LLM model from AIServiceManager (default to OpenAI)
       ChatLanguageModel chatModel =
           aiServiceManager.getModel(AIServiceConstants.OPENAI_SERVICE, null);
 
-      StringBuilder systemPrompt = new StringBuilder();
-
-      // Check if this is the first request (no previous conversation history)
-      boolean isFirstRequest = history.size() <= 1; // Only user message exists
-      
-
-      log.info("isFirstRequest: {}", isFirstRequest);
-      
-      // Use embedding-based intent detection for targeted responses
-      IntentDetectionService.IntentDetectionResult intentResult = intentDetectionService.detectSearchIntent(userMessage);
-      IntentDetectionService.SearchIntent searchIntent = intentResult.getIntent();
-      double confidence = intentResult.getConfidence();
-
-      if (isFirstRequest) {
-        // First request: Use the detailed system prompt
-        systemPrompt.append(
-            "You are a helpful AI assistant that helps developers understand Java code. ");
-        systemPrompt.append(
-            "Use the following relevant code segments to answer the user's question. ");
-        systemPrompt.append("If the information is not in the code, say so clearly. ");
-        systemPrompt.append(
-            "Provide accurate, helpful responses based only on the code content.\n\n");
-        systemPrompt.append(
-            "IMPORTANT: Format your response in a clear, readable way. Use bullet points, numbered lists, and proper spacing to make the information easy to read.\n\n");
+      List<ChatMessage> messages =
+          buildPromptMessages(userMessage, relevantDocs, history, historySummary, intentResult);
+      trace.prompt(messages);
+
+      // Generate response from LLM
+      Response<AiMessage> response = chatModel.generate(messages);
+      String aiResponse = response.content().text();
+      trace.finish(aiResponse);
+      recordPromptUsage(messages, response);
+
+      if (aiResponse != null && !aiResponse.trim().isEmpty()) {
+        return aiResponse;
       } else {
-        // Follow-up request: Use a concise system prompt
-        systemPrompt.append(
-            "You are a helpful AI assistant continuing a conversation about Java code. ");
-        systemPrompt.append(
-            "Use the relevant code segments and conversation history to provide accurate, helpful responses.\n\n");
+        return NO_ANSWER_MESSAGE;
       }
 
-      // Add specific instructions based on detected intent
-      systemPrompt.append(String.format("Detected Intent: %s (confidence: %.2f%%)\n", 
-          searchIntent, confidence * 100));
-      
-      switch (searchIntent) {
-        case METHODS:
-          systemPrompt.append("The user is asking about METHODS. Focus on method names, signatures, parameters, return types, and functionality. ");
-          systemPrompt.append("If listing methods, provide a clear, organized list with method names and brief descriptions.\n\n");
-          break;
-        case CLASSES:
-          systemPrompt.append("The user is asking about CLASSES. Focus on class names, inheritance, interfaces, and overall structure. ");
-          systemPrompt.append("If listing classes, provide a clear, organized list with class names and brief descriptions.\n\n");
-          break;
-        case FIELDS:
-          systemPrompt.append("The user is asking about FIELDS/VARIABLES. Focus on field names, types, modifiers, and purpose. ");
-          systemPrompt.append("If listing fields, provide a clear, organized list with field names, types, and brief descriptions.\n\n");
-          break;
-        case CONSTRUCTORS:
-          systemPrompt.append("The user is asking about CONSTRUCTORS. Focus on constructor names, parameters, and initialization logic. ");
-          systemPrompt.append("If listing constructors, provide a clear, organized list with parameter details.\n\n");
-          break;
-        case PACKAGES:
-          systemPrompt.append("The user is asking about PACKAGES. Focus on package structure and organization.\n\n");
-          break;
-        case IMPORTS:
-          systemPrompt.append("The user is asking about IMPORTS. Focus on imported classes and their purposes.\n\n");
-          break;
-        default:
-          systemPrompt.append("Provide a helpful response about the Java code. Use clear explanations and examples when possible.\n\n");
-      }
+    } catch (Exception e) {
+      log.error("Error generating AI response: {}", e.getMessage(), e);
+      trace.fail(e);
+      return ERROR_ANSWER_MESSAGE;
+    }
+  }
 
-      if (!relevantDocs.isEmpty()) {
-        systemPrompt.append("Relevant code segments found:\n");
-        for (int i = 0; i < relevantDocs.size(); i++) {
-          TextSegment segment = relevantDocs.get(i);
-          String type = segment.metadata().get("type");
-          String name = segment.metadata().get("name");
-          String className = segment.metadata().get("class");
-          String packageName = segment.metadata().get("package");
-          String startLine = segment.metadata().get("startLine");
-          String endLine = segment.metadata().get("endLine");
-          String modifiers = segment.metadata().get("modifiers");
-          String javadoc = segment.metadata().get("javadoc");
-          
-          // Always include comprehensive metadata
-          systemPrompt.append(String.format("%d. [%s] %s.%s (Lines %s-%s, Package: %s)\n", 
-              i + 1, type.toUpperCase(), className, name, startLine, endLine, packageName));
-          
-          // Always include modifiers and javadoc if available
-          if (modifiers != null && !modifiers.isEmpty()) {
-            systemPrompt.append("   Modifiers: ").append(modifiers).append("\n");
-          }
-          if (javadoc != null && !javadoc.isEmpty()) {
-            systemPrompt.append("   Javadoc: ").append(javadoc).append("\n");
-          }
-          
-          // Always include the actual content for complete context
-          String content = segment.text();
-          systemPrompt.append("   Content:\n").append(content).append("\n\n");
+  /**
+   * System prompt with retrieved segments and history, followed by the user's question. The
+   * summary of older turns, if any, precedes the recent messages.
+   */
+  private List<ChatMessage> buildPromptMessages(
+      String userMessage,
+      List<TextSegment> relevantDocs,
+      List<DocumentChatRequest.ChatMessage> history,
+      String historySummary,
+      IntentDetectionService.IntentDetectionResult intentResult) {
+    // Check if this is the first request (no previous conversation history)
+    boolean isFirstRequest = history.size() <= 1 && historySummary == null;
+
+    // Intent detected once per request drives targeted responses; its confidence is only logged
+    // so the precompiled instructions stay a stable prefix across requests
+    IntentDetectionService.SearchIntent searchIntent = intentResult.getIntent();
+    double confidence = intentResult.getConfidence();
+    String instructions = promptTemplates.instructions(isFirstRequest, searchIntent);
+
+    List<String> segmentEntries =
+        relevantDocs.stream().map(this::formatSegment).collect(Collectors.toList());
+
+    // Conversation history for follow-up requests, skipping the current user message (last)
+    List<String> historyEntries = new ArrayList<>();
+    if (historySummary != null) {
+      historyEntries.add("Summary of earlier conversation: " + historySummary + "\n");
+    }
+    if (!isFirstRequest && history.size() > 1) {
+      for (int i = 0; i < history.size() - 1; i++) {
+        DocumentChatRequest.ChatMessage msg = history.get(i);
+        if (msg.getRole().equals("user")) {
+          historyEntries.add("User: " + msg.getContent() + "\n");
+        } else if (msg.getRole().equals("assistant")) {
+          historyEntries.add("Assistant: " + msg.getContent() + "\n");
         }
-        systemPrompt.append("\n");
       }
+    }
 
-      // Build conversation history context (for follow-up requests)
-      if (!isFirstRequest && history.size() > 1) {
-        systemPrompt.append("Previous conversation context:\n");
-        // Skip the current user message (last in history) and get previous conversation
-        for (int i = 0; i < history.size() - 1; i++) {
-          DocumentChatRequest.ChatMessage msg = history.get(i);
-          if (msg.getRole().equals("user")) {
-            systemPrompt.append("User: ").append(msg.getContent()).append("\n");
-          } else if (msg.getRole().equals("assistant")) {
-            systemPrompt.append("Assistant: ").append(msg.getContent()).append("\n");
-          }
-        }
-        systemPrompt.append("\n");
+    ContextPacker.PackedContext packed =
+        contextPacker.pack(instructions, segmentEntries, historyEntries);
+
+    StringBuilder prompt = new StringBuilder(packed.instructions());
+    if (!packed.segments().isEmpty()) {
+      prompt.append("Relevant code segments found:\n");
+      for (int i = 0; i < packed.segments().size(); i++) {
+        prompt.append(i + 1).append(". ").append(packed.segments().get(i)).append("\n");
       }
+      prompt.append("\n");
+    }
+    if (!packed.history().isEmpty()) {
+      prompt.append("Previous conversation context:\n");
+      packed.history().forEach(prompt::append);
+      prompt.append("\n");
+    }
 
-      // Create system and user messages
-      SystemMessage systemMessage = new SystemMessage(systemPrompt.toString());
-      UserMessage userMsg = new UserMessage(userMessage);
+    // Create system and user messages
+    SystemMessage systemMessage = new SystemMessage(prompt.toString());
+    UserMessage userMsg = new UserMessage(userMessage);
 
-      List<ChatMessage> messages = List.of(systemMessage, userMsg);
+    List<ChatMessage> messages = List.of(systemMessage, userMsg);
 
-      // Log the complete prompt being sent to LLM
-      log.info("=== COMPLETE PROMPT SENT TO LLM ===");
-      log.info("Request Type: {}", isFirstRequest ? "FIRST_REQUEST" : "FOLLOW_UP_REQUEST");
-      log.info("Search Intent: {} (confidence: {})", searchIntent, confidence);
-      log.info("User Message: {}", userMessage);
-      log.info("Relevant Documents Count: {}", relevantDocs.size());
-      log.info("Conversation History Size: {}", history.size());
+    // The full prompt is only captured by sampled traces
+    log.info(
+        "LLM prompt built - Request type: {}, Intent: {} ({}), Segments: {}, History: {}",
+        isFirstRequest ? "FIRST_REQUEST" : "FOLLOW_UP_REQUEST",
+        searchIntent,
+        confidence,
+        packed.segments().size(),
+        packed.history().size());
 
-      log.info("LLM PROMPT: {}" , messages);
-      log.info("=== END OF PROMPT ===");
+    return messages;
+  }
 
-      // Generate response from LLM
-      Response<AiMessage> response = chatModel.generate(messages);
-      String aiResponse = response.content().text();
+  /** A retrieved segment with its metadata, numbered by the caller once packing keeps it */
+  private String formatSegment(TextSegment segment) {
+    String type = segment.metadata().get("type");
+    String name = segment.metadata().get("name");
+    String className = segment.metadata().get("class");
+    String packageName = segment.metadata().get("package");
+    String startLine = segment.metadata().get("startLine");
+    String endLine = segment.metadata().get("endLine");
+    String modifiers = segment.metadata().get("modifiers");
+    String javadoc = segment.metadata().get("javadoc");
+    String content = segment.text();
+
+    StringBuilder entry = new StringBuilder();
+    entry.append(
+        String.format(
+            "[%s] %s.%s (Lines %s-%s, Package: %s)\n",
+            type == null ? "SEGMENT" : type.toUpperCase(),
+            className,
+            name,
+            startLine,
+            endLine,
+            packageName));
+    if (modifiers != null && !modifiers.isEmpty()) {
+      entry.append("   Modifiers: ").append(modifiers).append("\n");
+    }
+    // Segment source already starts with its doc comment; sending it twice only costs tokens
+    if (javadoc != null && !javadoc.isEmpty() && !content.contains("/**")) {
+      entry.append("   Javadoc: ").append(javadoc).append("\n");
+    }
+    entry.append("   Content:\n").append(content).append("\n");
+    return entry.toString();
+  }
 
-      if (aiResponse != null && !aiResponse.trim().isEmpty()) {
-        return aiResponse;
-      } else {
-        return "I apologize, but I couldn't generate a response. Please try rephrasing your question.";
-      }
+  /** Store a batch of segments, embedding only text not already stored by any session */
+  public void addSegmentsToVectorStore(List<TextSegment> batch, String documentType) {
+    segmentStore.addAll(batch, documentType);
+  }
 
-    } catch (Exception e) {
-      log.error("Error generating AI response: {}", e.getMessage(), e);
-      return "I encountered an error while processing your request. Please try again.";
-    }
+  public int getIngestionBatchSize() {
+    return ingestionBatchSize;
+  }
+
+  public void removeDocumentFromVectorStore(String documentId) {
+    segmentStore.removeDocument(documentId);
+    // Vectors stored before deduplication are tagged with their document
+    embeddingStore.removeAll(Map.of("documentId", documentId));
+  }
+
+  public void removeSessionFromVectorStore(String sessionId) {
+    segmentStore.removeSession(sessionId);
+    embeddingStore.removeAll(Map.of("sessionId", sessionId));
   }
 
   public void clearConversationHistory(String sessionId) {
-    conversationHistory.remove(sessionId);
+    conversationMemory.clear(sessionId);
+  }
+
+  /**
+   * Retained messages with a sequence below {@code before} (the newest if null), at most
+   * {@code limit}, oldest first.
+   */
+  public ConversationHistoryPage getConversationHistoryPage(
+      String sessionId, Long before, int limit) {
+    ConversationMemory.Snapshot snapshot = conversationMemory.snapshot(sessionId);
+    List<DocumentChatRequest.ChatMessage> earlier =
+        snapshot.recent().stream()
+            .filter(message -> before == null || message.getSequence() < before)
+            .collect(Collectors.toList());
+    int from = Math.max(0, earlier.size() - Math.max(1, limit));
+    List<DocumentChatRequest.ChatMessage> messages = earlier.subList(from, earlier.size());
+    boolean hasMore = from > 0;
+    return ConversationHistoryPage.builder()
+        .sessionId(sessionId)
+        .messages(messages)
+        .summary(snapshot.summary())
+        .nextCursor(hasMore ? messages.get(0).getSequence() : null)
+        .hasMore(hasMore)
+        .build();
   }
 
+  /** Copy of the session's recent messages; older ones are only kept as a summary */
   public List<DocumentChatRequest.ChatMessage> getConversationHistory(String sessionId) {
-    return conversationHistory.getOrDefault(sessionId, new ArrayList<>());
+    return conversationMemory.snapshot(sessionId).recent();
   }
 }
@@ -1,6 +1,11 @@
 package com.documentrag.service;
 
+import com.common.service.SessionClearedEvent;
+import com.documentrag.model.DocumentInfo;
 import com.documentrag.model.DocumentUploadResponse;
+import com.documentrag.service.JavaCodeChunker.ChunkingResult;
+import com.documentrag.service.JavaCodeParser.CodeElement;
+import com.documentrag.service.PdfIngestionService.PdfIngestionResult;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentSplitter;
 import dev.langchain4j.data.document.Metadata;
@@ -8,27 +13,25 @@ import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.segment.TextSegment;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-
-// JavaParser imports
-import com.github.javaparser.StaticJavaParser;
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
-import com.github.javaparser.ast.body.MethodDeclaration;
-import com.github.javaparser.ast.body.FieldDeclaration;
-import com.github.javaparser.ast.body.ConstructorDeclaration;
-import com.github.javaparser.ast.body.EnumDeclaration;
-import com.github.javaparser.ast.body.AnnotationDeclaration;
-import com.github.javaparser.ast.ImportDeclaration;
-import com.github.javaparser.ast.PackageDeclaration;
-import com.github.javaparser.ast.Node;
-import com.github.javaparser.ast.comments.JavadocComment;
-import com.github.javaparser.ast.comments.Comment;
+
 
 @Slf4j
 @Service
@@ -36,40 +39,77 @@ public class DocumentProcessingService {
 
   @Autowired private DocumentChatService documentChatService;
 
-  // In-memory document store
-  private final ConcurrentHashMap<String, DocumentInfo> documentStore = new ConcurrentHashMap<>();
+  @Autowired private JavaCodeParser javaCodeParser;
+
+  @Autowired private JavaCodeChunker javaCodeChunker;
+
+  @Autowired private SymbolIndexService symbolIndexService;
+
+  @Autowired private PdfIngestionService pdfIngestionService;
+
+  @Autowired private IngestionMetrics ingestionMetrics;
+
+  @Value("${document-rag.upload.max-java-file-size:5MB}")
+  private DataSize maxJavaFileSize;
+
+  @Value("${document-rag.upload.max-pdf-file-size:50MB}")
+  private DataSize maxPdfFileSize;
+
+  @Autowired private DocumentCatalog documentCatalog;
+
+  @Value("${document-rag.catalog.session-ttl:7d}")
+  private Duration sessionTtl;
 
   public DocumentUploadResponse processJavaDocument(MultipartFile file, String sessionId) {
     DocumentUploadResponse response = new DocumentUploadResponse();
+    String documentId = UUID.randomUUID().toString();
+    String contentHash = null;
+    boolean saved = false;
 
     try {
-      String documentId = UUID.randomUUID().toString();
       String fileName = file.getOriginalFilename();
+      ingestionMetrics.recordBytes("java", file.getSize());
+
+      // Identical content already uploaded to this session is not parsed or embedded again
+      contentHash = contentHash(file);
+      Optional<String> existing =
+          documentCatalog.reserveContent(sessionId, contentHash, documentId);
+      if (existing.isPresent()) {
+        contentHash = null; // the claim belongs to the other upload
+        return duplicateUpload(existing.get(), file, sessionId);
+      }
 
       // Parse Java file and extract structured information
-      List<TextSegment> segments = parseJavaFile(file, documentId, sessionId);
+      List<CodeElement> codeElements =
+          ingestionMetrics.time("java", IngestionMetrics.STAGE_PARSE, () -> parseJavaFile(file));
+      long segmentBuildStart = System.nanoTime();
+      ChunkingResult chunking = javaCodeChunker.chunk(codeElements);
+      List<TextSegment> segments = createCodeSegments(chunking.chunks(), documentId, sessionId);
+      ingestionMetrics.recordStage(
+          "java", IngestionMetrics.STAGE_SEGMENT_BUILD, System.nanoTime() - segmentBuildStart);
       if (segments.isEmpty()) {
+        ingestionMetrics.recordFailure("java", IngestionMetrics.STAGE_DOCUMENT);
         response.setSuccess(false);
         response.setMessage(
             "Could not parse Java file. The file may be empty or contain invalid Java code.");
         return response;
       }
 
-      // Add document to vector store for chat functionality
+      log.info(
+          "Chunking completed - File: {}, Elements: {}, Segments: {}, "
+              + "Tokens before chunking: {}, Tokens embedded: {}",
+          fileName,
+          codeElements.size(),
+          segments.size(),
+          chunking.tokensBeforeChunking(),
+          chunking.tokensEmbedded());
+
+      // Add document to vector store for chat functionality; a failure ends the upload here
       documentChatService.addDocumentToVectorStore(documentId, segments, "java");
 
-      // Store document info
-      DocumentInfo docInfo =
-          new DocumentInfo(
-              documentId,
-              fileName,
-              "java",
-              "Java source code file",
-              file.getSize(),
-                  segments.size(),
-                  segments.size(), // All segments processed
-              "Java code with " + segments.size() + " semantic segments");
-      documentStore.put(documentId, docInfo);
+      // Index symbols and call sites for structural queries
+      symbolIndexService.indexDocument(sessionId, documentId, codeElements);
+      ingestionMetrics.recordSegments("java", segments.size());
 
       // Build response
       response.setSuccess(true);
@@ -92,8 +132,28 @@ public class DocumentProcessingService {
       metadataMap.put("classes", countClasses(segments));
       metadataMap.put("methods", countMethods(segments));
       metadataMap.put("sessionId", sessionId);
+      metadataMap.put("tokensBeforeChunking", chunking.tokensBeforeChunking());
+      metadataMap.put("tokensEmbedded", chunking.tokensEmbedded());
       response.setMetadata(metadataMap);
 
+      // Record the document in the catalog
+      documentCatalog.save(
+          DocumentInfo.builder()
+              .documentId(documentId)
+              .sessionId(sessionId)
+              .fileName(fileName)
+              .documentType("java")
+              .description("Java source code file")
+              .contentHash(contentHash)
+              .fileSize(file.getSize())
+              .totalSegments(segments.size())
+              .processedSegments(segments.size()) // All segments processed
+              .content("Java code with " + segments.size() + " semantic segments")
+              .uploadedAt(System.currentTimeMillis())
+              .metadata(metadataMap)
+              .build());
+      saved = true;
+
       // Log successful Java processing
       log.info(
           "Java file processed successfully - ID: {}, Session: {}, Name: {}, Segments: {}",
@@ -104,349 +164,329 @@ public class DocumentProcessingService {
 
     } catch (Exception e) {
       log.error("Error processing Java file: {}", e.getMessage(), e);
+      ingestionMetrics.recordFailure("java", IngestionMetrics.STAGE_DOCUMENT);
       response.setSuccess(false);
       response.setMessage("Error processing Java file: " + e.getMessage());
+    } finally {
+      if (contentHash != null && !saved) {
+        documentCatalog.releaseContent(sessionId, contentHash, documentId);
+      }
     }
 
     return response;
   }
 
-  private boolean isValidJavaFile(MultipartFile file) {
-    return file != null
-        && !file.isEmpty()
-        && file.getOriginalFilename() != null
-        && file.getOriginalFilename().toLowerCase().endsWith(".java")
-        && file.getSize() > 0
-        && file.getSize() <= 100 * 1024; // 100KB limit for Java files
-  }
-
-  /** Parse Java file using JavaParser and create structured segments */
-  private List<TextSegment> parseJavaFile(MultipartFile file, String documentId, String sessionId)
-      throws IOException {
-    List<TextSegment> segments = new ArrayList<>();
+  public DocumentUploadResponse processPdfDocument(MultipartFile file, String sessionId) {
+    DocumentUploadResponse response = new DocumentUploadResponse();
+    String documentId = UUID.randomUUID().toString();
+    String fileName = file.getOriginalFilename();
+    Path tempFile = null;
+    String contentHash = null;
+    boolean saved = false;
 
     try {
-      // Read file content
-      String fileContent = new String(file.getBytes());
-      String fileName = file.getOriginalFilename();
-
-      // Parse with JavaParser
-      List<CodeElement> codeElements = parseJavaCodeWithParser(fileContent, fileName);
+      ingestionMetrics.recordBytes("pdf", file.getSize());
+      contentHash = contentHash(file);
+      Optional<String> existing =
+          documentCatalog.reserveContent(sessionId, contentHash, documentId);
+      if (existing.isPresent()) {
+        contentHash = null; // the claim belongs to the other upload
+        return duplicateUpload(existing.get(), file, sessionId);
+      }
 
-      // Convert to TextSegments with rich metadata
-      for (int i = 0; i < codeElements.size(); i++) {
-        CodeElement element = codeElements.get(i);
-        TextSegment segment = createCodeSegment(element, documentId, sessionId, i + 1);
-        segments.add(segment);
+      // PDFBox reads from a file with disk-backed buffers, so the upload is never held in heap
+      tempFile = Files.createTempFile("document-rag-", ".pdf");
+      file.transferTo(tempFile);
+
+      PdfIngestionResult ingestion;
+      try {
+        ingestion = pdfIngestionService.ingest(tempFile, fileName, documentId, sessionId);
+      } catch (Exception e) {
+        // Batches stored before the failure would otherwise be orphaned in the vector store
+        documentChatService.removeDocumentFromVectorStore(documentId);
+        throw e;
+      }
+      if (ingestion.segments() == 0) {
+        ingestionMetrics.recordFailure("pdf", IngestionMetrics.STAGE_DOCUMENT);
+        response.setSuccess(false);
+        response.setMessage(
+            "Could not extract text from the PDF. The file may be empty or contain only images.");
+        return response;
       }
 
+      response.setSuccess(true);
+      response.setMessage(
+          "PDF file uploaded successfully! You can now ask questions about your document.");
+      response.setDocumentId(documentId);
+      response.setFileName(fileName);
+      response.setDocumentType("pdf");
+      response.setFileSize(file.getSize());
+      response.setSegmentsProcessed(ingestion.segments());
+      ingestionMetrics.recordSegments("pdf", ingestion.segments());
+
+      Map<String, Object> metadataMap = new HashMap<>();
+      metadataMap.put("totalSegments", ingestion.segments());
+      metadataMap.put("processedSegments", ingestion.segments());
+      metadataMap.put("documentType", "pdf");
+      metadataMap.put("description", "PDF document");
+      metadataMap.put("vectorStore", "Pinecone");
+      metadataMap.put("pages", ingestion.pages());
+      metadataMap.put("textPages", ingestion.textPages());
+      metadataMap.put("sessionId", sessionId);
+      metadataMap.put("tokensEmbedded", ingestion.tokensEmbedded());
+      response.setMetadata(metadataMap);
+
+      documentCatalog.save(
+          DocumentInfo.builder()
+              .documentId(documentId)
+              .sessionId(sessionId)
+              .fileName(fileName)
+              .documentType("pdf")
+              .description("PDF document")
+              .contentHash(contentHash)
+              .fileSize(file.getSize())
+              .totalSegments(ingestion.segments())
+              .processedSegments(ingestion.segments())
+              .content(
+                  "PDF with "
+                      + ingestion.pages()
+                      + " pages in "
+                      + ingestion.segments()
+                      + " text segments")
+              .uploadedAt(System.currentTimeMillis())
+              .metadata(metadataMap)
+              .build());
+      saved = true;
+
       log.info(
-          "Java file parsing completed - File: {}, Elements: {}, Segments: {}",
+          "PDF file processed successfully - ID: {}, Session: {}, Name: {}, Pages: {}, "
+              + "Segments: {}",
+          documentId,
+          sessionId,
           fileName,
-          codeElements.size(),
-          segments.size());
+          ingestion.pages(),
+          ingestion.segments());
 
     } catch (Exception e) {
-      log.error("Error parsing Java file: {}", e.getMessage(), e);
-      throw new IOException("Failed to parse Java file: " + e.getMessage());
+      log.error("Error processing PDF file: {}", e.getMessage(), e);
+      ingestionMetrics.recordFailure("pdf", IngestionMetrics.STAGE_DOCUMENT);
+      response.setSuccess(false);
+      response.setMessage("Error processing PDF file: " + e.getMessage());
+    } finally {
+      deleteQuietly(tempFile);
+      if (contentHash != null && !saved) {
+        documentCatalog.releaseContent(sessionId, contentHash, documentId);
+      }
     }
 
-    return segments;
+    return response;
   }
 
-  /** Parse Java code using JavaParser for accurate line numbers and structure */
-  private List<CodeElement> parseJavaCodeWithParser(String fileContent, String fileName) {
-    List<CodeElement> elements = new ArrayList<>();
-
-    try {
-      // Parse the Java code with JavaParser
-      CompilationUnit cu = StaticJavaParser.parse(fileContent);
-
-      // Extract package information
-      String packageName =
-          cu.getPackageDeclaration().map(PackageDeclaration::getNameAsString).orElse("default");
-
-      // Extract imports
-      List<String> imports =
-          cu.getImports().stream()
-              .map(ImportDeclaration::toString)
-              .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-
-      // Parse classes and interfaces - this is the clean approach GPT recommended
-      cu.findAll(ClassOrInterfaceDeclaration.class)
-          .forEach(
-              cls -> {
-                // Add the class itself
-                elements.add(createClassElement(cls, packageName));
-
-                // Get methods from this class
-                cls.getMethods()
-                    .forEach(
-                        method -> {
-                          elements.add(
-                              createMethodElement(method, cls.getNameAsString(), packageName));
-                        });
-
-                // Get constructors from this class
-                cls.getConstructors()
-                    .forEach(
-                        constructor -> {
-                          elements.add(
-                              createConstructorElement(
-                                  constructor, cls.getNameAsString(), packageName));
-                        });
-
-                // Get fields from this class
-                cls.getFields()
-                    .forEach(
-                        field -> {
-                          elements.add(
-                              createFieldElement(field, cls.getNameAsString(), packageName));
-                        });
-              });
-
-      // Parse enums
-      cu.findAll(EnumDeclaration.class)
-          .forEach(
-              enumDecl -> {
-                elements.add(createEnumElement(enumDecl, packageName));
-              });
-
-      // Parse annotation declarations
-      cu.findAll(AnnotationDeclaration.class)
-          .forEach(
-              annDecl -> {
-                elements.add(createAnnotationElement(annDecl, packageName));
-              });
-
-      // Add package and imports as separate elements
-      if (!packageName.equals("default")) {
-        elements.add(0, createPackageElement(packageName, cu.getPackageDeclaration().get()));
-      }
-
-      if (!imports.isEmpty()) {
-        elements.add(1, createImportsElement(imports, cu.getImports()));
-      }
+  public boolean isValidJavaFile(MultipartFile file) {
+    return file != null
+        && !file.isEmpty()
+        && file.getOriginalFilename() != null
+        && file.getOriginalFilename().toLowerCase().endsWith(".java")
+        && file.getSize() > 0
+        && file.getSize() <= maxJavaFileSize.toBytes();
+  }
 
-      log.info(
-          "JavaParser analysis completed - Package: {}, Classes: {}, Methods: {}, Fields: {}",
-          packageName,
-          cu.findAll(ClassOrInterfaceDeclaration.class).size(),
-          cu.findAll(ClassOrInterfaceDeclaration.class).stream()
-              .mapToInt(cls -> cls.getMethods().size())
-              .sum(),
-          cu.findAll(ClassOrInterfaceDeclaration.class).stream()
-              .mapToInt(cls -> cls.getFields().size())
-              .sum());
+  public DataSize getMaxJavaFileSize() {
+    return maxJavaFileSize;
+  }
 
-    } catch (Exception e) {
-      log.error("Error parsing Java code with JavaParser: {}", e.getMessage(), e);
-      // Fallback to simple parsing if JavaParser fails
-      List<CodeElement> fallbackElements = parseJavaCodeFallback(fileContent, fileName);
-      elements.addAll(fallbackElements);
+  public boolean isValidPdfFile(MultipartFile file) {
+    if (file == null || file.isEmpty() || file.getSize() > maxPdfFileSize.toBytes()) {
+      return false;
     }
-
-    return elements;
+    String fileName = file.getOriginalFilename();
+    return (fileName != null && fileName.toLowerCase().endsWith(".pdf"))
+        || "application/pdf".equalsIgnoreCase(file.getContentType());
   }
 
-  /** Create a CodeElement for a class declaration */
-  private CodeElement createClassElement(ClassOrInterfaceDeclaration cls, String packageName) {
-    String className = cls.getNameAsString();
-    String type = cls.isInterface() ? "interface" : "class";
-    String modifiers =
-        cls.getModifiers().stream()
-            .map(mod -> mod.toString())
-            .collect(ArrayList::new, ArrayList::add, ArrayList::addAll)
-            .toString();
-
-    // Get the full class content including annotations, modifiers, etc.
-    String source = cls.toString();
-
-    // Get accurate line numbers
-    int startLine = cls.getBegin().map(pos -> pos.line).orElse(1);
-    int endLine = cls.getEnd().map(pos -> pos.line).orElse(1);
+  public DataSize getMaxPdfFileSize() {
+    return maxPdfFileSize;
+  }
 
-    // Extract Javadoc
-    String javadoc = cls.getJavadocComment().map(JavadocComment::getContent).orElse("");
+  public List<DocumentInfo> listDocuments(String sessionId) {
+    return documentCatalog.list(sessionId);
+  }
 
-    return new CodeElement(
-        type, className, className, source, startLine, endLine, javadoc, packageName, modifiers);
+  public Optional<DocumentInfo> getDocument(String documentId) {
+    return documentCatalog.get(documentId);
   }
 
-  /** Create a CodeElement for a method declaration */
-  private CodeElement createMethodElement(
-      MethodDeclaration method, String className, String packageName) {
-    String methodName = method.getNameAsString();
-    String returnType = method.getType().toString();
-    String parameters = method.getParameters().toString();
-    String modifiers =
-        method.getModifiers().stream()
-            .map(mod -> mod.toString())
-            .collect(ArrayList::new, ArrayList::add, ArrayList::addAll)
-            .toString();
-
-    // Get the full method content
-    String source = method.toString();
-
-    // Get accurate line numbers
-    int startLine = method.getBegin().map(pos -> pos.line).orElse(1);
-    int endLine = method.getEnd().map(pos -> pos.line).orElse(1);
-
-    // Extract Javadoc
-    String javadoc = method.getJavadocComment().map(JavadocComment::getContent).orElse("");
-
-    return new CodeElement(
-        "method",
-        methodName,
-        className,
-        source,
-        startLine,
-        endLine,
-        javadoc,
-        packageName,
-        modifiers);
+  /** Remove a document from the catalog, the symbol index and the vector store */
+  public Optional<DocumentInfo> deleteDocument(String documentId) {
+    Optional<DocumentInfo> removed = documentCatalog.remove(documentId);
+    removed.ifPresent(
+        document -> {
+          symbolIndexService.removeDocument(document.getSessionId(), documentId);
+          documentChatService.removeDocumentFromVectorStore(documentId);
+          log.info(
+              "Document deleted - ID: {}, Session: {}, Name: {}",
+              documentId,
+              document.getSessionId(),
+              document.getFileName());
+        });
+    return removed;
   }
 
-  /** Create a CodeElement for a constructor */
-  private CodeElement createConstructorElement(
-      ConstructorDeclaration constructor, String className, String packageName) {
-    String constructorName = constructor.getNameAsString();
-    String parameters = constructor.getParameters().toString();
-    String modifiers =
-        constructor.getModifiers().stream()
-            .map(mod -> mod.toString())
-            .collect(ArrayList::new, ArrayList::add, ArrayList::addAll)
-            .toString();
-
-    String source = constructor.toString();
-    int startLine = constructor.getBegin().map(pos -> pos.line).orElse(1);
-    int endLine = constructor.getEnd().map(pos -> pos.line).orElse(1);
-
-    String javadoc = constructor.getJavadocComment().map(JavadocComment::getContent).orElse("");
-
-    return new CodeElement(
-        "constructor",
-        constructorName,
-        className,
-        source,
-        startLine,
-        endLine,
-        javadoc,
-        packageName,
-        modifiers);
+  /**
+   * Evict everything held for a session: documents, vectors, symbols and chat history. The catalog
+   * entries go last, so a session whose vectors could not be deleted is retried by the sweep.
+   */
+  public void deleteSession(String sessionId) {
+    symbolIndexService.removeSession(sessionId);
+    documentChatService.clearConversationHistory(sessionId);
+    if (!documentCatalog.list(sessionId).isEmpty()) {
+      documentChatService.removeSessionFromVectorStore(sessionId);
+    }
+    int documents = documentCatalog.removeSession(sessionId);
+    log.info("Session evicted - Session: {}, Documents: {}", sessionId, documents);
   }
 
-  /** Create a CodeElement for a field declaration */
-  private CodeElement createFieldElement(
-      FieldDeclaration field, String className, String packageName) {
-    String fieldNames =
-        field.getVariables().stream()
-            .map(var -> var.getNameAsString())
-            .collect(ArrayList::new, ArrayList::add, ArrayList::addAll)
-            .toString();
-
-    String type = field.getElementType().toString();
-    String modifiers =
-        field.getModifiers().stream()
-            .map(mod -> mod.toString())
-            .collect(ArrayList::new, ArrayList::add, ArrayList::addAll)
-            .toString();
-
-    String source = field.toString();
-    int startLine = field.getBegin().map(pos -> pos.line).orElse(1);
-    int endLine = field.getEnd().map(pos -> pos.line).orElse(1);
-
-    String javadoc = field.getJavadocComment().map(JavadocComment::getContent).orElse("");
-
-    return new CodeElement(
-        "field",
-        fieldNames,
-        className,
-        source,
-        startLine,
-        endLine,
-        javadoc,
-        packageName,
-        modifiers);
+  /**
+   * Clearing a session must not fail for the caller because the vector store is unavailable; the
+   * session's catalog entries are kept and the expiry sweep evicts it later.
+   */
+  @EventListener
+  public void onSessionCleared(SessionClearedEvent event) {
+    try {
+      deleteSession(event.sessionId());
+    } catch (Exception e) {
+      log.error(
+          "Error evicting cleared session {}, left for the expiry sweep: {}",
+          event.sessionId(),
+          e.getMessage(),
+          e);
+    }
   }
 
-  /** Create a CodeElement for an enum declaration */
-  private CodeElement createEnumElement(EnumDeclaration enumDecl, String packageName) {
-    String enumName = enumDecl.getNameAsString();
-    String source = enumDecl.toString();
-    int startLine = enumDecl.getBegin().map(pos -> pos.line).orElse(1);
-    int endLine = enumDecl.getEnd().map(pos -> pos.line).orElse(1);
+  /** Evict sessions that have not uploaded anything within the configured time to live */
+  @Scheduled(
+      initialDelayString = "${document-rag.catalog.sweep-interval:PT1H}",
+      fixedDelayString = "${document-rag.catalog.sweep-interval:PT1H}")
+  public void evictExpiredSessions() {
+    for (String sessionId : documentCatalog.expiredSessions(sessionTtl)) {
+      try {
+        deleteSession(sessionId);
+      } catch (Exception e) {
+        log.error("Error evicting expired session {}: {}", sessionId, e.getMessage(), e);
+      }
+    }
+  }
 
-    String javadoc = enumDecl.getJavadocComment().map(JavadocComment::getContent).orElse("");
+  /**
+   * Response to an upload whose content the session already holds. The symbol index is kept in
+   * memory only, so a Java document cataloged before a restart is indexed again from the upload.
+   */
+  private DocumentUploadResponse duplicateUpload(
+      String existingId, MultipartFile file, String sessionId) throws IOException {
+    String fileName = file.getOriginalFilename();
+    Optional<DocumentInfo> existing = documentCatalog.get(existingId);
+    if (existing.isEmpty()) {
+      log.info(
+          "Duplicate of an upload in progress - Session: {}, Name: {}, Document: {}",
+          sessionId,
+          fileName,
+          existingId);
+      DocumentUploadResponse response = new DocumentUploadResponse();
+      response.setSuccess(false);
+      response.setMessage(
+          "An identical file is already being uploaded to this session. "
+              + "Try again once that upload completes.");
+      response.setDocumentId(existingId);
+      response.setFileName(fileName);
+      return response;
+    }
 
-    return new CodeElement(
-        "enum", enumName, enumName, source, startLine, endLine, javadoc, packageName, "");
+    log.info(
+        "Duplicate upload recognized - Session: {}, Name: {}, Existing document: {}",
+        sessionId,
+        fileName,
+        existingId);
+    if ("java".equals(existing.get().getDocumentType())
+        && !symbolIndexService.hasDocument(sessionId, existingId)) {
+      log.info("Rebuilding symbol index - Session: {}, Document: {}", sessionId, existingId);
+      symbolIndexService.indexDocument(sessionId, existingId, parseJavaFile(file));
+    }
+    return duplicateResponse(existing.get(), fileName);
   }
 
-  /** Create a CodeElement for an annotation declaration */
-  private CodeElement createAnnotationElement(AnnotationDeclaration annDecl, String packageName) {
-    String annName = annDecl.getNameAsString();
-    String source = annDecl.toString();
-    int startLine = annDecl.getBegin().map(pos -> pos.line).orElse(1);
-    int endLine = annDecl.getEnd().map(pos -> pos.line).orElse(1);
+  private DocumentUploadResponse duplicateResponse(DocumentInfo existing, String fileName) {
+    DocumentUploadResponse response = new DocumentUploadResponse();
+    response.setSuccess(true);
+    response.setMessage(
+        "This file was already uploaded to the session as "
+            + existing.getFileName()
+            + ". You can ask questions about your code.");
+    response.setDocumentId(existing.getDocumentId());
+    response.setFileName(fileName);
+    response.setDocumentType(existing.getDocumentType());
+    response.setFileSize(existing.getFileSize());
+    response.setSegmentsProcessed(existing.getProcessedSegments());
+
+    Map<String, Object> metadataMap =
+        existing.getMetadata() != null ? new HashMap<>(existing.getMetadata()) : new HashMap<>();
+    metadataMap.put("duplicate", true);
+    response.setMetadata(metadataMap);
+    return response;
+  }
 
-    String javadoc = annDecl.getJavadocComment().map(JavadocComment::getContent).orElse("");
+  private static String contentHash(MultipartFile file) throws IOException {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+        in.transferTo(OutputStream.nullOutputStream());
+      }
+      return HexFormat.of().formatHex(digest.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
 
-    return new CodeElement(
-        "annotation", annName, annName, source, startLine, endLine, javadoc, packageName, "");
+  private static void deleteQuietly(Path file) {
+    if (file == null) {
+      return;
+    }
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("Could not delete temporary file {}: {}", file, e.getMessage());
+    }
   }
 
-  /** Create a CodeElement for package declaration */
-  private CodeElement createPackageElement(String packageName, PackageDeclaration packageDecl) {
-    String source = packageDecl.toString();
-    int startLine = packageDecl.getBegin().map(pos -> pos.line).orElse(1);
-    int endLine = packageDecl.getEnd().map(pos -> pos.line).orElse(1);
+  /** Parse Java file using JavaParser into structured code elements */
+  private List<CodeElement> parseJavaFile(MultipartFile file) throws IOException {
+    try {
+      String fileName = file.getOriginalFilename();
 
-    return new CodeElement(
-        "package", packageName, "N/A", source, startLine, endLine, "", packageName, "");
-  }
+      // Stream the upload straight into JavaParser so the raw bytes are never copied into heap
+      List<CodeElement> codeElements;
+      try (InputStream in = file.getInputStream()) {
+        codeElements = javaCodeParser.parse(in, StandardCharsets.UTF_8, file.getSize(), fileName);
+      }
 
-  /** Create a CodeElement for imports */
-  private CodeElement createImportsElement(
-      List<String> imports, List<ImportDeclaration> importDecls) {
-    String source =
-        importDecls.stream()
-            .map(ImportDeclaration::toString)
-            .collect(ArrayList::new, ArrayList::add, ArrayList::addAll)
-            .toString();
+      log.info(
+          "Java file parsing completed - File: {}, Elements: {}", fileName, codeElements.size());
 
-    int startLine = importDecls.get(0).getBegin().map(pos -> pos.line).orElse(1);
-    int endLine = importDecls.get(importDecls.size() - 1).getEnd().map(pos -> pos.line).orElse(1);
+      return codeElements;
 
-    return new CodeElement("imports", "imports", "N/A", source, startLine, endLine, "", "N/A", "");
+    } catch (Exception e) {
+      log.error("Error parsing Java file: {}", e.getMessage(), e);
+      throw new IOException("Failed to parse Java file: " + e.getMessage());
+    }
   }
 
-  /** Fallback parsing if JavaParser fails */
-  private List<CodeElement> parseJavaCodeFallback(String fileContent, String fileName) {
-    List<CodeElement> elements = new ArrayList<>();
-
-    // Simple parsing for demonstration
-    String[] lines = fileContent.split("\\n");
-    String currentClass = "UnknownClass";
-
-    for (int i = 0; i < lines.length; i++) {
-      String line = lines[i].trim();
-
-      if (line.startsWith("public class ") || line.startsWith("class ")) {
-        currentClass = line.replaceAll(".*class\\s+([A-Za-z0-9_]+).*", "$1");
-        elements.add(
-            new CodeElement(
-                "class", currentClass, currentClass, line, i + 1, i + 1, "", "default", ""));
-      } else if (line.matches(".*public\\s+.*\\s+[a-zA-Z_][a-zA-Z0-9_]*\\s*\\(.*\\).*\\{?")) {
-        String methodName =
-            line.replaceAll(".*public\\s+.*\\s+([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(.*", "$1");
-        elements.add(
-            new CodeElement(
-                "method", methodName, currentClass, line, i + 1, i + 1, "", "default", ""));
-      }
+  /** Convert chunked code elements to TextSegments with rich metadata */
+  private List<TextSegment> createCodeSegments(
+      List<CodeElement> chunks, String documentId, String sessionId) {
+    List<TextSegment> segments = new ArrayList<>(chunks.size());
+    for (int i = 0; i < chunks.size(); i++) {
+      segments.add(createCodeSegment(chunks.get(i), documentId, sessionId, i + 1));
     }
-
-    return elements;
+    return segments;
   }
 
   /** Create a TextSegment from a CodeElement with rich metadata */
@@ -462,11 +502,21 @@ public class DocumentProcessingService {
     metadata.add("class", element.className);
     metadata.add("package", element.packageName);
     metadata.add("modifiers", element.modifiers);
-    metadata.add("source", element.source);
     metadata.add("startLine", String.valueOf(element.startLine));
     metadata.add("endLine", String.valueOf(element.endLine));
     metadata.add("javadoc", element.javadoc);
     metadata.add("contentType", "java_code");
+    metadata.add("elementId", element.id);
+    if (element.parentId != null) {
+      metadata.add("parentId", element.parentId);
+    }
+    if (element.memberIds != null && !element.memberIds.isEmpty()) {
+      metadata.add("members", String.join("|", element.memberIds));
+    }
+    if (element.parts > 1) {
+      metadata.add("part", String.valueOf(element.part));
+      metadata.add("parts", String.valueOf(element.parts));
+    }
     metadata.add("processingTimestamp", String.valueOf(System.currentTimeMillis()));
 
     // Create the segment text with context
@@ -504,111 +554,16 @@ public class DocumentProcessingService {
   }
 
   private int countMethods(List<TextSegment> segments) {
+    // Methods split into several parts are counted once
     return (int)
-        segments.stream().filter(seg -> "method".equals(seg.metadata().get("type"))).count();
-  }
-
-  /** Inner class to represent parsed Java code elements */
-  private static class CodeElement {
-    final String type; // class, method, field, constructor, enum, annotation, package, imports
-    final String name; // element name
-    final String className; // containing class (or N/A for package/imports)
-    final String source; // source code
-    final int startLine; // start line number
-    final int endLine; // end line number
-    final String javadoc; // javadoc comment
-    final String packageName; // package name
-    final String modifiers; // modifiers (public, private, static, etc.)
-
-    CodeElement(
-        String type,
-        String name,
-        String className,
-        String source,
-        int startLine,
-        int endLine,
-        String javadoc,
-        String packageName,
-        String modifiers) {
-      this.type = type;
-      this.name = name;
-      this.className = className;
-      this.source = source;
-      this.startLine = startLine;
-      this.endLine = endLine;
-      this.javadoc = javadoc;
-      this.packageName = packageName;
-      this.modifiers = modifiers;
-    }
+        segments.stream()
+            .filter(seg -> "method".equals(seg.metadata().get("type")))
+            .filter(seg -> !isContinuationPart(seg))
+            .count();
   }
 
-  // Inner class to store document information
-  public static class DocumentInfo {
-    private final String documentId;
-    private final String fileName;
-    private final String documentType;
-    private final String description;
-    private final long fileSize;
-    private final int totalSegments;
-    private final int processedSegments;
-    private final String content;
-    private final long uploadedAt;
-
-    public DocumentInfo(
-        String documentId,
-        String fileName,
-        String documentType,
-        String description,
-        long fileSize,
-        int totalSegments,
-        int processedSegments,
-        String content) {
-      this.documentId = documentId;
-      this.fileName = fileName;
-      this.documentType = documentType;
-      this.description = description;
-      this.fileSize = fileSize;
-      this.totalSegments = totalSegments;
-      this.processedSegments = processedSegments;
-      this.content = content;
-      this.uploadedAt = System.currentTimeMillis();
-    }
-
-    // Getters
-    public String getDocumentId() {
-      return documentId;
-    }
-
-    public String getFileName() {
-      return fileName;
-    }
-
-    public String getDocumentType() {
-      return documentType;
-    }
-
-    public String getDescription() {
-      return description;
-    }
-
-    public long getFileSize() {
-      return fileSize;
-    }
-
-    public int getTotalSegments() {
-      return totalSegments;
-    }
-
-    public int getProcessedSegments() {
-      return processedSegments;
-    }
-
-    public String getContent() {
-      return content;
-    }
-
-    public long getUploadedAt() {
-      return uploadedAt;
-    }
+  private boolean isContinuationPart(TextSegment segment) {
+    String part = segment.metadata().get("part");
+    return part != null && !"1".equals(part);
   }
 }
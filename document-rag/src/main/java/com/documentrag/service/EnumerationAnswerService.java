@@ -0,0 +1,213 @@
+package com.documentrag.service;
+
+import com.documentrag.model.CodeSymbol;
+import com.documentrag.service.IntentDetectionService.IntentDetectionResult;
+import com.documentrag.service.IntentDetectionService.SearchIntent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Answers pure listing questions (methods, fields, constructors, classes, packages, imports)
+ * straight from the symbol index, without a vector search or a chat model call.
+ *
+ * <p>Only used when the detected intent is an enumeration intent above the configured confidence,
+ * the question reads as a listing request rather than an explanation, and the session has
+ * indexed symbols. Everything else falls through to the regular RAG flow.
+ */
+@Slf4j
+@Service
+public class EnumerationAnswerService {
+
+  private static final Pattern LISTING =
+      Pattern.compile(
+          "\\b(list|show|what|which|all|enumerate|name|give|get|display|how many)\\b",
+          Pattern.CASE_INSENSITIVE);
+
+  private static final Pattern EXPLANATION =
+      Pattern.compile(
+          "\\b(explain|why|how (does|do|is|are|can|to)|describe|purpose|difference|compare|"
+              + "improve|refactor|bug|wrong|fix|work|works|implement|implementation|example|"
+              + "means?)\\b|\\bdo\\W*$",
+          Pattern.CASE_INSENSITIVE);
+
+  // Identifiers and dotted names; a trailing period is sentence punctuation, not part of the word
+  private static final Pattern WORD =
+      Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*(?:\\.[A-Za-z_$][A-Za-z0-9_$]*)*");
+
+  @Autowired private SymbolIndexService symbolIndexService;
+
+  @Value("${document-rag.fast-path.enabled:true}")
+  private boolean enabled;
+
+  @Value("${document-rag.fast-path.min-confidence:0.5}")
+  private double minConfidence;
+
+  /** Listed symbols rendered as an answer, along with the symbols used as sources */
+  public record EnumerationAnswer(String answer, List<CodeSymbol> symbols) {}
+
+  /**
+   * Answer the question from the symbol index if it is a pure listing question.
+   *
+   * @param requested per-request opt-in/out, null to use the configured default
+   */
+  public Optional<EnumerationAnswer> tryAnswer(
+      String sessionId, String question, IntentDetectionResult intent, Boolean requested) {
+    if (!(requested != null ? requested : enabled)
+        || intent.getIntent() == SearchIntent.GENERAL
+        || intent.getConfidence() < minConfidence
+        || !isListingQuestion(question)
+        || !symbolIndexService.hasSymbols(sessionId)) {
+      return Optional.empty();
+    }
+
+    List<String> mentionedTypes = mentionedTypes(sessionId, question);
+    EnumerationAnswer answer;
+    switch (intent.getIntent()) {
+      case METHODS:
+        answer = members(sessionId, mentionedTypes, "method", "Methods");
+        break;
+      case FIELDS:
+        answer = members(sessionId, mentionedTypes, "field", "Fields");
+        break;
+      case CONSTRUCTORS:
+        answer = members(sessionId, mentionedTypes, "constructor", "Constructors");
+        break;
+      case CLASSES:
+        answer = types(sessionId);
+        break;
+      case PACKAGES:
+        answer = packages(sessionId);
+        break;
+      case IMPORTS:
+        answer = imports(sessionId);
+        break;
+      default:
+        return Optional.empty();
+    }
+
+    log.info(
+        "Answered from symbol index - Session: {}, Intent: {} (confidence: {}), Types: {}, "
+            + "Symbols: {}",
+        sessionId,
+        intent.getIntent(),
+        intent.getConfidence(),
+        mentionedTypes,
+        answer.symbols().size());
+    return Optional.of(answer);
+  }
+
+  static boolean isListingQuestion(String question) {
+    return LISTING.matcher(question).find() && !EXPLANATION.matcher(question).find();
+  }
+
+  /** Indexed type names that appear as words in the question */
+  private List<String> mentionedTypes(String sessionId, String question) {
+    Set<String> words = new LinkedHashSet<>();
+    WORD.matcher(question).results().forEach(match -> words.add(match.group()));
+    return words.stream()
+        .filter(word -> Character.isUpperCase(word.charAt(word.lastIndexOf('.') + 1)))
+        .filter(word -> !symbolIndexService.findTypes(sessionId, word).isEmpty())
+        .collect(Collectors.toList());
+  }
+
+  private EnumerationAnswer members(
+      String sessionId, List<String> mentionedTypes, String kind, String title) {
+    List<CodeSymbol> types =
+        mentionedTypes.isEmpty()
+            ? symbolIndexService.findTypes(sessionId, null)
+            : mentionedTypes.stream()
+                .flatMap(type -> symbolIndexService.findTypes(sessionId, type).stream())
+                .distinct()
+                .collect(Collectors.toList());
+
+    Map<CodeSymbol, List<CodeSymbol>> membersByType = new LinkedHashMap<>();
+    List<CodeSymbol> symbols = new ArrayList<>();
+    for (CodeSymbol type : types) {
+      List<CodeSymbol> members =
+          symbolIndexService.findMembers(sessionId, type.getId(), kind).stream()
+              .sorted((a, b) -> Integer.compare(a.getStartLine(), b.getStartLine()))
+              .collect(Collectors.toList());
+      if (!members.isEmpty()) {
+        membersByType.put(type, members);
+        symbols.addAll(members);
+      }
+    }
+
+    String scope =
+        mentionedTypes.isEmpty() ? "the uploaded code" : String.join(", ", mentionedTypes);
+    if (symbols.isEmpty()) {
+      return new EnumerationAnswer(
+          "No " + title.toLowerCase() + " are declared in " + scope + ".", symbols);
+    }
+
+    StringBuilder answer = new StringBuilder();
+    answer.append(
+        String.format(
+            "**%s in %s** (%d found in %d %s)\n",
+            title,
+            scope,
+            symbols.size(),
+            membersByType.size(),
+            membersByType.size() == 1 ? "type" : "types"));
+    membersByType.forEach(
+        (type, members) -> {
+          answer.append("\n**").append(type.getId()).append("**\n");
+          members.forEach(member -> answer.append(bullet(member)));
+        });
+    return new EnumerationAnswer(answer.toString(), symbols);
+  }
+
+  private EnumerationAnswer types(String sessionId) {
+    List<CodeSymbol> types = symbolIndexService.findTypes(sessionId, null);
+    StringBuilder answer =
+        new StringBuilder(
+            String.format("**Types in the uploaded code** (%d found)\n\n", types.size()));
+    types.forEach(type -> answer.append(bullet(type)));
+    return new EnumerationAnswer(answer.toString(), types);
+  }
+
+  private EnumerationAnswer packages(String sessionId) {
+    List<String> packages = symbolIndexService.findPackages(sessionId);
+    StringBuilder answer =
+        new StringBuilder(
+            String.format("**Packages in the uploaded code** (%d found)\n\n", packages.size()));
+    packages.forEach(pkg -> answer.append("- `").append(pkg).append("`\n"));
+    return new EnumerationAnswer(answer.toString(), List.of());
+  }
+
+  private EnumerationAnswer imports(String sessionId) {
+    List<CodeSymbol> imports = symbolIndexService.findImports(sessionId);
+    Set<String> distinct = new LinkedHashSet<>();
+    imports.forEach(imported -> distinct.add(imported.getSignature()));
+    if (distinct.isEmpty()) {
+      return new EnumerationAnswer("The uploaded code has no import statements.", imports);
+    }
+
+    StringBuilder answer =
+        new StringBuilder(
+            String.format("**Imports in the uploaded code** (%d found)\n\n", distinct.size()));
+    distinct.forEach(imported -> answer.append("- `").append(imported).append("`\n"));
+    return new EnumerationAnswer(answer.toString(), imports);
+  }
+
+  private static String bullet(CodeSymbol symbol) {
+    String declaration =
+        symbol.getSignature() != null && !symbol.getSignature().isEmpty()
+            ? symbol.getSignature()
+            : symbol.getKind() + " " + symbol.getName();
+    return String.format(
+        "- `%s` (Lines %d-%d)\n", declaration, symbol.getStartLine(), symbol.getEndLine());
+  }
+}
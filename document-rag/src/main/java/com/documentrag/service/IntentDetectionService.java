@@ -105,8 +105,18 @@ public class IntentDetectionService {
     public IntentDetectionResult detectSearchIntent(String userMessage) {
         try {
             // Single embedding call for the user message
-            Embedding userEmbedding = embeddingModel.embed(userMessage).content();
-            
+            return detectSearchIntent(userMessage, embeddingModel.embed(userMessage).content());
+        } catch (Exception e) {
+            log.error("Error detecting search intent: {}", e.getMessage(), e);
+            return new IntentDetectionResult(SearchIntent.GENERAL, 0.0);
+        }
+    }
+
+    /**
+     * Detect search intent from an already computed query embedding
+     */
+    public IntentDetectionResult detectSearchIntent(String userMessage, Embedding userEmbedding) {
+        try {
             // Search for intent embeddings in Pinecone
             List<dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment>> intentMatches = embeddingStore.findRelevant(
                 userEmbedding,
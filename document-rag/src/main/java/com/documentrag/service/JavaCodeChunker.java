@@ -0,0 +1,262 @@
+package com.documentrag.service;
+
+import com.documentrag.service.JavaCodeParser.CodeElement;
+import com.documentrag.service.JavaCodeParser.Span;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Shapes parsed code elements into segments that fit the embedding model.
+ *
+ * <p>Classes and interfaces become compact skeletons (javadoc summary, declaration, fields and
+ * member signatures) that link to their member segments instead of repeating their code. Elements
+ * over the token budget are split at statement boundaries, or at line boundaries when they have
+ * no statements, with a small overlap between consecutive parts.
+ */
+@Slf4j
+@Component
+public class JavaCodeChunker {
+
+  @Autowired private TokenCounter tokenCounter;
+
+  @Value("${document-rag.chunking.max-segment-tokens:800}")
+  private int maxSegmentTokens;
+
+  @Value("${document-rag.chunking.overlap-tokens:64}")
+  private int overlapTokens;
+
+  public ChunkingResult chunk(List<CodeElement> elements) {
+    Map<String, List<CodeElement>> membersByParent = new LinkedHashMap<>();
+    for (CodeElement element : elements) {
+      if (element.parentId != null) {
+        membersByParent.computeIfAbsent(element.parentId, id -> new ArrayList<>()).add(element);
+      }
+    }
+
+    List<CodeElement> chunks = new ArrayList<>();
+    int tokensBefore = 0;
+    int tokensAfter = 0;
+    for (CodeElement element : elements) {
+      tokensBefore += tokenCounter.count(element.source);
+
+      CodeElement shaped =
+          isSkeletonType(element)
+              ? skeletonOf(element, membersByParent.getOrDefault(element.id, List.of()))
+              : element;
+      for (CodeElement chunk : split(shaped)) {
+        tokensAfter += tokenCounter.count(chunk.source);
+        chunks.add(chunk);
+      }
+    }
+
+    return new ChunkingResult(chunks, tokensBefore, tokensAfter);
+  }
+
+  /** Classes and interfaces have their members extracted, so their own segment can be a skeleton */
+  private static boolean isSkeletonType(CodeElement element) {
+    return ("class".equals(element.type) || "interface".equals(element.type))
+        && element.signature != null;
+  }
+
+  private CodeElement skeletonOf(CodeElement type, List<CodeElement> members) {
+    StringBuilder skeleton = new StringBuilder();
+    String summary = javadocSummary(type.javadoc);
+    if (!summary.isEmpty()) {
+      skeleton.append("/** ").append(summary).append(" */\n");
+    }
+    skeleton.append(type.signature).append(" {\n");
+
+    for (CodeElement member : members) {
+      switch (member.type) {
+        case "field":
+          skeleton.append("  ").append(member.signature).append(";\n");
+          break;
+        case "method":
+        case "constructor":
+          skeleton
+              .append("  ")
+              .append(member.signature)
+              .append("; // Lines ")
+              .append(member.startLine)
+              .append("-")
+              .append(member.endLine)
+              .append("\n");
+          break;
+        default:
+          String declaration =
+              member.signature != null ? member.signature : member.type + " " + member.name;
+          skeleton.append("  ").append(declaration).append(" { ... }\n");
+      }
+    }
+    skeleton.append("}");
+
+    return type.toBuilder()
+        .source(skeleton.toString())
+        .memberIds(members.stream().map(member -> member.id).collect(Collectors.toList()))
+        .build();
+  }
+
+  /** First sentence of a javadoc comment, without leading asterisks or block tags */
+  private static String javadocSummary(String javadoc) {
+    if (javadoc == null || javadoc.isBlank()) {
+      return "";
+    }
+    StringBuilder text = new StringBuilder();
+    for (String line : javadoc.split("\\R")) {
+      String trimmed = line.trim();
+      if (trimmed.startsWith("*")) {
+        trimmed = trimmed.substring(1).trim();
+      }
+      if (trimmed.startsWith("@")) {
+        break;
+      }
+      if (!trimmed.isEmpty()) {
+        text.append(text.length() > 0 ? " " : "").append(trimmed);
+      }
+    }
+    int sentenceEnd = text.indexOf(". ");
+    return sentenceEnd >= 0 ? text.substring(0, sentenceEnd + 1) : text.toString();
+  }
+
+  private List<CodeElement> split(CodeElement element) {
+    if (tokenCounter.count(element.source) <= maxSegmentTokens) {
+      return List.of(element);
+    }
+
+    if (element.statements != null && !element.statements.isEmpty()) {
+      // Every part repeats the signature so it can be understood on its own
+      return pack(element, "// " + element.signature + "\n", element.statements);
+    }
+    return pack(
+        element,
+        "",
+        List.of(
+            new Span(
+                0,
+                element.source.length(),
+                element.sourceStartLine,
+                element.sourceStartLine + (int) element.source.lines().count() - 1)));
+  }
+
+  /** Greedily packs units into parts within budget, carrying trailing units over as overlap */
+  private List<CodeElement> pack(CodeElement element, String header, List<Span> units) {
+    int budget = Math.max(1, maxSegmentTokens - tokenCounter.count(header));
+    String text = element.source;
+
+    List<Span> pieces = new ArrayList<>();
+    for (Span unit : units) {
+      pieces.addAll(fitToBudget(text, unit, budget));
+    }
+    // Each piece is charged for the whitespace separating it from the previous one
+    int[] tokens = new int[pieces.size()];
+    for (int p = 0; p < pieces.size(); p++) {
+      int from = p > 0 ? pieces.get(p - 1).end() : pieces.get(p).begin();
+      tokens[p] = tokenCounter.count(text.subSequence(from, pieces.get(p).end()));
+    }
+
+    List<CodeElement> parts = new ArrayList<>();
+    int i = 0;
+    while (i < pieces.size()) {
+      int start = i;
+      int total = 0;
+      while (i < pieces.size() && (i == start || total + tokens[i] <= budget)) {
+        total += tokens[i];
+        i++;
+      }
+
+      Span first = pieces.get(start);
+      Span last = pieces.get(i - 1);
+      parts.add(
+          element.toBuilder()
+              .source(header + text.substring(first.begin(), last.end()))
+              .startLine(first.beginLine())
+              .endLine(last.endLine())
+              .statements(null)
+              .build());
+
+      // Step back over trailing pieces for overlap, leaving room for the next new piece
+      if (i < pieces.size()) {
+        int next = i;
+        int overlap = 0;
+        while (i - 1 > start
+            && overlap + tokens[i - 1] <= overlapTokens
+            && overlap + tokens[i - 1] + tokens[next] <= budget) {
+          i--;
+          overlap += tokens[i];
+        }
+      }
+    }
+
+    List<CodeElement> numbered = new ArrayList<>(parts.size());
+    for (int part = 0; part < parts.size(); part++) {
+      numbered.add(parts.get(part).toBuilder().part(part + 1).parts(parts.size()).build());
+    }
+
+    log.debug(
+        "Split {} {} ({} tokens) into {} parts",
+        element.type,
+        element.id,
+        tokenCounter.count(text),
+        numbered.size());
+    return numbered;
+  }
+
+  /** Breaks an over-budget unit into its lines, and an over-budget line into windows */
+  private List<Span> fitToBudget(String text, Span unit, int budget) {
+    if (tokenCounter.count(text.subSequence(unit.begin(), unit.end())) <= budget) {
+      return List.of(unit);
+    }
+
+    List<Span> pieces = new ArrayList<>();
+    if (unit.beginLine() < unit.endLine()) {
+      int line = unit.beginLine();
+      int lineStart = unit.begin();
+      for (int i = unit.begin(); i < unit.end(); i++) {
+        if (text.charAt(i) == '\n') {
+          pieces.addAll(fitToBudget(text, new Span(lineStart, i + 1, line, line), budget));
+          lineStart = i + 1;
+          line++;
+        }
+      }
+      if (lineStart < unit.end()) {
+        pieces.addAll(fitToBudget(text, new Span(lineStart, unit.end(), line, line), budget));
+      }
+    } else {
+      // Non-ASCII text can take more than one token per character, so each window is measured
+      // and shrunk until it fits
+      int from = unit.begin();
+      while (from < unit.end()) {
+        int end = windowEnd(text, from, Math.min(from + budget, unit.end()), budget);
+        pieces.add(new Span(from, end, unit.beginLine(), unit.endLine()));
+        from = end;
+      }
+    }
+    return pieces;
+  }
+
+  /** End of a window from the start, up to the given end, that fits the budget */
+  private int windowEnd(String text, int from, int end, int budget) {
+    int tokens = tokenCounter.count(text.subSequence(from, end));
+    while (tokens > budget && end - from > 1) {
+      end = from + Math.max(1, (int) ((long) (end - from) * budget / tokens));
+      // A surrogate pair stays in one window
+      if (end - from > 1 && Character.isHighSurrogate(text.charAt(end - 1))) {
+        end--;
+      }
+      tokens = tokenCounter.count(text.subSequence(from, end));
+    }
+    return end;
+  }
+
+  /** Segments to embed plus estimated tokens for the flat layout versus the chunked one */
+  public record ChunkingResult(
+      List<CodeElement> chunks, int tokensBeforeChunking, int tokensEmbedded) {}
+}
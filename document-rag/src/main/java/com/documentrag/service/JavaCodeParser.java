@@ -0,0 +1,704 @@
+package com.documentrag.service;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.PackageDeclaration;
+import com.github.javaparser.ast.body.AnnotationDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.comments.JavadocComment;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.SuperExpr;
+import com.github.javaparser.ast.expr.ThisExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Extracts structured code elements from Java source in a single AST pass.
+ *
+ * <p>Element source is sliced from the original text using node ranges rather than re-printed
+ * from the AST, so nested types are never serialized more than once.
+ */
+@Slf4j
+@Component
+public class JavaCodeParser {
+
+  /** Tuned for extraction: no line-separator detection pass and no symbol resolution. */
+  private static final ParserConfiguration PARSER_CONFIGURATION =
+      new ParserConfiguration()
+          .setLanguageLevel(ParserConfiguration.LanguageLevel.JAVA_17)
+          .setAttributeComments(true)
+          .setLexicalPreservationEnabled(false)
+          .setDetectOriginalLineSeparator(false);
+
+  // JavaParser is not thread-safe, so every request thread keeps its own instance
+  private static final ThreadLocal<JavaParser> PARSER =
+      ThreadLocal.withInitial(() -> new JavaParser(PARSER_CONFIGURATION));
+
+  /** Parse Java code into code elements, falling back to line matching if JavaParser fails */
+  public List<CodeElement> parse(String fileContent, String fileName) {
+    try {
+      return parseWithJavaParser(fileContent);
+    } catch (Exception e) {
+      log.error("Error parsing Java code with JavaParser: {}", e.getMessage(), e);
+      return parseJavaCodeFallback(fileContent, fileName);
+    }
+  }
+
+  /**
+   * Parse Java code straight from a stream. The decoded text is captured as JavaParser reads it, so
+   * the raw bytes are never held in memory as a whole.
+   *
+   * @param sizeHint expected size in bytes, used to presize the captured text
+   */
+  public List<CodeElement> parse(InputStream in, Charset charset, long sizeHint, String fileName)
+      throws IOException {
+    try (CapturingReader reader =
+        new CapturingReader(new InputStreamReader(in, charset), sizeHint)) {
+      try {
+        ParseResult<CompilationUnit> result = PARSER.get().parse(reader);
+        return extractElements(result, reader.text());
+      } catch (Exception e) {
+        log.error("Error parsing Java code with JavaParser: {}", e.getMessage(), e);
+        return parseJavaCodeFallback(reader.text().toString(), fileName);
+      }
+    }
+  }
+
+  private List<CodeElement> parseWithJavaParser(String fileContent) {
+    return extractElements(PARSER.get().parse(fileContent), fileContent);
+  }
+
+  private List<CodeElement> extractElements(
+      ParseResult<CompilationUnit> result, CharSequence fileContent) {
+    if (!result.isSuccessful() || result.getResult().isEmpty()) {
+      throw new ParseProblemException(result.getProblems());
+    }
+    CompilationUnit cu = result.getResult().get();
+
+    SourceText source = new SourceText(fileContent);
+    String packageName =
+        cu.getPackageDeclaration().map(PackageDeclaration::getNameAsString).orElse("default");
+
+    List<CodeElement> elements = new ArrayList<>();
+    cu.getPackageDeclaration()
+        .ifPresent(packageDecl -> elements.add(createPackageElement(packageDecl, source)));
+    if (!cu.getImports().isEmpty()) {
+      elements.add(createImportsElement(cu.getImports(), source));
+    }
+
+    ElementCollector collector = new ElementCollector(source, packageName, elements);
+    cu.getTypes().forEach(type -> type.accept(collector, null));
+
+    log.info(
+        "JavaParser analysis completed - Package: {}, Classes: {}, Methods: {}, Fields: {}",
+        packageName,
+        collector.classCount,
+        collector.methodCount,
+        collector.fieldCount);
+
+    return elements;
+  }
+
+  /** Single visitor pass that emits an element for every declaration of interest */
+  private static class ElementCollector extends VoidVisitorAdapter<Void> {
+    private final SourceText source;
+    private final String packageName;
+    private final List<CodeElement> elements;
+    // Ids of the enclosing type declarations, innermost first
+    private final Deque<String> typeIds = new ArrayDeque<>();
+    // Call sites of the enclosing methods and constructors, innermost first
+    private final Deque<List<Call>> callSinks = new ArrayDeque<>();
+    private int classCount;
+    private int methodCount;
+    private int fieldCount;
+
+    ElementCollector(SourceText source, String packageName, List<CodeElement> elements) {
+      this.source = source;
+      this.packageName = packageName;
+      this.elements = elements;
+    }
+
+    @Override
+    public void visit(ClassOrInterfaceDeclaration cls, Void arg) {
+      String className = cls.getNameAsString();
+      String id = typeId(className);
+      List<Node> header = new ArrayList<>(cls.getExtendedTypes());
+      header.addAll(cls.getImplementedTypes());
+      header.addAll(cls.getPermittedTypes());
+      header.addAll(cls.getTypeParameters());
+      header.add(cls.getName());
+      elements.add(
+          element(cls)
+              .id(id)
+              .parentId(typeIds.peek())
+              .type(cls.isInterface() ? "interface" : "class")
+              .name(className)
+              .className(className)
+              .javadoc(javadocOf(cls.getJavadocComment().orElse(null)))
+              .modifiers(modifiersOf(cls.getModifiers()))
+              .signature(source.headerOf(cls, header))
+              .extendedTypes(typeNames(cls.getExtendedTypes()))
+              .implementedTypes(typeNames(cls.getImplementedTypes()))
+              .build());
+      classCount++;
+      typeIds.push(id);
+      super.visit(cls, arg);
+      typeIds.pop();
+    }
+
+    @Override
+    public void visit(MethodDeclaration method, Void arg) {
+      String className = enclosingClassName(method);
+      List<Call> calls = new ArrayList<>();
+      if (className != null) {
+        elements.add(
+            element(method)
+                .id(memberId(method.getNameAsString(), method.getParameters()))
+                .parentId(typeIds.peek())
+                .type("method")
+                .name(method.getNameAsString())
+                .className(className)
+                .javadoc(javadocOf(method.getJavadocComment().orElse(null)))
+                .modifiers(modifiersOf(method.getModifiers()))
+                .signature(
+                    method
+                        .getBody()
+                        .map(body -> source.signatureBefore(method, body))
+                        .orElseGet(() -> source.signatureBefore(method, null)))
+                .statements(
+                    method.getBody().map(body -> source.spansOf(method, body)).orElse(null))
+                .calls(calls)
+                .build());
+        methodCount++;
+      }
+      callSinks.push(calls);
+      super.visit(method, arg);
+      callSinks.pop();
+    }
+
+    @Override
+    public void visit(ConstructorDeclaration constructor, Void arg) {
+      String className = enclosingClassName(constructor);
+      List<Call> calls = new ArrayList<>();
+      if (className != null) {
+        elements.add(
+            element(constructor)
+                .id(memberId(constructor.getNameAsString(), constructor.getParameters()))
+                .parentId(typeIds.peek())
+                .type("constructor")
+                .name(constructor.getNameAsString())
+                .className(className)
+                .javadoc(javadocOf(constructor.getJavadocComment().orElse(null)))
+                .modifiers(modifiersOf(constructor.getModifiers()))
+                .signature(source.signatureBefore(constructor, constructor.getBody()))
+                .statements(source.spansOf(constructor, constructor.getBody()))
+                .calls(calls)
+                .build());
+      }
+      callSinks.push(calls);
+      super.visit(constructor, arg);
+      callSinks.pop();
+    }
+
+    @Override
+    public void visit(FieldDeclaration field, Void arg) {
+      String className = enclosingClassName(field);
+      if (className != null) {
+        List<String> names =
+            field.getVariables().stream()
+                .map(var -> var.getNameAsString())
+                .collect(Collectors.toList());
+        elements.add(
+            element(field)
+                .id(typeIds.peek() + "#" + String.join(",", names))
+                .parentId(typeIds.peek())
+                .type("field")
+                .name(names.toString())
+                .className(className)
+                .javadoc(javadocOf(field.getJavadocComment().orElse(null)))
+                .modifiers(modifiersOf(field.getModifiers()))
+                .signature(
+                    source.headerOf(
+                        field, List.of(field.getVariables().getLast().get().getName())))
+                .valueType(typeName(field.getElementType()))
+                .build());
+        fieldCount++;
+      }
+      super.visit(field, arg);
+    }
+
+    @Override
+    public void visit(EnumDeclaration enumDecl, Void arg) {
+      String enumName = enumDecl.getNameAsString();
+      String id = typeId(enumName);
+      elements.add(
+          element(enumDecl)
+              .id(id)
+              .parentId(typeIds.peek())
+              .type("enum")
+              .name(enumName)
+              .className(enumName)
+              .javadoc(javadocOf(enumDecl.getJavadocComment().orElse(null)))
+              .modifiers("")
+              .implementedTypes(typeNames(enumDecl.getImplementedTypes()))
+              .build());
+      typeIds.push(id);
+      super.visit(enumDecl, arg);
+      typeIds.pop();
+    }
+
+    @Override
+    public void visit(AnnotationDeclaration annDecl, Void arg) {
+      String annName = annDecl.getNameAsString();
+      String id = typeId(annName);
+      elements.add(
+          element(annDecl)
+              .id(id)
+              .parentId(typeIds.peek())
+              .type("annotation")
+              .name(annName)
+              .className(annName)
+              .javadoc(javadocOf(annDecl.getJavadocComment().orElse(null)))
+              .modifiers("")
+              .build());
+      typeIds.push(id);
+      super.visit(annDecl, arg);
+      typeIds.pop();
+    }
+
+    @Override
+    public void visit(MethodCallExpr call, Void arg) {
+      if (!callSinks.isEmpty()) {
+        callSinks
+            .peek()
+            .add(
+                new Call(
+                    call.getNameAsString(),
+                    call.getScope().map(ElementCollector::scopeOf).orElse(null),
+                    call.getArguments().size()));
+      }
+      super.visit(call, arg);
+    }
+
+    @Override
+    public void visit(ObjectCreationExpr creation, Void arg) {
+      if (!callSinks.isEmpty()) {
+        callSinks
+            .peek()
+            .add(
+                new Call(
+                    creation.getType().getNameAsString(),
+                    Call.NEW,
+                    creation.getArguments().size()));
+      }
+      super.visit(creation, arg);
+    }
+
+    /** Receiver of a call, reduced to what can be resolved without a symbol solver */
+    private static String scopeOf(Expression scope) {
+      if (scope instanceof ThisExpr) {
+        return Call.THIS;
+      } else if (scope instanceof SuperExpr) {
+        return Call.SUPER;
+      } else if (scope instanceof NameExpr) {
+        return ((NameExpr) scope).getNameAsString();
+      } else if (scope instanceof FieldAccessExpr
+          && ((FieldAccessExpr) scope).getScope() instanceof ThisExpr) {
+        return ((FieldAccessExpr) scope).getNameAsString();
+      }
+      return Call.UNKNOWN;
+    }
+
+    /** Builder pre-filled with the node's source slice, lines and package */
+    private CodeElement.CodeElementBuilder element(Node node) {
+      return CodeElement.builder()
+          .source(source.of(node))
+          .sourceStartLine(source.startLineOf(node))
+          .startLine(beginLine(node))
+          .endLine(endLine(node))
+          .packageName(packageName);
+    }
+
+    private String typeId(String name) {
+      return typeIds.isEmpty() ? name : typeIds.peek() + "." + name;
+    }
+
+    private String memberId(String name, NodeList<Parameter> parameters) {
+      return typeIds.peek()
+          + "#"
+          + name
+          + parameters.stream()
+              .map(param -> param.getType().asString() + (param.isVarArgs() ? "..." : ""))
+              .collect(Collectors.joining(",", "(", ")"));
+    }
+
+    /** Members are only extracted for classes and interfaces, not enums or anonymous classes */
+    private static String enclosingClassName(Node member) {
+      return member
+          .getParentNode()
+          .filter(parent -> parent instanceof ClassOrInterfaceDeclaration)
+          .map(parent -> ((ClassOrInterfaceDeclaration) parent).getNameAsString())
+          .orElse(null);
+    }
+  }
+
+  private CodeElement createPackageElement(PackageDeclaration packageDecl, SourceText source) {
+    String packageName = packageDecl.getNameAsString();
+    return CodeElement.builder()
+        .id("package")
+        .type("package")
+        .name(packageName)
+        .className("N/A")
+        .source(source.of(packageDecl))
+        .sourceStartLine(source.startLineOf(packageDecl))
+        .startLine(beginLine(packageDecl))
+        .endLine(endLine(packageDecl))
+        .javadoc("")
+        .packageName(packageName)
+        .modifiers("")
+        .build();
+  }
+
+  private CodeElement createImportsElement(
+      NodeList<ImportDeclaration> importDecls, SourceText source) {
+    ImportDeclaration first = importDecls.get(0);
+    ImportDeclaration last = importDecls.get(importDecls.size() - 1);
+    String imports =
+        first.getBegin().isPresent() && last.getEnd().isPresent()
+            ? source.between(first.getBegin().get(), last.getEnd().get())
+            : importDecls.toString();
+
+    return CodeElement.builder()
+        .id("imports")
+        .type("imports")
+        .name("imports")
+        .className("N/A")
+        .source(imports)
+        .sourceStartLine(beginLine(first))
+        .startLine(beginLine(first))
+        .endLine(endLine(last))
+        .javadoc("")
+        .packageName("N/A")
+        .modifiers("")
+        .build();
+  }
+
+  /** Fallback parsing if JavaParser fails */
+  private List<CodeElement> parseJavaCodeFallback(String fileContent, String fileName) {
+    List<CodeElement> elements = new ArrayList<>();
+
+    // Simple parsing for demonstration
+    String[] lines = fileContent.split("\\n");
+    String currentClass = "UnknownClass";
+
+    for (int i = 0; i < lines.length; i++) {
+      String line = lines[i].trim();
+
+      if (line.startsWith("public class ") || line.startsWith("class ")) {
+        currentClass = line.replaceAll(".*class\\s+([A-Za-z0-9_]+).*", "$1");
+        elements.add(fallbackElement("class", currentClass, currentClass, line, i + 1));
+      } else if (line.matches(".*public\\s+.*\\s+[a-zA-Z_][a-zA-Z0-9_]*\\s*\\(.*\\).*\\{?")) {
+        String methodName =
+            line.replaceAll(".*public\\s+.*\\s+([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(.*", "$1");
+        elements.add(fallbackElement("method", methodName, currentClass, line, i + 1));
+      }
+    }
+
+    return elements;
+  }
+
+  private CodeElement fallbackElement(
+      String type, String name, String className, String line, int lineNumber) {
+    return CodeElement.builder()
+        .id(className + "#" + name + ":" + lineNumber)
+        .type(type)
+        .name(name)
+        .className(className)
+        .source(line)
+        .sourceStartLine(lineNumber)
+        .startLine(lineNumber)
+        .endLine(lineNumber)
+        .javadoc("")
+        .packageName("default")
+        .modifiers("")
+        .build();
+  }
+
+  /** Simple names of referenced types, without scope or type arguments */
+  private static List<String> typeNames(NodeList<ClassOrInterfaceType> types) {
+    return types.stream().map(ClassOrInterfaceType::getNameAsString).collect(Collectors.toList());
+  }
+
+  private static String typeName(Type type) {
+    return type instanceof ClassOrInterfaceType
+        ? ((ClassOrInterfaceType) type).getNameAsString()
+        : type.asString();
+  }
+
+  private static int beginLine(Node node) {
+    return node.getBegin().map(pos -> pos.line).orElse(1);
+  }
+
+  private static int endLine(Node node) {
+    return node.getEnd().map(pos -> pos.line).orElse(1);
+  }
+
+  private static String javadocOf(JavadocComment javadoc) {
+    return javadoc != null ? javadoc.getContent() : "";
+  }
+
+  private static String modifiersOf(NodeList<Modifier> modifiers) {
+    return modifiers.stream()
+        .map(mod -> mod.getKeyword().asString())
+        .collect(Collectors.toList())
+        .toString();
+  }
+
+  /** Original source text with a line index so node ranges can be sliced without re-printing */
+  private static class SourceText {
+    private final CharSequence text;
+    private final int[] lineStarts;
+
+    SourceText(CharSequence text) {
+      this.text = text;
+      this.lineStarts = indexLineStarts(text);
+    }
+
+    /** Source of a node including its attached comment, exactly as written in the file */
+    String of(Node node) {
+      if (node.getBegin().isEmpty() || node.getEnd().isEmpty()) {
+        return node.toString();
+      }
+      return between(sourceBegin(node), node.getEnd().get());
+    }
+
+    /** Line on which {@link #of(Node)} starts, which is the comment line when one is attached */
+    int startLineOf(Node node) {
+      return node.getBegin().isPresent() ? sourceBegin(node).line : 1;
+    }
+
+    /** Declaration text from the node start (after its comment) through the last header node */
+    String headerOf(Node node, List<? extends Node> headerNodes) {
+      Position end =
+          headerNodes.stream()
+              .map(Node::getEnd)
+              .flatMap(Optional::stream)
+              .max(Position::compareTo)
+              .orElse(null);
+      if (node.getBegin().isEmpty() || end == null) {
+        return "";
+      }
+      return collapseWhitespace(between(node.getBegin().get(), end));
+    }
+
+    /** Declaration text from the node start (after its comment) up to its body, if any */
+    String signatureBefore(Node node, Node body) {
+      if (node.getBegin().isEmpty() || node.getEnd().isEmpty()) {
+        return "";
+      }
+      int from = offsetOf(node.getBegin().get());
+      int to =
+          body != null && body.getBegin().isPresent()
+              ? offsetOf(body.getBegin().get())
+              : offsetOf(node.getEnd().get()) + 1;
+      return collapseWhitespace(from < to ? text.subSequence(from, to).toString() : "");
+    }
+
+    /** Spans of the top-level statements of a body, relative to {@link #of(Node)} of the owner */
+    List<Span> spansOf(Node owner, BlockStmt body) {
+      if (owner.getBegin().isEmpty()) {
+        return List.of();
+      }
+      int base = offsetOf(sourceBegin(owner));
+      List<Span> spans = new ArrayList<>(body.getStatements().size());
+      for (Statement statement : body.getStatements()) {
+        if (statement.getBegin().isPresent() && statement.getEnd().isPresent()) {
+          Position begin = sourceBegin(statement);
+          Position end = statement.getEnd().get();
+          spans.add(
+              new Span(offsetOf(begin) - base, offsetOf(end) + 1 - base, begin.line, end.line));
+        }
+      }
+      return spans;
+    }
+
+    private static Position sourceBegin(Node node) {
+      return node.getComment().flatMap(Node::getBegin).orElse(node.getBegin().get());
+    }
+
+    private static String collapseWhitespace(String text) {
+      return text.replaceAll("\\s+", " ").trim();
+    }
+
+    /** Text between two positions, both inclusive */
+    String between(Position begin, Position end) {
+      int from = offsetOf(begin);
+      int to = Math.min(offsetOf(end) + 1, text.length());
+      return from < to ? text.subSequence(from, to).toString() : "";
+    }
+
+    private int offsetOf(Position position) {
+      int line = Math.max(1, Math.min(position.line, lineStarts.length));
+      return Math.min(lineStarts[line - 1] + Math.max(position.column, 1) - 1, text.length());
+    }
+
+    // JavaParser treats \n, \r\n and a lone \r as line terminators
+    private static int[] indexLineStarts(CharSequence text) {
+      int[] starts = new int[64];
+      int lines = 1;
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        if (c == '\n' || (c == '\r' && (i + 1 >= text.length() || text.charAt(i + 1) != '\n'))) {
+          if (lines == starts.length) {
+            starts = Arrays.copyOf(starts, lines * 2);
+          }
+          starts[lines++] = i + 1;
+        }
+      }
+      return Arrays.copyOf(starts, lines);
+    }
+  }
+
+  /** Reader that keeps a copy of every decoded character so nodes can be sliced after parsing */
+  private static class CapturingReader extends FilterReader {
+    private final StringBuilder captured;
+    private boolean closed;
+
+    CapturingReader(Reader in, long sizeHint) {
+      super(in);
+      // UTF-8 never decodes to more chars than bytes, so the hint is an upper bound
+      this.captured =
+          new StringBuilder((int) Math.min(Math.max(sizeHint, 16), Integer.MAX_VALUE - 8));
+    }
+
+    @Override
+    public int read() throws IOException {
+      int c = super.read();
+      if (c != -1) {
+        captured.append((char) c);
+      }
+      return c;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      int n = super.read(cbuf, off, len);
+      if (n > 0) {
+        captured.append(cbuf, off, n);
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      char[] buffer = new char[(int) Math.min(n, 8192)];
+      long skipped = 0;
+      while (skipped < n) {
+        int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+        if (read == -1) {
+          break;
+        }
+        skipped += read;
+      }
+      return skipped;
+    }
+
+    /** Complete source text, reading whatever the parser left unconsumed */
+    CharSequence text() throws IOException {
+      if (!closed) {
+        char[] buffer = new char[8192];
+        while (read(buffer, 0, buffer.length) != -1) {
+          // drain into captured
+        }
+      }
+      return captured;
+    }
+
+    // JavaParser closes its input when done, so drain first to keep the text complete
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        text();
+        closed = true;
+        super.close();
+      }
+    }
+  }
+
+  /** Character range of a statement within an element's source, with its line numbers */
+  public record Span(int begin, int end, int beginLine, int endLine) {}
+
+  /**
+   * Method call or object creation inside a method or constructor body. The scope is null for an
+   * unqualified call, otherwise a variable or type name, or one of the constants below.
+   */
+  public record Call(String name, String scope, int arguments) {
+    public static final String THIS = "this";
+    public static final String SUPER = "super";
+    public static final String NEW = "new";
+    public static final String UNKNOWN = "?";
+  }
+
+  /** Parsed Java code element */
+  @Builder(toBuilder = true)
+  public static class CodeElement {
+    final String id; // unique within the file, e.g. Outer.Inner#method(String,int)
+    final String parentId; // id of the enclosing type, null for top-level elements
+    final String type; // class, method, field, constructor, enum, annotation, package, imports
+    final String name; // element name
+    final String className; // containing class (or N/A for package/imports)
+    final String source; // source code
+    final int sourceStartLine; // line the source starts on, including any leading comment
+    final int startLine; // start line number
+    final int endLine; // end line number
+    final String javadoc; // javadoc comment
+    final String packageName; // package name
+    final String modifiers; // modifiers (public, private, static, etc.)
+    final String signature; // declaration without body, for types, methods and fields
+    final List<Span> statements; // top-level body statements of methods and constructors
+    final List<String> memberIds; // ids of the member segments a type skeleton links to
+    final int part; // 1-based part number when the element was split, 0 otherwise
+    final int parts; // total number of parts when the element was split
+    final List<String> extendedTypes; // simple names of extended types, for classes and interfaces
+    final List<String> implementedTypes; // simple names of implemented interfaces
+    final String valueType; // simple name of a field's type
+    final List<Call> calls; // call sites in a method or constructor body
+  }
+}
@@ -0,0 +1,189 @@
+package com.documentrag.service;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams PDF text into the vector store page by page.
+ *
+ * <p>The document is opened from a file with PDFBox scratch buffers on disk, and text is handed
+ * over as each page finishes in a single extraction pass. Heap use is bounded by one page of text
+ * plus one batch of segments, whatever the page count, and each batch is embedded and upserted
+ * with one call each.
+ */
+@Slf4j
+@Service
+public class PdfIngestionService {
+
+  @Autowired private DocumentChatService documentChatService;
+
+  @Autowired private TokenCounter tokenCounter;
+
+  @Autowired private IngestionMetrics ingestionMetrics;
+
+  @Value("${document-rag.chunking.max-segment-tokens:800}")
+  private int maxSegmentTokens;
+
+  @Value("${document-rag.chunking.overlap-tokens:64}")
+  private int overlapTokens;
+
+  /** Pages read, segments stored and tokens embedded for one document */
+  public record PdfIngestionResult(int pages, int textPages, int segments, int tokensEmbedded) {}
+
+  public PdfIngestionResult ingest(
+      Path pdf, String fileName, String documentId, String sessionId) throws IOException {
+    try (PDDocument document =
+        PDDocument.load(pdf.toFile(), MemoryUsageSetting.setupTempFileOnly())) {
+      PageIngester ingester =
+          new PageIngester(fileName, documentId, sessionId, document.getNumberOfPages());
+      new PageStreamingStripper(ingester).streamPages(document);
+      ingester.flush();
+
+      log.info(
+          "PDF ingestion completed - File: {}, Pages: {}, Pages with text: {}, Segments: {}, "
+              + "Tokens embedded: {}",
+          fileName,
+          ingester.pageCount,
+          ingester.textPages,
+          ingester.segments,
+          ingester.tokens);
+      return new PdfIngestionResult(
+          ingester.pageCount, ingester.textPages, ingester.segments, ingester.tokens);
+    }
+  }
+
+  /** Splits each page as it arrives and stores the segments in fixed-size batches */
+  private final class PageIngester implements PageConsumer {
+    private final DocumentSplitter splitter =
+        DocumentSplitters.recursive(maxSegmentTokens, overlapTokens, tokenCounter);
+    private final int batchSize = documentChatService.getIngestionBatchSize();
+    private final List<TextSegment> batch = new ArrayList<>(batchSize);
+    private final String fileName;
+    private final String documentId;
+    private final String sessionId;
+    private final int pageCount;
+    private int textPages;
+    private int segments;
+    private int tokens;
+
+    PageIngester(String fileName, String documentId, String sessionId, int pageCount) {
+      this.fileName = fileName;
+      this.documentId = documentId;
+      this.sessionId = sessionId;
+      this.pageCount = pageCount;
+    }
+
+    @Override
+    public void accept(int pageNumber, String text, long extractionNanos) {
+      ingestionMetrics.recordStage("pdf", IngestionMetrics.STAGE_PARSE, extractionNanos);
+      if (text.isBlank()) {
+        return;
+      }
+      textPages++;
+      List<TextSegment> pieces =
+          ingestionMetrics.time(
+              "pdf",
+              IngestionMetrics.STAGE_SEGMENT_BUILD,
+              () -> splitter.split(Document.from(text, new Metadata())));
+      for (TextSegment piece : pieces) {
+        segments++;
+        tokens += tokenCounter.count(piece.text());
+        batch.add(
+            createPdfSegment(
+                piece.text(), fileName, documentId, sessionId, pageNumber, pageCount, segments));
+        if (batch.size() >= batchSize) {
+          flush();
+        }
+      }
+    }
+
+    void flush() {
+      if (batch.isEmpty()) {
+        return;
+      }
+      documentChatService.addSegmentsToVectorStore(batch, "pdf");
+      batch.clear();
+    }
+  }
+
+  /** Segment metadata mirrors code segments so search filters and prompts treat both alike */
+  private static TextSegment createPdfSegment(
+      String text,
+      String fileName,
+      String documentId,
+      String sessionId,
+      int pageNumber,
+      int pageCount,
+      int segmentIndex) {
+    Metadata metadata = new Metadata();
+    metadata.add("documentId", documentId);
+    metadata.add("sessionId", sessionId);
+    metadata.add("chunkIndex", String.valueOf(segmentIndex));
+    metadata.add("type", "page");
+    metadata.add("name", "Page " + pageNumber);
+    metadata.add("class", fileName);
+    metadata.add("package", "N/A");
+    metadata.add("modifiers", "");
+    metadata.add("startLine", String.valueOf(pageNumber));
+    metadata.add("endLine", String.valueOf(pageNumber));
+    metadata.add("javadoc", "");
+    metadata.add("contentType", "pdf_text");
+    metadata.add("page", String.valueOf(pageNumber));
+    metadata.add("pages", String.valueOf(pageCount));
+    metadata.add("processingTimestamp", String.valueOf(System.currentTimeMillis()));
+    return TextSegment.from(text, metadata);
+  }
+
+  @FunctionalInterface
+  private interface PageConsumer {
+    void accept(int pageNumber, String text, long extractionNanos) throws IOException;
+  }
+
+  /** Collects the text of the current page only and hands it over when the page ends */
+  private static class PageStreamingStripper extends PDFTextStripper {
+    private final PageConsumer consumer;
+    private final StringWriter pageText = new StringWriter();
+    private int pageNumber;
+    private long pageStartNanos;
+
+    PageStreamingStripper(PageConsumer consumer) throws IOException {
+      this.consumer = consumer;
+    }
+
+    void streamPages(PDDocument document) throws IOException {
+      writeText(document, pageText);
+    }
+
+    @Override
+    protected void startPage(PDPage page) throws IOException {
+      pageNumber = getCurrentPageNo();
+      pageStartNanos = System.nanoTime();
+      pageText.getBuffer().setLength(0);
+      super.startPage(page);
+    }
+
+    @Override
+    protected void endPage(PDPage page) throws IOException {
+      super.endPage(page);
+      consumer.accept(pageNumber, pageText.toString(), System.nanoTime() - pageStartNanos);
+      pageText.getBuffer().setLength(0);
+    }
+  }
+}
@@ -36,6 +36,9 @@ public class PineconeEmbeddingStore implements EmbeddingStore<TextSegment> {
         Map<String, Object> metadata
     ) {}
 
+    // Pinecone accepts at most 1000 ids per delete request
+    private static final int MAX_DELETE_IDS = 1000;
+
     private final String apiKey;
     private final String environment;
     private final String projectId;
@@ -68,7 +71,7 @@ public class PineconeEmbeddingStore implements EmbeddingStore<TextSegment> {
 
     @Override
     public String add(Embedding embedding, TextSegment textSegment) {
-        String id = textSegment.metadata().get("documentId")+"##" +textSegment.metadata().get("sessionId")+"##"+ UUID.randomUUID();
+        String id = segmentId(textSegment);
         addToPinecone(id, embedding, textSegment);
         return id;
     }
@@ -89,54 +92,141 @@ public class PineconeEmbeddingStore implements EmbeddingStore<TextSegment> {
         return ids;
     }
 
+    // Upserts all vectors in a single request; callers keep batches within Pinecone's request limits
     @Override
     public List<String> addAll(List<Embedding> embeddings, List<TextSegment> textSegments) {
         List<String> ids = new ArrayList<>();
+        List<PineconeVector> vectors = new ArrayList<>(embeddings.size());
         for (int i = 0; i < embeddings.size(); i++) {
-            Embedding embedding = embeddings.get(i);
             TextSegment textSegment = i < textSegments.size() ? textSegments.get(i) : null;
-            String id = textSegment != null ? 
-                textSegment.metadata().get("documentId")+"##" +textSegment.metadata().get("sessionId") :
-                "embedding-" + System.currentTimeMillis();
-            addToPinecone(id, embedding, textSegment);
+            String id = textSegment != null ? segmentId(textSegment) : "embedding-" + UUID.randomUUID();
+            vectors.add(toPineconeVector(id, embeddings.get(i), textSegment));
             ids.add(id);
         }
+        upsert(vectors);
         return ids;
     }
 
+    // Upserts with caller-chosen ids, e.g. content hashes, so repeated writes replace one vector
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> textSegments) {
+        if (ids.size() != embeddings.size() || ids.size() != textSegments.size()) {
+            throw new IllegalArgumentException("ids, embeddings and segments must have the same size");
+        }
+        List<PineconeVector> vectors = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            vectors.add(toPineconeVector(ids.get(i), embeddings.get(i), textSegments.get(i)));
+        }
+        upsert(vectors);
+    }
+
+    private static String segmentId(TextSegment textSegment) {
+        return textSegment.metadata().get("documentId") + "##" + textSegment.metadata().get("sessionId") + "##" + UUID.randomUUID();
+    }
+
     @Override
     public List<dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment>> findRelevant(Embedding queryEmbedding, int maxResults) {
-        return findRelevantInPinecone(queryEmbedding, maxResults, 0.0, null);
+        return findRelevantInPinecone(queryEmbedding, maxResults, 0.0, (Map<String, Object>) null);
     }
 
     @Override
     public List<dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment>> findRelevant(Embedding queryEmbedding, int maxResults, double minScore) {
-        return findRelevantInPinecone(queryEmbedding, maxResults, minScore, null);
+        return findRelevantInPinecone(queryEmbedding, maxResults, minScore, (Map<String, Object>) null);
     }
 
     // Primary method: Find relevant with metadata filtering
     public List<dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment>> findRelevant(
             Embedding queryEmbedding, int maxResults, double minScore, java.util.Map<String, String> metadataFilter) {
-        return findRelevantInPinecone(queryEmbedding, maxResults, minScore, metadataFilter);
+        return findRelevantInPinecone(queryEmbedding, maxResults, minScore, equalityFilter(metadataFilter));
     }
 
-    // Pinecone-specific methods
-    private void addToPinecone(String ids, Embedding embedding, TextSegment textSegment) {
+    // Find relevant with a raw Pinecone filter expression ($in, $or, $and, ...)
+    public List<dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment>> findRelevantWithFilter(
+            Embedding queryEmbedding, int maxResults, double minScore, Map<String, Object> pineconeFilter) {
+        return findRelevantInPinecone(queryEmbedding, maxResults, minScore, pineconeFilter);
+    }
+
+    // Delete every vector whose metadata matches all filter entries
+    public void removeAll(Map<String, String> metadataFilter) {
+        if (metadataFilter == null || metadataFilter.isEmpty()) {
+            throw new IllegalArgumentException("A metadata filter is required to delete vectors");
+        }
+        delete(Map.of("filter", equalityFilter(metadataFilter)));
+        log.info("Deleted Pinecone vectors matching filter: {}", metadataFilter);
+    }
+
+    // Delete vectors by id, at most MAX_DELETE_IDS per request
+    public void removeByIds(Collection<String> ids) {
+        List<String> remaining = new ArrayList<>(ids);
+        for (int from = 0; from < remaining.size(); from += MAX_DELETE_IDS) {
+            delete(Map.of("ids", remaining.subList(from, Math.min(from + MAX_DELETE_IDS, remaining.size()))));
+        }
+        if (!remaining.isEmpty()) {
+            log.info("Deleted {} Pinecone vectors by id", remaining.size());
+        }
+    }
+
+    private static Map<String, Object> equalityFilter(Map<String, String> metadataFilter) {
+        if (metadataFilter == null || metadataFilter.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> filterMap = new HashMap<>();
+        for (Map.Entry<String, String> entry : metadataFilter.entrySet()) {
+            filterMap.put(entry.getKey(), Map.of("$eq", entry.getValue()));
+        }
+        return filterMap;
+    }
+
+    private void delete(Map<String, Object> deleteRequest) {
         try {
-            // Convert embedding to Pinecone format
-            List<Float> vector = embedding.vectorAsList();
-
-            // Build metadata map for the vector
-            Map<String, Object> metadataMap = new HashMap<>();
-            if (textSegment != null) {
-                metadataMap.put("text", textSegment.text());
-                // Include all metadata from TextSegment for hybrid search
-                metadataMap.putAll(textSegment.metadata().asMap());
+            String json = objectMapper.writeValueAsString(deleteRequest);
+
+            String url = String.format("https://%s-%s.svc.%s.pinecone.io/vectors/delete",
+                    indexName, projectId, environment);
+
+            okhttp3.RequestBody body = okhttp3.RequestBody.create(json, okhttp3.MediaType.get("application/json"));
+            okhttp3.Request request = new okhttp3.Request.Builder()
+                    .url(url)
+                    .addHeader("Api-Key", apiKey)
+                    .addHeader("Content-Type", "application/json")
+                    .post(body)
+                    .build();
+
+            try (okhttp3.Response response = client.newCall(request).execute()) {
+                if (!response.isSuccessful()) {
+                    String errorBody = response.body() != null ? response.body().string() : "Unknown error";
+                    log.error("Pinecone delete API error: {} - {}", response.code(), errorBody);
+                    throw new IOException("Failed to delete from Pinecone: " + response.code() + " - " + errorBody);
+                }
             }
 
-            // Create Pinecone vector using DTO
-            PineconeVector pineconeVector = new PineconeVector(ids, vector, metadataMap);
-            PineconeUpsertRequest upsertRequest = new PineconeUpsertRequest(List.of(pineconeVector));
+        } catch (Exception e) {
+            log.error("Error deleting from Pinecone: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to delete embeddings from Pinecone", e);
+        }
+    }
+
+    // Pinecone-specific methods
+    private void addToPinecone(String ids, Embedding embedding, TextSegment textSegment) {
+        upsert(List.of(toPineconeVector(ids, embedding, textSegment)));
+    }
+
+    private PineconeVector toPineconeVector(String id, Embedding embedding, TextSegment textSegment) {
+        // Build metadata map for the vector
+        Map<String, Object> metadataMap = new HashMap<>();
+        if (textSegment != null) {
+            metadataMap.put("text", textSegment.text());
+            // Include all metadata from TextSegment for hybrid search
+            metadataMap.putAll(textSegment.metadata().asMap());
+        }
+        return new PineconeVector(id, embedding.vectorAsList(), metadataMap);
+    }
+
+    private void upsert(List<PineconeVector> vectors) {
+        if (vectors.isEmpty()) {
+            return;
+        }
+        try {
+            PineconeUpsertRequest upsertRequest = new PineconeUpsertRequest(vectors);
 
             String json = objectMapper.writeValueAsString(upsertRequest);
 
@@ -159,8 +249,8 @@ public class PineconeEmbeddingStore implements EmbeddingStore<TextSegment> {
                     throw new IOException("Failed to add to Pinecone: " + response.code() + " - " + errorBody);
                 }
 
-                log.info("Successfully added embedding to Pinecone with ID: {} and metadata: {}", 
-                        ids, textSegment != null ? textSegment.metadata().asMap().toString() : "none");
+                log.info("Successfully upserted {} embeddings to Pinecone, first ID: {}",
+                        vectors.size(), vectors.get(0).id());
             }
 
         } catch (Exception e) {
@@ -170,25 +260,15 @@ public class PineconeEmbeddingStore implements EmbeddingStore<TextSegment> {
     }
 
     private List<dev.langchain4j.store.embedding.EmbeddingMatch<TextSegment>> findRelevantInPinecone(
-            Embedding queryEmbedding, int maxResults, double minScore, java.util.Map<String, String> metadataFilter) {
+            Embedding queryEmbedding, int maxResults, double minScore, Map<String, Object> filterMap) {
         try {
             // Convert query embedding to Pinecone format
             List<Float> queryVector = queryEmbedding.vectorAsList();
 
             // Build Pinecone query request with metadata filtering using DTO
-            PineconeQueryRequest queryRequest;
-            if (metadataFilter != null && !metadataFilter.isEmpty()) {
-                // Convert metadataFilter to Map<String, Object> for Pinecone
-                Map<String, Object> filterMap = new HashMap<>();
-                for (java.util.Map.Entry<String, String> entry : metadataFilter.entrySet()) {
-                    filterMap.put(entry.getKey(), Map.of("$eq", entry.getValue()));
-                }
-                
-                queryRequest = new PineconeQueryRequest(queryVector, maxResults, true, false, filterMap);
-                log.debug("Using metadata filter: {}", filterMap.toString());
-            } else {
-                // No metadata filtering
-                queryRequest = new PineconeQueryRequest(queryVector, maxResults, true, false, null);
+            PineconeQueryRequest queryRequest = new PineconeQueryRequest(queryVector, maxResults, true, false, filterMap);
+            if (filterMap != null) {
+                log.debug("Using metadata filter: {}", filterMap);
             }
 
             String json = objectMapper.writeValueAsString(queryRequest);
@@ -245,7 +325,7 @@ public class PineconeEmbeddingStore implements EmbeddingStore<TextSegment> {
                 }
 
                 log.info("Found {} relevant embeddings in Pinecone with score >= {} and metadata filter: {}", 
-                        results.size(), minScore, metadataFilter != null ? metadataFilter.toString() : "none");
+                        results.size(), minScore, filterMap != null ? filterMap.toString() : "none");
                 return results;
             }
 
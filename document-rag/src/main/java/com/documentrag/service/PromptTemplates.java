@@ -0,0 +1,100 @@
+package com.documentrag.service;
+
+import com.documentrag.service.IntentDetectionService.SearchIntent;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.stereotype.Component;
+
+/**
+ * Precompiled instructions for document chat prompts, ordered from most static to most dynamic.
+ *
+ * <p>Providers cache prompts by exact prefix, so every prompt opens with the same preamble,
+ * followed by the follow-up note and the intent guidance. All combinations are built once at
+ * startup. Retrieved segments, history and the question come after them, and per-request values
+ * such as the intent confidence stay out of the prompt.
+ */
+@Component
+public class PromptTemplates {
+
+  private static final String PREAMBLE =
+      "You are a helpful AI assistant that helps developers understand Java code. "
+          + "Use the relevant code segments below to answer the user's question. "
+          + "If the information is not in the code, say so clearly. "
+          + "Provide accurate, helpful responses based only on the code content.\n\n"
+          + "IMPORTANT: Format your response in a clear, readable way. Use bullet points, "
+          + "numbered lists, and proper spacing to make the information easy to read.\n\n";
+
+  private static final String FOLLOW_UP =
+      "This question continues an earlier conversation. "
+          + "Use the conversation history below together with the code segments.\n\n";
+
+  /**
+   * Instructions and their token count, from the OpenAI tokenizer, so it is in the same units as
+   * the input tokens the provider reports
+   */
+  public record Template(String text, int tokens) {}
+
+  private final Map<String, Template> templates = new HashMap<>();
+
+  public PromptTemplates(TokenCounter tokenCounter) {
+    for (boolean firstRequest : new boolean[] {true, false}) {
+      for (SearchIntent intent : SearchIntent.values()) {
+        String text = PREAMBLE + (firstRequest ? "" : FOLLOW_UP) + intentGuidance(intent);
+        templates.put(key(firstRequest, intent), new Template(text, tokenCounter.count(text)));
+      }
+    }
+  }
+
+  /** Instructions for a first question or a follow-up with the given intent */
+  public String instructions(boolean firstRequest, SearchIntent intent) {
+    return templates.get(key(firstRequest, intent == null ? SearchIntent.GENERAL : intent)).text();
+  }
+
+  /**
+   * Tokens of the precompiled instructions the prompt starts with, or zero if none. Comparable
+   * with the provider's input token count, as code-assistant's prompt metrics do.
+   */
+  public int stablePrefixTokens(String prompt) {
+    int tokens = 0;
+    for (Template template : templates.values()) {
+      if (template.tokens() > tokens && prompt.startsWith(template.text())) {
+        tokens = template.tokens();
+      }
+    }
+    return tokens;
+  }
+
+  private static String key(boolean firstRequest, SearchIntent intent) {
+    return (firstRequest ? "first:" : "follow-up:") + intent.name();
+  }
+
+  private static String intentGuidance(SearchIntent intent) {
+    switch (intent) {
+      case METHODS:
+        return "The user is asking about METHODS. Focus on method names, signatures, parameters, "
+            + "return types, and functionality. If listing methods, provide a clear, organized "
+            + "list with method names and brief descriptions.\n\n";
+      case CLASSES:
+        return "The user is asking about CLASSES. Focus on class names, inheritance, interfaces, "
+            + "and overall structure. If listing classes, provide a clear, organized list with "
+            + "class names and brief descriptions.\n\n";
+      case FIELDS:
+        return "The user is asking about FIELDS/VARIABLES. Focus on field names, types, "
+            + "modifiers, and purpose. If listing fields, provide a clear, organized list with "
+            + "field names, types, and brief descriptions.\n\n";
+      case CONSTRUCTORS:
+        return "The user is asking about CONSTRUCTORS. Focus on constructor names, parameters, "
+            + "and initialization logic. If listing constructors, provide a clear, organized list "
+            + "with parameter details.\n\n";
+      case PACKAGES:
+        return "The user is asking about PACKAGES. Focus on package structure and organization."
+            + "\n\n";
+      case IMPORTS:
+        return "The user is asking about IMPORTS. Focus on imported classes and their purposes."
+            + "\n\n";
+      default:
+        return "Provide a helpful response about the Java code. "
+            + "Use clear explanations and examples when possible.\n\n";
+    }
+  }
+}
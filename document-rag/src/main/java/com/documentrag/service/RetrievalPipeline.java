@@ -0,0 +1,236 @@
+package com.documentrag.service;
+
+import com.documentrag.service.IntentDetectionService.IntentDetectionResult;
+import com.documentrag.service.IntentDetectionService.SearchIntent;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Retrieval for document chat as a graph of asynchronous stages.
+ *
+ * <pre>
+ *   embed query ──┬── detect intent ── filtered search ──┐
+ *                 └── unfiltered search ─────────────────┴── pick better result
+ * </pre>
+ *
+ * <p>The query is embedded once. Intent detection and the unfiltered search start as soon as the
+ * embedding is ready, and the intent-filtered search starts as soon as the intent is known, so a
+ * request waits for the longest path rather than the sum of the stages.
+ *
+ * <p>A caller that answers without the segments (symbol index, answer cache) or whose client went
+ * away cancels the retrieval: searches not yet started are skipped and running ones interrupted,
+ * so they give their pool threads back early.
+ */
+@Slf4j
+@Service
+public class RetrievalPipeline {
+
+  @Autowired private OpenAIEmbeddingModel embeddingModel;
+
+  @Autowired private IntentDetectionService intentDetectionService;
+
+  @Autowired private ContentAddressedSegmentStore segmentStore;
+
+  @Value("${document-rag.retrieval.top-k:10}")
+  private int topK;
+
+  // The filtered result is kept unless its best match trails the unfiltered one by more than this
+  @Value("${document-rag.retrieval.filtered-score-margin:0.05}")
+  private double filteredScoreMargin;
+
+  private final ExecutorService executor;
+
+  public RetrievalPipeline(@Value("${document-rag.retrieval.threads:16}") int threads) {
+    AtomicInteger count = new AtomicInteger();
+    ThreadFactory threadFactory =
+        runnable -> {
+          Thread thread = new Thread(runnable, "retrieval-" + count.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        };
+    this.executor = Executors.newFixedThreadPool(threads, threadFactory);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /** Handles on the stages a caller waits for; the intent completes before the segments */
+  public record Retrieval(
+      CompletableFuture<Embedding> embedding,
+      CompletableFuture<IntentDetectionResult> intent,
+      CompletableFuture<List<TextSegment>> segments,
+      Searches searches) {
+
+    /** Stops the searches when their segments will not be used */
+    public void cancel() {
+      if (searches.cancel()) {
+        segments.cancel(false);
+      }
+    }
+  }
+
+  /** The searches of one retrieval, so they can be stopped together */
+  static final class Searches {
+
+    private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    /** Runs a search unless cancelled; a search cut short by cancellation yields null */
+    SearchResult run(Supplier<SearchResult> search) {
+      if (cancelled) {
+        return null;
+      }
+      Thread thread = Thread.currentThread();
+      running.add(thread);
+      try {
+        return cancelled ? null : search.get();
+      } catch (RuntimeException e) {
+        if (cancelled) {
+          return null;
+        }
+        throw e;
+      } finally {
+        running.remove(thread);
+        if (cancelled) {
+          // The pool thread must not carry the interrupt into its next task
+          Thread.interrupted();
+        }
+      }
+    }
+
+    boolean cancel() {
+      if (cancelled) {
+        return false;
+      }
+      cancelled = true;
+      running.forEach(Thread::interrupt);
+      return true;
+    }
+  }
+
+  private record SearchResult(String type, List<EmbeddingMatch<TextSegment>> matches) {
+    double bestScore() {
+      return matches.isEmpty() ? Double.NEGATIVE_INFINITY : matches.get(0).score();
+    }
+  }
+
+  /** Start retrieval for a question; stages run on the pipeline's executor */
+  public Retrieval retrieve(String sessionId, String userMessage) {
+    long start = System.nanoTime();
+    Searches searches = new Searches();
+
+    CompletableFuture<Embedding> embedding =
+        CompletableFuture.supplyAsync(
+            () -> embeddingModel.embed(userMessage).content(), executor);
+
+    CompletableFuture<IntentDetectionResult> intent =
+        embedding
+            .thenApplyAsync(
+                queryEmbedding ->
+                    intentDetectionService.detectSearchIntent(userMessage, queryEmbedding),
+                executor)
+            .exceptionally(
+                error -> {
+                  log.error("Intent detection failed: {}", error.getMessage());
+                  return new IntentDetectionResult(SearchIntent.GENERAL, 0.0);
+                });
+
+    CompletableFuture<SearchResult> unfiltered =
+        embedding
+            .thenApplyAsync(
+                queryEmbedding -> searches.run(() -> search(sessionId, queryEmbedding, null)),
+                executor)
+            .exceptionally(error -> failedSearch(null, error));
+
+    CompletableFuture<SearchResult> filtered =
+        intent
+            .thenCombineAsync(
+                embedding,
+                (intentResult, queryEmbedding) ->
+                    intentResult.getIntent() == SearchIntent.GENERAL
+                        ? null
+                        : searches.run(
+                            () ->
+                                search(
+                                    sessionId,
+                                    queryEmbedding,
+                                    intentResult.getIntent().getPineconeFilter())),
+                executor)
+            .exceptionally(error -> failedSearch("intent-filtered", error));
+
+    CompletableFuture<List<TextSegment>> segments =
+        unfiltered
+            .thenCombine(filtered, this::choose)
+            .thenApply(
+                chosen -> {
+                  log.info(
+                      "Retrieval completed - Session: {}, Type filter: {}, Matches: {}, "
+                          + "Elapsed: {} ms",
+                      sessionId,
+                      chosen.type(),
+                      chosen.matches().size(),
+                      (System.nanoTime() - start) / 1_000_000);
+                  return chosen.matches().stream()
+                      .map(EmbeddingMatch::embedded)
+                      .collect(Collectors.toList());
+                })
+            .exceptionally(
+                error -> {
+                  log.error("Error searching relevant documents: {}", error.getMessage(), error);
+                  return List.of();
+                });
+
+    return new Retrieval(embedding, intent, segments, searches);
+  }
+
+  private SearchResult search(String sessionId, Embedding queryEmbedding, String type) {
+    long start = System.nanoTime();
+    List<EmbeddingMatch<TextSegment>> matches =
+        segmentStore.findRelevant(sessionId, queryEmbedding, topK, 0.0, type);
+    log.info(
+        "Search completed - Session: {}, Type filter: {}, Matches: {}, Elapsed: {} ms",
+        sessionId,
+        type,
+        matches.size(),
+        (System.nanoTime() - start) / 1_000_000);
+    return new SearchResult(type, matches);
+  }
+
+  // A failed search yields null so the other search can still answer
+  private static SearchResult failedSearch(String type, Throwable error) {
+    log.error("Search failed - Type filter: {}: {}", type, error.getMessage(), error);
+    return null;
+  }
+
+  /** Prefer the intent-filtered result unless it is missing, empty or clearly less relevant */
+  private SearchResult choose(SearchResult unfiltered, SearchResult filtered) {
+    if (filtered == null || filtered.matches().isEmpty()) {
+      return unfiltered != null ? unfiltered : new SearchResult(null, List.of());
+    }
+    if (unfiltered == null) {
+      return filtered;
+    }
+    return filtered.bestScore() + filteredScoreMargin >= unfiltered.bestScore()
+        ? filtered
+        : unfiltered;
+  }
+}
@@ -0,0 +1,434 @@
+package com.documentrag.service;
+
+import com.documentrag.model.CodeSymbol;
+import com.documentrag.service.JavaCodeParser.Call;
+import com.documentrag.service.JavaCodeParser.CodeElement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Per-session index of the types, members, inheritance and call sites of uploaded Java code.
+ *
+ * <p>Built from the elements {@link JavaCodeParser} already extracts, so structural questions are
+ * answered from memory without a vector search or a chat model. Calls are resolved by name and
+ * receiver without a symbol solver: unqualified, {@code this} and {@code super} calls bind to the
+ * enclosing type hierarchy, field receivers to the declared field type and capitalized receivers to
+ * the type of that name. Calls on local variables or other expressions match any type.
+ */
+@Slf4j
+@Service
+public class SymbolIndexService {
+
+  private static final Set<String> TYPE_KINDS = Set.of("class", "interface", "enum", "annotation");
+  private static final Set<String> MEMBER_KINDS = Set.of("method", "constructor", "field");
+
+  // Each session index is immutable and replaced on every change, so queries never lock
+  private final ConcurrentHashMap<String, SessionIndex> sessions = new ConcurrentHashMap<>();
+
+  public void indexDocument(String sessionId, String documentId, List<CodeElement> elements) {
+    List<Entry> entries = new ArrayList<>();
+    for (CodeElement element : elements) {
+      boolean member = MEMBER_KINDS.contains(element.type) && element.parentId != null;
+      if (member || TYPE_KINDS.contains(element.type)) {
+        entries.add(toEntry(element, documentId));
+      } else if ("imports".equals(element.type)) {
+        entries.addAll(importEntries(element, documentId));
+      }
+    }
+
+    SessionIndex index =
+        sessions.compute(
+            sessionId,
+            (id, current) ->
+                (current != null ? current : SessionIndex.EMPTY).with(documentId, entries));
+    log.info(
+        "Symbol index updated - Session: {}, Document: {}, Symbols: {}, Session symbols: {}",
+        sessionId,
+        documentId,
+        entries.size(),
+        index.byId.size());
+  }
+
+  public void removeDocument(String sessionId, String documentId) {
+    sessions.computeIfPresent(
+        sessionId,
+        (id, current) -> {
+          SessionIndex updated = current.without(documentId);
+          return updated.documents.isEmpty() ? null : updated;
+        });
+  }
+
+  public void removeSession(String sessionId) {
+    sessions.remove(sessionId);
+  }
+
+  /** Whether the document has been indexed for the session, even if it declares no symbols */
+  public boolean hasDocument(String sessionId, String documentId) {
+    return index(sessionId).documents.containsKey(documentId);
+  }
+
+  /** Whether any type has been indexed for the session */
+  public boolean hasSymbols(String sessionId) {
+    return !index(sessionId).typesByName.isEmpty();
+  }
+
+  /** Packages declaring at least one indexed type, sorted by name */
+  public List<String> findPackages(String sessionId) {
+    return index(sessionId).typesByName.values().stream()
+        .flatMap(List::stream)
+        .map(type -> type.symbol.getPackageName())
+        .distinct()
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  /** Import declarations of every indexed document */
+  public List<CodeSymbol> findImports(String sessionId) {
+    return symbols(index(sessionId).imports);
+  }
+
+  /** Types whose simple name or qualified id matches, or every type when no name is given */
+  public List<CodeSymbol> findTypes(String sessionId, String typeName) {
+    SessionIndex index = index(sessionId);
+    List<Entry> types =
+        typeName == null || typeName.isBlank()
+            ? index.typesByName.values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.toList())
+            : index.typesMatching(typeName);
+    return symbols(types);
+  }
+
+  /** Members of the matching types, optionally restricted to one kind (method, field, ...) */
+  public List<CodeSymbol> findMembers(String sessionId, String typeName, String kind) {
+    SessionIndex index = index(sessionId);
+    List<Entry> members = new ArrayList<>();
+    for (Entry type : index.typesMatching(typeName)) {
+      for (Entry member : index.membersByOwner.getOrDefault(type.symbol.getId(), List.of())) {
+        if (kind == null || kind.isBlank() || kind.equalsIgnoreCase(member.symbol.getKind())) {
+          members.add(member);
+        }
+      }
+    }
+    return symbols(members);
+  }
+
+  /** Every type that extends or implements the named type, directly or transitively */
+  public List<CodeSymbol> findImplementations(String sessionId, String typeName) {
+    SessionIndex index = index(sessionId);
+    Map<String, Entry> found = new LinkedHashMap<>();
+    Deque<String> pending = new ArrayDeque<>();
+    pending.add(simpleName(typeName));
+    while (!pending.isEmpty()) {
+      for (Entry subtype : index.subtypesBySupertype.getOrDefault(pending.poll(), List.of())) {
+        if (found.putIfAbsent(subtype.symbol.getId(), subtype) == null) {
+          pending.add(subtype.symbol.getName());
+        }
+      }
+    }
+    return symbols(found.values());
+  }
+
+  /** Methods and constructors containing a call that may invoke the named method */
+  public List<CodeSymbol> findCallers(String sessionId, String methodName, String typeName) {
+    SessionIndex index = index(sessionId);
+    String target = typeName == null || typeName.isBlank() ? null : simpleName(typeName);
+    List<Entry> callers = new ArrayList<>();
+    for (Entry caller : index.callersByCallee.getOrDefault(methodName, List.of())) {
+      boolean matches =
+          caller.calls.stream()
+              .filter(call -> call.name().equals(methodName))
+              .anyMatch(
+                  call -> {
+                    if (target == null) {
+                      return true;
+                    }
+                    Set<String> receivers = index.receiverTypes(caller, call);
+                    return receivers == null || index.hierarchyOf(receivers).contains(target);
+                  });
+      if (matches) {
+        callers.add(caller);
+      }
+    }
+    return symbols(callers);
+  }
+
+  /** Methods, constructors and types of this session invoked from the named method */
+  public List<CodeSymbol> findCallees(String sessionId, String methodName, String typeName) {
+    SessionIndex index = index(sessionId);
+    Map<String, Entry> callees = new LinkedHashMap<>();
+    for (Entry caller : index.membersByName.getOrDefault(methodName, List.of())) {
+      if (typeName != null && !typeName.isBlank() && !index.isDeclaredIn(caller, typeName)) {
+        continue;
+      }
+      for (Call call : caller.calls) {
+        for (Entry callee : index.resolve(caller, call)) {
+          callees.putIfAbsent(callee.symbol.getId(), callee);
+        }
+      }
+    }
+    return symbols(callees.values());
+  }
+
+  private SessionIndex index(String sessionId) {
+    return sessionId == null
+        ? SessionIndex.EMPTY
+        : sessions.getOrDefault(sessionId, SessionIndex.EMPTY);
+  }
+
+  private static List<CodeSymbol> symbols(Collection<Entry> entries) {
+    return entries.stream()
+        .map(entry -> entry.symbol)
+        .sorted(Comparator.comparing(CodeSymbol::getId))
+        .collect(Collectors.toList());
+  }
+
+  private static Entry toEntry(CodeElement element, String documentId) {
+    List<String> supertypes = new ArrayList<>();
+    if (element.extendedTypes != null) {
+      supertypes.addAll(element.extendedTypes);
+    }
+    if (element.implementedTypes != null) {
+      supertypes.addAll(element.implementedTypes);
+    }
+    boolean type = TYPE_KINDS.contains(element.type);
+
+    CodeSymbol symbol =
+        CodeSymbol.builder()
+            .id(qualify(element.packageName, element.id))
+            .kind(element.type)
+            .name(element.name)
+            .className(element.className)
+            .packageName(element.packageName)
+            .signature(element.signature)
+            .modifiers(element.modifiers)
+            .documentId(documentId)
+            .startLine(element.startLine)
+            .endLine(element.endLine)
+            .supertypes(type ? supertypes : null)
+            .build();
+    return new Entry(
+        symbol,
+        element.parentId != null ? qualify(element.packageName, element.parentId) : null,
+        supertypes,
+        element.valueType,
+        element.calls != null ? element.calls : List.of());
+  }
+
+  /** One entry per import declaration of the imports element */
+  private static List<Entry> importEntries(CodeElement imports, String documentId) {
+    List<Entry> entries = new ArrayList<>();
+    int line = imports.startLine;
+    for (String declaration : imports.source.split("\\R")) {
+      String trimmed = declaration.trim();
+      if (trimmed.startsWith("import ")) {
+        String name = trimmed.substring("import ".length()).replace(";", "").trim();
+        CodeSymbol symbol =
+            CodeSymbol.builder()
+                .id("import " + name)
+                .kind("import")
+                .name(name)
+                .className("N/A")
+                .packageName(imports.packageName)
+                .signature(trimmed)
+                .modifiers("")
+                .documentId(documentId)
+                .startLine(line)
+                .endLine(line)
+                .build();
+        entries.add(new Entry(symbol, null, List.of(), null, List.of()));
+      }
+      line++;
+    }
+    return entries;
+  }
+
+  private static String qualify(String packageName, String id) {
+    return packageName == null || "default".equals(packageName) || "N/A".equals(packageName)
+        ? id
+        : packageName + "." + id;
+  }
+
+  private static String simpleName(String typeName) {
+    return typeName.substring(typeName.lastIndexOf('.') + 1);
+  }
+
+  /** Indexed symbol with what is needed to resolve its calls */
+  private record Entry(
+      CodeSymbol symbol,
+      String ownerId,
+      List<String> supertypes,
+      String valueType,
+      List<Call> calls) {}
+
+  /** Immutable symbols of one session, rebuilt whenever a document is added or removed */
+  private static final class SessionIndex {
+    static final SessionIndex EMPTY = new SessionIndex(Map.of());
+
+    final Map<String, List<Entry>> documents;
+    final Map<String, Entry> byId = new HashMap<>();
+    final Map<String, List<Entry>> typesByName = new HashMap<>();
+    final Map<String, List<Entry>> membersByOwner = new HashMap<>();
+    final Map<String, List<Entry>> membersByName = new HashMap<>();
+    final Map<String, List<Entry>> subtypesBySupertype = new HashMap<>();
+    final Map<String, List<Entry>> callersByCallee = new HashMap<>();
+    final List<Entry> imports = new ArrayList<>();
+
+    SessionIndex(Map<String, List<Entry>> documents) {
+      this.documents = documents;
+      for (List<Entry> entries : documents.values()) {
+        for (Entry entry : entries) {
+          if ("import".equals(entry.symbol.getKind())) {
+            imports.add(entry);
+            continue;
+          }
+          byId.put(entry.symbol.getId(), entry);
+          if (TYPE_KINDS.contains(entry.symbol.getKind())) {
+            typesByName.computeIfAbsent(entry.symbol.getName(), k -> new ArrayList<>()).add(entry);
+            for (String supertype : entry.supertypes) {
+              subtypesBySupertype.computeIfAbsent(supertype, k -> new ArrayList<>()).add(entry);
+            }
+          } else {
+            membersByOwner.computeIfAbsent(entry.ownerId, k -> new ArrayList<>()).add(entry);
+            membersByName
+                .computeIfAbsent(entry.symbol.getName(), k -> new ArrayList<>())
+                .add(entry);
+            entry.calls.stream()
+                .map(Call::name)
+                .distinct()
+                .forEach(
+                    callee ->
+                        callersByCallee.computeIfAbsent(callee, k -> new ArrayList<>()).add(entry));
+          }
+        }
+      }
+    }
+
+    SessionIndex with(String documentId, List<Entry> entries) {
+      Map<String, List<Entry>> updated = new LinkedHashMap<>(documents);
+      updated.put(documentId, List.copyOf(entries));
+      return new SessionIndex(updated);
+    }
+
+    SessionIndex without(String documentId) {
+      Map<String, List<Entry>> updated = new LinkedHashMap<>(documents);
+      updated.remove(documentId);
+      return new SessionIndex(updated);
+    }
+
+    List<Entry> typesMatching(String typeName) {
+      if (typeName == null || typeName.isBlank()) {
+        return List.of();
+      }
+      List<Entry> candidates = typesByName.getOrDefault(simpleName(typeName), List.of());
+      if (typeName.indexOf('.') < 0) {
+        return candidates;
+      }
+      return candidates.stream()
+          .filter(
+              type ->
+                  type.symbol.getId().equals(typeName)
+                      || type.symbol.getId().endsWith("." + typeName))
+          .collect(Collectors.toList());
+    }
+
+    boolean isDeclaredIn(Entry member, String typeName) {
+      return typesMatching(typeName).stream()
+          .anyMatch(type -> type.symbol.getId().equals(member.ownerId));
+    }
+
+    /** Simple names of the types a call may be dispatched on, or null when unknown */
+    Set<String> receiverTypes(Entry caller, Call call) {
+      Entry owner = byId.get(caller.ownerId);
+      if (call.scope() == null || Call.THIS.equals(call.scope())) {
+        // Unqualified calls may also target enclosing types
+        Set<String> types = new LinkedHashSet<>();
+        for (Entry type = owner; type != null; type = byId.get(type.ownerId)) {
+          types.add(type.symbol.getName());
+          if (Call.THIS.equals(call.scope())) {
+            break;
+          }
+        }
+        return types.isEmpty() ? null : types;
+      }
+      switch (call.scope()) {
+        case Call.SUPER:
+          return owner != null ? new LinkedHashSet<>(owner.supertypes) : null;
+        case Call.NEW:
+          return Set.of(call.name());
+        case Call.UNKNOWN:
+          return null;
+        default:
+          String fieldType = owner != null ? fieldType(owner, call.scope()) : null;
+          if (fieldType != null) {
+            return Set.of(fieldType);
+          }
+          return Character.isUpperCase(call.scope().charAt(0)) ? Set.of(call.scope()) : null;
+      }
+    }
+
+    private String fieldType(Entry owner, String fieldName) {
+      for (Entry member : membersByOwner.getOrDefault(owner.symbol.getId(), List.of())) {
+        if ("field".equals(member.symbol.getKind())) {
+          String id = member.symbol.getId();
+          if (List.of(id.substring(id.lastIndexOf('#') + 1).split(",")).contains(fieldName)) {
+            return member.valueType;
+          }
+        }
+      }
+      return null;
+    }
+
+    /** The given types plus every supertype known to this session */
+    Set<String> hierarchyOf(Set<String> typeNames) {
+      Set<String> hierarchy = new HashSet<>(typeNames);
+      Deque<String> pending = new ArrayDeque<>(typeNames);
+      while (!pending.isEmpty()) {
+        for (Entry type : typesByName.getOrDefault(pending.poll(), List.of())) {
+          for (String supertype : type.supertypes) {
+            if (hierarchy.add(supertype)) {
+              pending.add(supertype);
+            }
+          }
+        }
+      }
+      return hierarchy;
+    }
+
+    /** Symbols of this session a call may invoke */
+    List<Entry> resolve(Entry caller, Call call) {
+      Set<String> receivers = receiverTypes(caller, call);
+      Set<String> hierarchy = receivers != null ? hierarchyOf(receivers) : null;
+      List<Entry> targets = new ArrayList<>();
+      for (Entry candidate : membersByName.getOrDefault(call.name(), List.of())) {
+        boolean constructor = "constructor".equals(candidate.symbol.getKind());
+        Entry owner = byId.get(candidate.ownerId);
+        boolean receiverMatches =
+            hierarchy == null || (owner != null && hierarchy.contains(owner.symbol.getName()));
+        if (constructor == Call.NEW.equals(call.scope()) && receiverMatches) {
+          targets.add(candidate);
+        }
+      }
+      if (targets.isEmpty() && Call.NEW.equals(call.scope())) {
+        // Types without declared constructors are linked directly
+        targets.addAll(typesByName.getOrDefault(call.name(), List.of()));
+      }
+      return targets;
+    }
+  }
+}
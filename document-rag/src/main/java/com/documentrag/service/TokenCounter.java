@@ -0,0 +1,85 @@
+package com.documentrag.service;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.agent.tool.ToolSpecification;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.Tokenizer;
+import dev.langchain4j.model.openai.OpenAiTokenizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Token counts for budgeting prompts and chunks, from the same BPE tokenizer OpenAI chat models
+ * use, so budgets and token metrics match what the provider counts and what code-assistant
+ * reports.
+ *
+ * <p>Implements {@link Tokenizer} so it can drive LangChain4j splitters and memories as well.
+ */
+@Component
+public class TokenCounter implements Tokenizer {
+
+  // cl100k_base, as counted by code-assistant's prompt metrics and conversation window
+  private final OpenAiTokenizer tokenizer = new OpenAiTokenizer("gpt-3.5-turbo");
+
+  public int count(CharSequence text) {
+    return text == null || text.length() == 0
+        ? 0
+        : tokenizer.estimateTokenCountInText(text.toString());
+  }
+
+  /**
+   * Cut the text to at most {@code maxTokens}, preferring a line break near the cut and appending
+   * the marker, whose tokens count towards the budget. Text within budget is returned unchanged.
+   */
+  public String truncate(String text, int maxTokens, String marker) {
+    if (text == null || count(text) <= maxTokens) {
+      return text;
+    }
+    int budget = maxTokens - count(marker);
+    if (budget <= 0) {
+      return "";
+    }
+    int end = commonPrefixLength(text, tokenizer.decode(tokenizer.encode(text, budget)));
+    int lineBreak = text.lastIndexOf('\n', end);
+    if (lineBreak > end / 2) {
+      end = lineBreak;
+    }
+    return text.substring(0, end) + marker;
+  }
+
+  // A cut inside a multi-byte character decodes to a replacement character, which is dropped
+  private static int commonPrefixLength(String text, String prefix) {
+    int length = Math.min(text.length(), prefix.length());
+    int i = 0;
+    while (i < length && text.charAt(i) == prefix.charAt(i)) {
+      i++;
+    }
+    return i;
+  }
+
+  @Override
+  public int estimateTokenCountInText(String text) {
+    return count(text);
+  }
+
+  @Override
+  public int estimateTokenCountInMessage(ChatMessage message) {
+    return tokenizer.estimateTokenCountInMessage(message);
+  }
+
+  @Override
+  public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+    return tokenizer.estimateTokenCountInMessages(messages);
+  }
+
+  @Override
+  public int estimateTokenCountInToolSpecifications(
+      Iterable<ToolSpecification> toolSpecifications) {
+    return tokenizer.estimateTokenCountInToolSpecifications(toolSpecifications);
+  }
+
+  @Override
+  public int estimateTokenCountInToolExecutionRequests(
+      Iterable<ToolExecutionRequest> toolExecutionRequests) {
+    return tokenizer.estimateTokenCountInToolExecutionRequests(toolExecutionRequests);
+  }
+}
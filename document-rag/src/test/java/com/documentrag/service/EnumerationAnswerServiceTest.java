@@ -0,0 +1,81 @@
+package com.documentrag.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.documentrag.model.CodeSymbol;
+import com.documentrag.service.EnumerationAnswerService.EnumerationAnswer;
+import com.documentrag.service.IntentDetectionService.IntentDetectionResult;
+import com.documentrag.service.IntentDetectionService.SearchIntent;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class EnumerationAnswerServiceTest {
+
+  private static final String SESSION = "session";
+
+  private static final String SOURCE =
+      "package com.shop;\n"
+          + "\n"
+          + "public class OrderService {\n"
+          + "  public void place() {}\n"
+          + "  public void cancel() {}\n"
+          + "}\n"
+          + "\n"
+          + "class Invoice {\n"
+          + "  void print() {}\n"
+          + "}\n";
+
+  private final EnumerationAnswerService service = new EnumerationAnswerService();
+
+  @BeforeEach
+  void setUp() {
+    SymbolIndexService symbolIndex = new SymbolIndexService();
+    symbolIndex.indexDocument(
+        SESSION, "doc", new JavaCodeParser().parse(SOURCE, "OrderService.java"));
+    ReflectionTestUtils.setField(service, "symbolIndexService", symbolIndex);
+    ReflectionTestUtils.setField(service, "enabled", true);
+    ReflectionTestUtils.setField(service, "minConfidence", 0.5);
+  }
+
+  @Test
+  void answersQuestionEndingInPeriod() {
+    Optional<EnumerationAnswer> answer = answer("List all methods.");
+
+    assertTrue(answer.isPresent());
+    assertEquals(List.of("cancel", "place", "print"), names(answer.get().symbols()));
+  }
+
+  @Test
+  void narrowsToTypeNamedBeforeTrailingPunctuation() {
+    Optional<EnumerationAnswer> answer = answer("What methods does OrderService have?");
+
+    assertTrue(answer.isPresent());
+    assertEquals(List.of("cancel", "place"), names(answer.get().symbols()));
+  }
+
+  @Test
+  void narrowsToTypeNamedAtEndOfSentence() {
+    Optional<EnumerationAnswer> answer = answer("Show the methods of com.shop.Invoice.");
+
+    assertTrue(answer.isPresent());
+    assertEquals(List.of("print"), names(answer.get().symbols()));
+  }
+
+  private Optional<EnumerationAnswer> answer(String question) {
+    return service.tryAnswer(
+        SESSION, question, new IntentDetectionResult(SearchIntent.METHODS, 0.9), null);
+  }
+
+  private static List<String> names(List<CodeSymbol> symbols) {
+    return symbols.stream()
+        .filter(symbol -> "method".equals(symbol.getKind()))
+        .map(CodeSymbol::getName)
+        .sorted()
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,128 @@
+package com.documentrag.service;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark of Java upload parsing: the single-pass {@link JavaCodeParser} against the previous
+ * multi-pass, pretty-printing extraction.
+ *
+ * <p>Run {@link #main} to get parse time and allocation normalized per KB of source.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JavaCodeParserBenchmark {
+
+  @Param({"4", "32", "128"})
+  public int sourceKb;
+
+  private final JavaCodeParser parser = new JavaCodeParser();
+  private String source;
+
+  @Setup
+  public void setUp() {
+    source = generateSource(sourceKb * 1024);
+  }
+
+  @Benchmark
+  public List<JavaCodeParser.CodeElement> singlePass() {
+    return parser.parse(source, "Generated.java");
+  }
+
+  /** The extraction this replaced: repeated findAll passes and toString() per element */
+  @Benchmark
+  public void legacyPrettyPrint(Blackhole blackhole) {
+    CompilationUnit cu = StaticJavaParser.parse(source);
+    cu.findAll(ClassOrInterfaceDeclaration.class)
+        .forEach(
+            cls -> {
+              blackhole.consume(cls.toString());
+              cls.getMethods().forEach(method -> blackhole.consume(method.toString()));
+              cls.getConstructors().forEach(ctor -> blackhole.consume(ctor.toString()));
+              cls.getFields().forEach(field -> blackhole.consume(field.toString()));
+            });
+    blackhole.consume(cu.findAll(ClassOrInterfaceDeclaration.class).size());
+    blackhole.consume(
+        cu.findAll(ClassOrInterfaceDeclaration.class).stream()
+            .mapToInt(cls -> cls.getMethods().size())
+            .sum());
+    blackhole.consume(
+        cu.findAll(ClassOrInterfaceDeclaration.class).stream()
+            .mapToInt(cls -> cls.getFields().size())
+            .sum());
+  }
+
+  /** Synthetic source with nested classes, javadoc and fields, padded to roughly the target size */
+  static String generateSource(int targetBytes) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("package com.example.generated;\n\n");
+    sb.append("import java.util.List;\nimport java.util.Map;\n\n");
+    sb.append("/** Generated benchmark fixture. */\n");
+    sb.append("public class Generated {\n");
+    int index = 0;
+    while (sb.length() < targetBytes) {
+      sb.append("\n  /** Nested holder ").append(index).append(". */\n");
+      sb.append("  public static class Holder").append(index).append(" {\n");
+      sb.append("    private final Map<String, List<Integer>> values").append(index).append(";\n\n");
+      sb.append("    public Holder").append(index).append("(Map<String, List<Integer>> values) {\n");
+      sb.append("      this.values").append(index).append(" = values;\n    }\n\n");
+      sb.append("    /** Sums every value stored under the key. */\n");
+      sb.append("    public int sum(String key) {\n");
+      sb.append("      int total = 0;\n");
+      sb.append("      for (Integer value : values").append(index).append(".get(key)) {\n");
+      sb.append("        if (value != null && value > 0) {\n");
+      sb.append("          total += value;\n        }\n      }\n");
+      sb.append("      return total;\n    }\n  }\n");
+      index++;
+    }
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options =
+        new OptionsBuilder()
+            .include(JavaCodeParserBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+
+    System.out.printf("%-20s %8s %14s %16s%n", "benchmark", "KB", "us/KB", "bytes alloc/KB");
+    for (RunResult result : new Runner(options).run()) {
+      String benchmark = result.getParams().getBenchmark();
+      int kb = Integer.parseInt(result.getParams().getParam("sourceKb"));
+      Result<?> allocation = result.getSecondaryResults().get("gc.alloc.rate.norm");
+      System.out.printf(
+          "%-20s %8d %14.2f %16.0f%n",
+          benchmark.substring(benchmark.lastIndexOf('.') + 1),
+          kb,
+          result.getPrimaryResult().getScore() / kb,
+          allocation != null ? allocation.getScore() / kb : Double.NaN);
+    }
+  }
+}
@@ -3,6 +3,7 @@ package com.executor;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main Spring Boot Application
@@ -11,6 +12,7 @@ import org.springframework.context.annotation.ComponentScan;
  * It scans all modules to include their controllers and components.
  */
 @SpringBootApplication
+@EnableScheduling
 @ComponentScan(basePackages = {
     "com.executor",
     "com.common",